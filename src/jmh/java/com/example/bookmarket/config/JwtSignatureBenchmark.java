@@ -0,0 +1,83 @@
+package com.example.bookmarket.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing and uncached verification throughput of ES256, which the key ring issues, against the HS256 tokens
+ * issued before it. Every verification checks the signature; {@link JwtVerifyBenchmark} covers the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtSignatureBenchmark {
+
+    private Key hmacKey;
+    private JwtKeyRing.SigningKey ecKey;
+    private JwtParser hmacParser;
+    private JwtParser ecParser;
+    private String hs256;
+    private String es256;
+
+    @Setup
+    public void setUp() {
+        hmacKey = Keys.hmacShaKeyFor("benchmark-secret-that-is-long-enough-for-hs256".getBytes(StandardCharsets.UTF_8));
+        ecKey = JwtKeyRing.generateKey(Instant.now());
+        hmacParser = Jwts.parserBuilder().setSigningKey(hmacKey).build();
+        ecParser = Jwts.parserBuilder().setSigningKey(ecKey.publicKey()).build();
+        hs256 = signHs256();
+        es256 = signEs256();
+    }
+
+    @Benchmark
+    public String signHs256() {
+        return sign(hmacKey, SignatureAlgorithm.HS256);
+    }
+
+    @Benchmark
+    public String signEs256() {
+        return sign(ecKey.privateKey(), SignatureAlgorithm.ES256);
+    }
+
+    @Benchmark
+    public Claims verifyHs256() {
+        return hmacParser.parseClaimsJws(hs256).getBody();
+    }
+
+    @Benchmark
+    public Claims verifyEs256() {
+        return ecParser.parseClaimsJws(es256).getBody();
+    }
+
+    private static String sign(Key key, SignatureAlgorithm algorithm) {
+        return Jwts.builder()
+                .setSubject("ali")
+                .claim("roles", List.of("USER"))
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000))
+                .signWith(key, algorithm)
+                .compact();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.bookmarket.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token work per authenticated request: the old filter path, which built a parser and checked the signature
+ * four times, against {@link JwtUtil#verify} on a cache miss and on a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private Key publicKey;
+    private JwtUtil cached;
+    private JwtUtil uncached;
+    private String token;
+    private String[] distinctTokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JwtKeyRing keyRing = new JwtKeyRing("", "", Duration.ofDays(7), Duration.ofHours(1), Duration.ofSeconds(30),
+                true);
+        publicKey = keyRing.signingKey().publicKey();
+        cached = new JwtUtil(keyRing, "", 10_000);
+        // Caffeine ورودی ها را ناهمگام بیرون می اندازد، پس به جای کش خالی توکن های متفاوت زیادی چرخانده می شوند
+        uncached = new JwtUtil(keyRing, "", 16);
+        token = cached.generateToken("ali", Set.of("USER", "ADMIN"));
+        cached.verify(token);
+        distinctTokens = new String[1024];
+        for (int i = 0; i < distinctTokens.length; i++) {
+            distinctTokens[i] = cached.generateToken("user" + i, Set.of("USER"));
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<String> parseFourTimes() {
+        Claims claims = null;
+        for (int i = 0; i < 4; i++) {
+            claims = Jwts.parserBuilder().setSigningKey(publicKey).build().parseClaimsJws(token).getBody();
+        }
+        return claims.get("roles", List.class);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyMiss() {
+        return uncached.verify(distinctTokens[next++ & (distinctTokens.length - 1)]);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyHit() {
+        return cached.verify(token);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.bookmarket.config;
+
+import com.example.bookmarket.enums.RouteAccess;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route matching per request: the {@link RouteTable} trie against the public-endpoint list the filter used to
+ * scan, twice per request, with {@code startsWith} checks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteTableBenchmark {
+
+    private static final String[] PATHS = {
+            "/api/v1/books/42", "/api/v1/books/search", "/api/v1/loans/add", "/api/v1/user/login",
+            "/swagger-ui/index.html", "/api/v1/comments/book/9", "/api/v1/statistics", "/api/v1/loans/return/3"
+    };
+
+    private static final List<String> PUBLIC_ENDPOINTS = List.of(
+            "/api/v1/user/login", "/api/v1/user/register", "/api/v1/librarians/login",
+            "/api/v1/librarians/register", "/swagger-ui", "/swagger-ui/", "/swagger-ui.html", "/swagger-ui/**",
+            "/v3/api-docs", "/v3/api-docs/", "/v3/api-docs/**", "/api-docs", "/api-docs/", "/api-docs/**",
+            "/webjars/", "/webjars/**", "/swagger-resources", "/swagger-resources/", "/swagger-resources/**",
+            "/configuration/ui", "/configuration/security", "/favicon.ico"
+    );
+
+    private final RouteTable routes = SecurityConfig.routeTable();
+    private int next;
+
+    @Benchmark
+    public boolean listMatcher() {
+        String path = nextPath();
+        // فیلتر قبلی این بررسی را دو بار در هر درخواست انجام می داد
+        return legacyIsPublic(path) || !legacyIsPublic(path);
+    }
+
+    @Benchmark
+    public RouteAccess trie() {
+        return routes.lookup(nextPath());
+    }
+
+    private String nextPath() {
+        return PATHS[next++ & (PATHS.length - 1)];
+    }
+
+    private static boolean legacyIsPublic(String requestURI) {
+        return PUBLIC_ENDPOINTS.stream().anyMatch(uri ->
+                requestURI.equals(uri) ||
+                        requestURI.startsWith(uri.replace("/**", "")) ||
+                        uri.replace("/**", "").startsWith(requestURI)
+        );
+    }
+}
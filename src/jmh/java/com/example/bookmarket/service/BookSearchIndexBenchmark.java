@@ -0,0 +1,77 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.BookSearchHitDto;
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Latency of a ranked two-word search over {@code books} titles drawn from 5000 words, with and without fuzzy
+ * matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSearchIndexBenchmark {
+
+    @Param("100000")
+    private int books;
+
+    private BookSearchIndex index;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + Integer.toString(i, 36);
+        }
+        index = new BookSearchIndex(mock(BookRepository.class));
+        for (long id = 1; id <= books; id++) {
+            index.onBookChanged(BookChangedEvent.saved(new UpdateBookDto(id,
+                    words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)], BigDecimal.TEN, 1, null, "genre" + random.nextInt(20), 1, 0)));
+        }
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+        }
+    }
+
+    @Benchmark
+    public List<BookSearchHitDto> search() {
+        return index.search(nextQuery(), 20);
+    }
+
+    @Benchmark
+    public List<BookSearchHitDto> fuzzySearch() {
+        return index.search(nextQuery(), 20, true);
+    }
+
+    private String nextQuery() {
+        return queries[next++ & (queries.length - 1)];
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bookmarket.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency, rebuild time and memory of autocomplete over {@code titles} three-word titles. The memory is
+ * printed once per fork: the completer's own estimate and the heap it retains, measured after a full GC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefixCompleterBenchmark {
+
+    @Param("100000")
+    private int titles;
+
+    private List<String> displays;
+    private PrefixCompleter completer;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        displays = new ArrayList<>();
+        for (int i = 0; i < titles; i++) {
+            displays.add(randomWord(random) + " " + randomWord(random) + " " + randomWord(random));
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        completer = new PrefixCompleter();
+        completer.rebuild(displays);
+        memory.gc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - before;
+        System.out.printf("%n%,d titles: %,d KB estimated, %,d KB retained%n", titles,
+                completer.memoryBytes() / 1024, retained / 1024);
+
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = displays.get(random.nextInt(displays.size())).substring(0, 1 + random.nextInt(4));
+        }
+    }
+
+    @Benchmark
+    public List<String> complete() {
+        return completer.complete(prefixes[next++ & (prefixes.length - 1)], 10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PrefixCompleter rebuild() {
+        PrefixCompleter rebuilt = new PrefixCompleter();
+        rebuilt.rebuild(displays);
+        return rebuilt;
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
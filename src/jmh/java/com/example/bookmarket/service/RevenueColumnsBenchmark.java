@@ -0,0 +1,76 @@
+package com.example.bookmarket.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revenue aggregation over {@code rows} loans spread across ten years and five genres: one year per month, one
+ * genre over a year per month, and one year per day, the longest daily range the endpoint accepts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevenueColumnsBenchmark {
+
+    private static final String[] GENRES = {"Fantasy", "History", "Science", "Poetry", "Drama"};
+    private static final int FIRST_DAY = 19_000;
+    private static final int DAYS = 3_660;
+    private static final int MAX_DAILY_DAYS = 366;
+
+    @Param("10000000")
+    private int rows;
+
+    private RevenueColumns columns;
+    private int[] months;
+    private int[] days;
+
+    @Setup
+    public void setUp() {
+        columns = new RevenueColumns(rows, ForkJoinPool.commonPool());
+        Random random = new Random(11);
+        for (int i = 0; i < rows; i++) {
+            long price = 500 + random.nextInt(5_000);
+            columns.append(GENRES[random.nextInt(GENRES.length)], FIRST_DAY + random.nextInt(DAYS), price,
+                    price - random.nextInt(500));
+        }
+        months = new int[365];
+        for (int i = 0; i < months.length; i++) {
+            months[i] = Math.min(i / 31, 11);
+        }
+        days = new int[MAX_DAILY_DAYS];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = i;
+        }
+    }
+
+    @Benchmark
+    public RevenueColumns.Totals yearByMonth() {
+        return columns.aggregate(FIRST_DAY, months, 12, null);
+    }
+
+    @Benchmark
+    public RevenueColumns.Totals yearByMonthOneGenre() {
+        return columns.aggregate(FIRST_DAY, months, 12, "History");
+    }
+
+    @Benchmark
+    public RevenueColumns.Totals yearByDay() {
+        return columns.aggregate(FIRST_DAY, days, MAX_DAILY_DAYS, null);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bookmarket.config;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * BCrypt encoder with a configured work factor, or one picked from a benchmark of the host at startup.
+ * <p>
+ * New hashes are stored as {@code {bcrypt}$2a$<cost>$...}, so algorithm and cost travel with each hash.
+ * Older hashes without the {@code {bcrypt}} prefix still verify. {@link #upgradeEncoding} reports hashes
+ * that lack the prefix or whose cost is more than {@code tolerance} away from the calibrated cost.
+ */
+public class CalibratedPasswordEncoder implements PasswordEncoder {
+
+    private static final String ID = "bcrypt";
+    private static final String PREFIX = "{" + ID + "}";
+    private static final String PROBE_PASSWORD = "calibration-probe";
+
+    private final PasswordEncoder delegate;
+    private final int cost;
+    private final int tolerance;
+    private final double verifyMillis;
+
+    public CalibratedPasswordEncoder(int cost, int tolerance, double verifyMillis) {
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(ID, Map.of(ID, new BCryptPasswordEncoder(cost)));
+        // هش های قدیمی بدون پیشوند {bcrypt} ذخیره شده اند
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        this.delegate = encoder;
+        this.cost = cost;
+        this.tolerance = tolerance;
+        this.verifyMillis = verifyMillis;
+    }
+
+    /**
+     * Uses {@code cost} as is; only one verification is timed, for the metrics.
+     */
+    public static CalibratedPasswordEncoder withCost(int cost, int tolerance) {
+        return new CalibratedPasswordEncoder(cost, tolerance, measure(cost, 1));
+    }
+
+    /**
+     * Times BCrypt at a cheap probe cost and extrapolates (each cost step doubles the work) to the cost
+     * whose verification is closest to {@code target}, clamped to [minCost, maxCost].
+     */
+    public static CalibratedPasswordEncoder calibrate(Duration target, int minCost, int maxCost, int tolerance) {
+        measure(4, 1);
+
+        int probeCost = Math.min(8, maxCost);
+        double probeMillis = measure(probeCost, 3);
+        double targetMillis = target.toNanos() / 1_000_000.0;
+        int estimated = probeCost + (int) Math.round(Math.log(targetMillis / probeMillis) / Math.log(2));
+        int cost = Math.max(minCost, Math.min(maxCost, estimated));
+
+        return new CalibratedPasswordEncoder(cost, tolerance, measure(cost, 1));
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(PREFIX)) {
+            return true;
+        }
+        int storedCost = costOf(encodedPassword.substring(PREFIX.length()));
+        return storedCost < 0 || Math.abs(storedCost - cost) > tolerance;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public double getVerifyMillis() {
+        return verifyMillis;
+    }
+
+    // $2a$10$... -> 10
+    static int costOf(String bcryptHash) {
+        if (bcryptHash.length() < 7 || bcryptHash.charAt(0) != '$' || bcryptHash.charAt(3) != '$' || bcryptHash.charAt(6) != '$') {
+            return -1;
+        }
+        char tens = bcryptHash.charAt(4);
+        char ones = bcryptHash.charAt(5);
+        if (!Character.isDigit(tens) || !Character.isDigit(ones)) {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static double measure(int cost, int runs) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        String hash = encoder.encode(PROBE_PASSWORD);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long started = System.nanoTime();
+            encoder.matches(PROBE_PASSWORD, hash);
+            best = Math.min(best, System.nanoTime() - started);
+        }
+        return best / 1_000_000.0;
+    }
+}
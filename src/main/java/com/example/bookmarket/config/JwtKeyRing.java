@@ -0,0 +1,298 @@
+package com.example.bookmarket.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * ES256 signing keys, each identified by a {@code kid} that is written into the token header.
+ * <p>
+ * An issuing node signs with its newest key and generates a new one every {@code jwt.keys.rotation-interval}.
+ * The previous key stays available for verification for {@code jwt.keys.overlap} after its successor takes
+ * over, which must outlast every token it signed. Keys are kept in {@code jwt.keys.directory} as PEM files so
+ * that restarts and other issuers sharing the directory see the same ring.
+ * <p>
+ * A node with {@code jwt.keys.jwks-uri} set holds no private key: it reads the public keys from an issuer's
+ * JWKS endpoint instead.
+ * <p>
+ * Either source is re-read on a schedule and, at most once per {@code jwt.keys.jwks-min-refresh}, when a token
+ * names a kid this node has not seen yet. Startup fails when neither is configured, unless
+ * {@code jwt.keys.in-memory} opts into a ring that lives in memory and is lost on restart (tests, local runs).
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+
+    public record SigningKey(String kid, PrivateKey privateKey, PublicKey publicKey, Instant activatedAt) {
+    }
+
+    private static final String CURVE = "secp256r1";
+    private static final int COORDINATE_BYTES = 32;
+
+    private final Path directory;
+    private final String jwksUri;
+    private final Duration rotationInterval;
+    private final Duration overlap;
+    private final Duration jwksMinRefresh;
+    private final RestClient restClient;
+
+    // مرتب بر اساس زمان فعال شدن؛ آخرین کلید برای امضا استفاده می شود
+    private volatile List<SigningKey> keys = List.of();
+    private volatile Map<String, PublicKey> publicKeys = Map.of();
+    private volatile Instant lastFetch = Instant.EPOCH;
+
+    @Autowired
+    public JwtKeyRing(@Value("${jwt.keys.directory:}") String directory,
+                      @Value("${jwt.keys.jwks-uri:}") String jwksUri,
+                      @Value("${jwt.keys.rotation-interval:7d}") Duration rotationInterval,
+                      @Value("${jwt.keys.overlap:1h}") Duration overlap,
+                      @Value("${jwt.keys.jwks-min-refresh:30s}") Duration jwksMinRefresh,
+                      @Value("${jwt.keys.in-memory:false}") boolean inMemory) {
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+        this.jwksUri = jwksUri.isBlank() ? null : jwksUri;
+        this.rotationInterval = rotationInterval;
+        this.overlap = overlap;
+        this.jwksMinRefresh = jwksMinRefresh;
+        this.restClient = this.jwksUri == null ? null : RestClient.create();
+
+        if (this.jwksUri == null && this.directory == null) {
+            if (!inMemory) {
+                throw new IllegalStateException("Set jwt.keys.directory (JWT_KEYS_DIR) on issuing nodes or "
+                        + "jwt.keys.jwks-uri (JWT_JWKS_URI) on verifying nodes");
+            }
+            log.warn("jwt.keys.in-memory is set; signing keys live in memory and tokens do not survive a restart");
+        }
+        refresh();
+    }
+
+    public static SigningKey generateKey(Instant activatedAt) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair pair = generator.generateKeyPair();
+            String kid = activatedAt.getEpochSecond() + "-" + UUID.randomUUID().toString().substring(0, 8);
+            return new SigningKey(kid, pair.getPrivate(), pair.getPublic(), activatedAt);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC P-256 is not available", e);
+        }
+    }
+
+    public Duration getOverlap() {
+        return overlap;
+    }
+
+    /**
+     * @throws IllegalStateException on a node that only verifies tokens
+     */
+    public SigningKey signingKey() {
+        List<SigningKey> current = keys;
+        if (jwksUri != null || current.isEmpty()) {
+            throw new IllegalStateException("No signing key: this node only verifies tokens");
+        }
+        return current.get(current.size() - 1);
+    }
+
+    /**
+     * @return the verification key for the kid, or null if no live key has that id
+     */
+    public PublicKey publicKey(String kid) {
+        PublicKey key = publicKeys.get(kid);
+        return key != null || (jwksUri == null && directory == null) ? key : reloadFor(kid);
+    }
+
+    /**
+     * The public half of every live key as a JWK Set (RFC 7517).
+     */
+    public Map<String, Object> jwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        publicKeys.forEach((kid, key) -> jwks.add(toJwk(kid, (ECPublicKey) key)));
+        jwks.sort(Comparator.comparing(jwk -> (String) jwk.get("kid")));
+        return Map.of("keys", jwks);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-interval:1m}")
+    public synchronized void refresh() {
+        if (jwksUri != null) {
+            fetchJwks();
+            return;
+        }
+        List<SigningKey> ring = new ArrayList<>(directory == null ? keys : load());
+        Instant now = Instant.now();
+        if (ring.isEmpty() || !ring.get(ring.size() - 1).activatedAt().plus(rotationInterval).isAfter(now)) {
+            SigningKey next = generateKey(now);
+            store(next);
+            ring.add(next);
+            log.info("Rotated JWT signing key, new kid {}", next.kid());
+        }
+        install(retire(ring, now));
+    }
+
+    // کلید قبلی تا overlap بعد از فعال شدن جانشینش برای تایید باقی می ماند
+    private List<SigningKey> retire(List<SigningKey> ring, Instant now) {
+        ring.sort(Comparator.comparing(SigningKey::activatedAt));
+        List<SigningKey> live = new ArrayList<>();
+        for (int i = 0; i < ring.size(); i++) {
+            boolean superseded = i + 1 < ring.size() && !ring.get(i + 1).activatedAt().plus(overlap).isAfter(now);
+            if (superseded) {
+                delete(ring.get(i));
+            } else {
+                live.add(ring.get(i));
+            }
+        }
+        return live;
+    }
+
+    private void install(List<SigningKey> ring) {
+        Map<String, PublicKey> byKid = new HashMap<>();
+        ring.forEach(key -> byKid.put(key.kid(), key.publicKey()));
+        this.keys = List.copyOf(ring);
+        this.publicKeys = Map.copyOf(byKid);
+    }
+
+    // ممکن است صادرکننده دیگری تازه کلید را چرخانده باشد؛ در هر jwks-min-refresh حداکثر یک بار خوانده می شود
+    private synchronized PublicKey reloadFor(String kid) {
+        PublicKey key = publicKeys.get(kid);
+        Instant now = Instant.now();
+        if (key == null && !lastFetch.plus(jwksMinRefresh).isAfter(now)) {
+            if (jwksUri != null) {
+                fetchJwks();
+            } else {
+                lastFetch = now;
+                install(retire(new ArrayList<>(load()), now));
+            }
+            key = publicKeys.get(kid);
+        }
+        return key;
+    }
+
+    private synchronized void fetchJwks() {
+        lastFetch = Instant.now();
+        try {
+            Map<?, ?> body = restClient.get().uri(jwksUri).retrieve().body(Map.class);
+            Map<String, PublicKey> byKid = new HashMap<>();
+            for (Object jwk : (List<?>) body.get("keys")) {
+                Map<?, ?> fields = (Map<?, ?>) jwk;
+                if ("EC".equals(fields.get("kty")) && "P-256".equals(fields.get("crv"))) {
+                    byKid.put((String) fields.get("kid"), fromJwk(fields));
+                }
+            }
+            this.publicKeys = Map.copyOf(byKid);
+        } catch (Exception e) {
+            // کلیدهای قبلی نگه داشته می شوند تا صادرکننده دوباره در دسترس باشد
+            log.warn("Could not read JWKS from {}: {}", jwksUri, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> toJwk(String kid, ECPublicKey key) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", "ES256");
+        jwk.put("x", encoder.encodeToString(unsigned(key.getW().getAffineX())));
+        jwk.put("y", encoder.encodeToString(unsigned(key.getW().getAffineY())));
+        return jwk;
+    }
+
+    private static PublicKey fromJwk(Map<?, ?> jwk) throws GeneralSecurityException {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        ECPoint point = new ECPoint(new BigInteger(1, decoder.decode((String) jwk.get("x"))),
+                new BigInteger(1, decoder.decode((String) jwk.get("y"))));
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(CURVE));
+        ECParameterSpec spec = parameters.getParameterSpec(ECParameterSpec.class);
+        return KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, spec));
+    }
+
+    private static byte[] unsigned(BigInteger coordinate) {
+        byte[] bytes = coordinate.toByteArray();
+        byte[] fixed = new byte[COORDINATE_BYTES];
+        int length = Math.min(bytes.length, COORDINATE_BYTES);
+        System.arraycopy(bytes, bytes.length - length, fixed, COORDINATE_BYTES - length, length);
+        return fixed;
+    }
+
+    // هر کلید دو فایل دارد: <kid>.key با PKCS#8 و <kid>.pub با X.509
+    private List<SigningKey> load() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<SigningKey> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".key")).toList()) {
+                String kid = file.getFileName().toString().replace(".key", "");
+                KeyFactory factory = KeyFactory.getInstance("EC");
+                PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(readPem(file)));
+                PublicKey publicKey = factory.generatePublic(new X509EncodedKeySpec(readPem(directory.resolve(kid + ".pub"))));
+                Instant activatedAt = Instant.ofEpochSecond(Long.parseLong(kid.substring(0, kid.indexOf('-'))));
+                loaded.add(new SigningKey(kid, privateKey, publicKey, activatedAt));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read JWT keys from " + directory, e);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new IllegalStateException("Malformed JWT key in " + directory, e);
+        }
+        return loaded;
+    }
+
+    private void store(SigningKey key) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Path privateFile = directory.resolve(key.kid() + ".key");
+            writePem(privateFile, "PRIVATE KEY", key.privateKey().getEncoded());
+            try {
+                Files.setPosixFilePermissions(privateFile, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+                // سیستم فایل غیر POSIX
+            }
+            writePem(directory.resolve(key.kid() + ".pub"), "PUBLIC KEY", key.publicKey().getEncoded());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write JWT key to " + directory, e);
+        }
+    }
+
+    private void delete(SigningKey key) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(key.kid() + ".key"));
+            Files.deleteIfExists(directory.resolve(key.kid() + ".pub"));
+        } catch (IOException e) {
+            log.warn("Could not delete retired JWT key {}: {}", key.kid(), e.getMessage());
+        }
+    }
+
+    private static void writePem(Path file, String type, byte[] der) throws IOException {
+        String body = Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(der);
+        Files.writeString(file, "-----BEGIN " + type + "-----\n" + body + "\n-----END " + type + "-----\n");
+    }
+
+    private static byte[] readPem(Path file) throws IOException {
+        String pem = Files.readString(file).replaceAll("-----[A-Z ]+-----", "");
+        return Base64.getMimeDecoder().decode(pem);
+    }
+}
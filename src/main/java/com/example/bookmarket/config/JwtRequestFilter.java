@@ -1,12 +1,12 @@
 package com.example.bookmarket.config;
 
-import io.jsonwebtoken.Claims;
+import com.example.bookmarket.service.PrincipalCache;
+import com.example.bookmarket.service.TokenRevocationService;
 import io.jsonwebtoken.ExpiredJwtException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -18,8 +18,6 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -28,32 +26,37 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final RouteTable routeTable;
+    private final TokenRevocationService tokenRevocationService;
 
     @Autowired
-    public JwtRequestFilter(JwtUtil jwtUtil, @Lazy UserDetailsService userDetailsService) {
+    public JwtRequestFilter(JwtUtil jwtUtil, @Lazy UserDetailsService userDetailsService, PrincipalCache principalCache,
+                            RouteTable routeTable, TokenRevocationService tokenRevocationService) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.routeTable = routeTable;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
 
-        String requestURI = request.getRequestURI();
-
-        if (isPublicEndpoint(requestURI)) {
+        if (routeTable.isPublic(request)) {
             chain.doFilter(request, response);
             return;
         }
 
         final String requestTokenHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwtToken = null;
+        VerifiedToken token = null;
 
         if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
+            String jwtToken = requestTokenHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwtToken);
+                // امضا و انقضا فقط یک بار برای هر توکن بررسی می شود
+                token = jwtUtil.verify(jwtToken);
             } catch (ExpiredJwtException e) {
                 log.warn("JWT Token has expired");
                 sendErrorResponse(response, "JWT Token has expired", HttpServletResponse.SC_UNAUTHORIZED);
@@ -65,30 +68,29 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             }
         }
 
-        if (requiresAuthentication(requestURI) && username == null) {
+        if (token == null) {
             sendErrorResponse(response, "JWT token is required", HttpServletResponse.SC_UNAUTHORIZED);
             return;
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            try {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-                if (jwtUtil.validateToken(jwtToken, userDetails.getUsername())) {
-                    Claims claims = jwtUtil.extractAllClaims(jwtToken);
+        if (tokenRevocationService.isRevoked(token)) {
+            log.warn("Revoked JWT token used by {}", token.username());
+            sendErrorResponse(response, "JWT token has been revoked", HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
 
-                    List<String> roles = claims.get("roles", List.class);
-                    if (roles != null) {
-                        var authorities = roles.stream()
-                                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                                .collect(Collectors.toList());
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            try {
+                UserDetails userDetails = principalCache.get(token.username(), userDetailsService::loadUserByUsername);
 
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
+                if (token.isAccessToken()) {
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, token.authorities());
+                    // توکن تایید شده برای ابطال هنگام خروج در دسترس کنترلرها می ماند
+                    authToken.setDetails(token);
 
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                        log.debug("Authenticated user: {} with roles: {}", username, roles);
-                    }
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
+                    log.debug("Authenticated user: {} with roles: {}", token.username(), token.roles());
                 }
             } catch (Exception e) {
                 log.error("Cannot set user authentication: {}", e.getMessage());
@@ -99,43 +101,6 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         chain.doFilter(request, response);
     }
 
-    private boolean isPublicEndpoint(String requestURI) {
-        List<String> publicEndpoints = List.of(
-                "/api/v1/user/login",
-                "/api/v1/user/register",
-                "/api/v1/librarians/login",
-                "/api/v1/librarians/register",
-                "/swagger-ui",
-                "/swagger-ui/",
-                "/swagger-ui.html",
-                "/swagger-ui/**",
-                "/v3/api-docs",
-                "/v3/api-docs/",
-                "/v3/api-docs/**",
-                "/api-docs",
-                "/api-docs/",
-                "/api-docs/**",
-                "/webjars/",
-                "/webjars/**",
-                "/swagger-resources",
-                "/swagger-resources/",
-                "/swagger-resources/**",
-                "/configuration/ui",
-                "/configuration/security",
-                "/favicon.ico"
-        );
-
-        return publicEndpoints.stream().anyMatch(uri ->
-                requestURI.equals(uri) ||
-                        requestURI.startsWith(uri.replace("/**", "")) ||
-                        uri.replace("/**", "").startsWith(requestURI)
-        );
-    }
-
-    private boolean requiresAuthentication(String requestURI) {
-        return !isPublicEndpoint(requestURI);
-    }
-
     private void sendErrorResponse(HttpServletResponse response, String message, int status) throws IOException {
         response.setStatus(status);
         response.setContentType("application/json");
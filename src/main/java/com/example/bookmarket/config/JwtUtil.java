@@ -1,28 +1,79 @@
 package com.example.bookmarket.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 
 @Component
 public class JwtUtil {
 
-    private final Key secretKey;
+    private final JwtKeyRing keyRing;
+    private final Clock clock;
+    private final Key legacyKey;
+    private final JwtParser parser;
+
+    // توکن های تایید شده بر اساس SHA-256 توکن، هر کدام تا زمان exp خودش
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
 
     private static final long ACCESS_TOKEN_VALIDITY = 1000 * 60 * 15; // 15 دقیقه
     private static final long REFRESH_TOKEN_VALIDITY = 1000 * 60 * 15; // 30 روز
 
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
-        if (secret == null || secret.length() < 32) {
+    /**
+     * @param legacySecret HS256 secret of tokens issued before signing moved to {@link JwtKeyRing}; tokens without
+     *                     a kid are checked against it until they expire. Leave empty once they have.
+     */
+    @Autowired
+    public JwtUtil(JwtKeyRing keyRing,
+                   @Value("${jwt.secret:}") String legacySecret,
+                   @Value("${jwt.cache.maximum-size:10000}") long cacheSize) {
+        this(keyRing, legacySecret, cacheSize, Clock.systemUTC());
+    }
+
+    JwtUtil(JwtKeyRing keyRing, String legacySecret, long cacheSize, Clock clock) {
+        if (!legacySecret.isEmpty() && legacySecret.length() < 32) {
             throw new IllegalArgumentException("JWT secret must be at least 32 characters long!");
         }
-        this.secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        if (keyRing.getOverlap().compareTo(maxTokenValidity()) < 0) {
+            throw new IllegalArgumentException("jwt.keys.overlap must be at least the longest token lifetime");
+        }
+        this.keyRing = keyRing;
+        this.clock = clock;
+        this.legacyKey = legacySecret.isEmpty() ? null : Keys.hmacShaKeyFor(legacySecret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setClock(() -> Date.from(clock.instant()))
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return verificationKey(header.getKeyId());
+                    }
+                })
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(Expiry.creating((ByteBuffer digest, VerifiedToken token) ->
+                        Duration.between(clock.instant(), token.expiresAt())))
+                .build();
     }
 
     public String generateToken(String username, Set<String> roles) {
@@ -39,52 +90,65 @@ public class JwtUtil {
     }
 
     private String createToken(Map<String, Object> claims, String subject, long validity) {
+        JwtKeyRing.SigningKey key = keyRing.signingKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.kid())
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + validity))
-                .signWith(secretKey, SignatureAlgorithm.HS256)
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(Date.from(clock.instant()))
+                .setExpiration(new Date(clock.millis() + validity))
+                .signWith(key.privateKey(), SignatureAlgorithm.ES256)
                 .compact();
     }
 
+    /**
+     * Longest lifetime of any token this class issues; nothing issued before {@code now - maxTokenValidity()}
+     * can still be accepted.
+     */
+    public Duration maxTokenValidity() {
+        return Duration.ofMillis(Math.max(ACCESS_TOKEN_VALIDITY, REFRESH_TOKEN_VALIDITY));
+    }
+
+    /**
+     * Checks signature and expiry and returns the token's claims. Each distinct token is parsed once;
+     * later calls are answered from a cache keyed by the token's SHA-256 digest.
+     *
+     * @throws io.jsonwebtoken.ExpiredJwtException if the token has expired
+     * @throws io.jsonwebtoken.JwtException        if the token is malformed or its signature is invalid
+     */
+    public VerifiedToken verify(String token) {
+        ByteBuffer digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(clock.instant())) {
+            return cached;
+        }
+
+        // توکن منقضی اینجا ExpiredJwtException پرتاب می کند و کش نمی شود
+        VerifiedToken verified = VerifiedToken.from(parser.parseClaimsJws(token).getBody());
+        verifiedTokens.put(digest, verified);
+        return verified;
+    }
+
     public boolean validateToken(String token, String username) {
         try {
-            final String extractedUsername = extractUsername(token);
-            return (extractedUsername.equals(username) && !isTokenExpired(token));
+            return verify(token).username().equals(username);
         } catch (Exception e) {
             return false;
         }
     }
 
     public String extractUsername(String token) {
-        return extractAllClaims(token).getSubject();
-    }
-
-    public Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractAllClaims(token).getExpiration().before(new Date());
+        return verify(token).username();
     }
 
     public Set<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        List<String> roles = claims.get("roles", List.class);
-        return roles != null ? new HashSet<>(roles) : new HashSet<>();
+        return new HashSet<>(verify(token).roles());
     }
 
-    // در کلاس JwtUtil
     public boolean isRefreshToken(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            String tokenType = claims.get("token_type", String.class);
-            return "refresh".equals(tokenType);
+            return verify(token).isRefreshToken();
         } catch (Exception e) {
             return false;
         }
@@ -92,11 +156,31 @@ public class JwtUtil {
 
     public boolean isAccessToken(String token) {
         try {
-            Claims claims = extractAllClaims(token);
-            String tokenType = claims.get("token_type", String.class);
-            return "access".equals(tokenType);
+            return verify(token).isAccessToken();
         } catch (Exception e) {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private Key verificationKey(String kid) {
+        if (kid == null) {
+            if (legacyKey == null) {
+                throw new SignatureException("Token has no kid");
+            }
+            return legacyKey;
+        }
+        Key key = keyRing.publicKey(kid);
+        if (key == null) {
+            throw new SignatureException("Unknown signing key " + kid);
+        }
+        return key;
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.bookmarket.config;
+
+import com.example.bookmarket.enums.RouteAccess;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Access rules for every API path, compiled into a trie of path segments.
+ * <p>
+ * Patterns use literal segments, {@code {name}} for any single segment and a trailing {@code **} for
+ * zero or more segments. The most specific rule wins: a literal segment beats {@code {name}}, which
+ * beats {@code **}, regardless of declaration order. Lookups walk the path in place and allocate nothing.
+ */
+public final class RouteTable {
+
+    private final Node root;
+
+    private RouteTable(Node root) {
+        this.root = root;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the access rule for {@code path}, or null when no route matches
+     */
+    public RouteAccess lookup(String path) {
+        return match(root, path, 0);
+    }
+
+    public RouteAccess lookup(HttpServletRequest request) {
+        return lookup(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    public boolean isPublic(HttpServletRequest request) {
+        return lookup(request) == RouteAccess.PUBLIC;
+    }
+
+    public boolean isAllowed(HttpServletRequest request, Authentication authentication) {
+        RouteAccess access = lookup(request);
+        if (access == null) {
+            return false;
+        }
+        if (access == RouteAccess.PUBLIC) {
+            return true;
+        }
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            String name = authority.getAuthority();
+            if (name != null && name.startsWith("ROLE_") && hasRole(access, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasRole(RouteAccess access, String authority) {
+        for (String role : access.getRoles()) {
+            if (authority.length() == 5 + role.length() && authority.startsWith(role, 5)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static RouteAccess match(Node node, String path, int from) {
+        int start = from;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        if (start == path.length()) {
+            return node.exact != null ? node.exact : node.rest;
+        }
+
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+
+        Node literal = node.literal(path, start, end);
+        if (literal != null) {
+            RouteAccess access = match(literal, path, end);
+            if (access != null) {
+                return access;
+            }
+        }
+        if (node.variable != null) {
+            RouteAccess access = match(node.variable, path, end);
+            if (access != null) {
+                return access;
+            }
+        }
+        return node.rest;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private Node variable;
+        private RouteAccess exact;
+        private RouteAccess rest;
+
+        // بعد از build پر می شوند تا جستجو بدون ساختن رشته انجام شود
+        private String[] literalKeys = new String[0];
+        private Node[] literalNodes = new Node[0];
+
+        private Node literal(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i < literalKeys.length; i++) {
+                String key = literalKeys[i];
+                if (key.length() == length && path.regionMatches(start, key, 0, length)) {
+                    return literalNodes[i];
+                }
+            }
+            return null;
+        }
+
+        private void freeze() {
+            literalKeys = children.keySet().toArray(new String[0]);
+            literalNodes = children.values().toArray(new Node[0]);
+            for (Node child : literalNodes) {
+                child.freeze();
+            }
+            if (variable != null) {
+                variable.freeze();
+            }
+        }
+    }
+
+    public static final class Builder {
+
+        private final Node root = new Node();
+
+        private Builder() {
+        }
+
+        public Builder route(RouteAccess access, String... patterns) {
+            for (String pattern : patterns) {
+                add(access, pattern);
+            }
+            return this;
+        }
+
+        public RouteTable build() {
+            root.freeze();
+            return new RouteTable(root);
+        }
+
+        private void add(RouteAccess access, String pattern) {
+            String[] segments = pattern.split("/");
+            Node node = root;
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (segment.equals("**")) {
+                    if (i != segments.length - 1) {
+                        throw new IllegalArgumentException("'**' must be the last segment: " + pattern);
+                    }
+                    node.rest = assign(node.rest, access, pattern);
+                    return;
+                }
+                if (segment.startsWith("{") && segment.endsWith("}")) {
+                    if (node.variable == null) {
+                        node.variable = new Node();
+                    }
+                    node = node.variable;
+                } else {
+                    node = node.children.computeIfAbsent(segment, key -> new Node());
+                }
+            }
+            node.exact = assign(node.exact, access, pattern);
+        }
+
+        private RouteAccess assign(RouteAccess current, RouteAccess access, String pattern) {
+            if (current != null && current != access) {
+                throw new IllegalStateException("Route " + pattern + " is declared as both " + current + " and " + access);
+            }
+            return access;
+        }
+    }
+}
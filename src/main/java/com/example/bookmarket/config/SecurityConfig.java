@@ -1,20 +1,25 @@
 package com.example.bookmarket.config;
 
+import com.example.bookmarket.enums.RouteAccess;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+
 @Slf4j
 @Configuration
 @EnableWebSecurity
@@ -27,7 +32,7 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, RouteTable routeTable) throws Exception {
         http
                 .cors(AbstractHttpConfigurer::disable)
                 .csrf(AbstractHttpConfigurer::disable)
@@ -35,59 +40,8 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authorizeHttpRequests(authz -> authz
-                        // ==================== PUBLIC ENDPOINTS ==================== //
-                        .requestMatchers(
-                                "/api/v1/user/login",
-                                "/api/v1/user/register",
-                                "/api/v1/librarians/login",
-                                "/api/v1/librarians/register",
-                                "/swagger-ui/**",
-                                "/v3/api-docs/**",
-                                "/api-docs/**",
-                                "/swagger-ui.html",
-                                "/webjars/**",
-                                "/swagger-resources/**",
-                                "/configuration/ui",
-                                "/configuration/security",
-                                "/favicon.ico"
-                        ).permitAll()
-
-                        .requestMatchers(
-                                "/api/v1/books/{bookId}",
-                                "/api/v1/books/search",
-                                "/api/v1/books/all",
-                                "/api/v1/comments/{commentId}",
-                                "/api/v1/comments/book/**",
-                                "/api/v1/loans/{loanId}",
-                                "/api/v1/loans/search",
-                                "/api/v1/loans/all"
-                        ).hasAnyRole("USER", "ADMIN")
-
-                        .requestMatchers(
-                                "/api/v1/librarians/logout/**",
-                                "/api/v1/librarians/update",
-                                "/api/v1/librarians/delete/**",
-                                "/api/v1/librarians/refresh-token",
-                                "/api/v1/statistics",
-                                "/api/v1/user/delete/**",
-                                "/api/v1/loans/delete/**",
-                                "/api/v1/loans/update",
-                                "/api/v1/loans/stats",
-                                "/api/v1/books/add",
-                                "/api/v1/books/update",
-                                "/api/v1/books/delete/**"
-                        ).hasRole("ADMIN")
-
-                        .requestMatchers(
-                                "/api/v1/user/logout/**",
-                                "/api/v1/user/update",
-                                "/api/v1/user/refresh-token",
-                                "/api/v1/comments/add",
-                                "/api/v1/loans/add",
-                                "/api/v1/loans/return/**"
-                        ).hasRole("USER")
-
-                        .anyRequest().denyAll()
+                        .anyRequest().access((authentication, context) ->
+                                new AuthorizationDecision(routeTable.isAllowed(context.getRequest(), authentication.get())))
                 );
 
         http.addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
@@ -100,13 +54,102 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // جدول واحد دسترسی ها که هم این زنجیره و هم JwtRequestFilter از آن استفاده می کنند؛
+    // مسیری که اینجا نباشد رد می شود
+    @Bean
+    public static RouteTable routeTable() {
+        return RouteTable.builder()
+                // ==================== PUBLIC ENDPOINTS ==================== //
+                .route(RouteAccess.PUBLIC,
+                        "/api/v1/user/login",
+                        "/api/v1/user/register",
+                        "/api/v1/librarians/login",
+                        "/api/v1/librarians/register",
+                        "/.well-known/jwks.json",
+                        "/swagger-ui/**",
+                        "/v3/api-docs/**",
+                        "/api-docs/**",
+                        "/swagger-ui.html",
+                        "/webjars/**",
+                        "/swagger-resources/**",
+                        "/configuration/ui",
+                        "/configuration/security",
+                        "/favicon.ico")
+
+                .route(RouteAccess.USER_OR_ADMIN,
+                        "/api/v1/books/{bookId}",
+                        "/api/v1/books/search",
+                        "/api/v1/books/search/ranked",
+                        "/api/v1/books/autocomplete",
+                        "/api/v1/books/all",
+                        "/api/v1/comments/{commentId}",
+                        "/api/v1/comments/book/**",
+                        "/api/v1/loans/{loanId}",
+                        "/api/v1/loans/search",
+                        "/api/v1/loans/all",
+                        "/api/v1/user/revoke-all/**")
+
+                .route(RouteAccess.ADMIN,
+                        "/api/v1/librarians/logout/**",
+                        "/api/v1/librarians/update",
+                        "/api/v1/librarians/delete/**",
+                        "/api/v1/librarians/refresh-token",
+                        "/api/v1/librarians/revoke-all/**",
+                        "/api/v1/statistics",
+                        "/api/v1/statistics/**",
+                        "/actuator/**",
+                        "/api/v1/user/delete/**",
+                        "/api/v1/loans/delete/**",
+                        "/api/v1/loans/update",
+                        "/api/v1/loans/stats",
+                        "/api/v1/books/add",
+                        "/api/v1/books/update",
+                        "/api/v1/books/delete/**")
+
+                .route(RouteAccess.USER,
+                        "/api/v1/user/logout/**",
+                        "/api/v1/user/update",
+                        "/api/v1/user/refresh-token",
+                        "/api/v1/comments/add",
+                        "/api/v1/loans/add",
+                        "/api/v1/loans/return/**")
+                .build();
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authConfig) throws Exception {
         return authConfig.getAuthenticationManager();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public CalibratedPasswordEncoder passwordEncoder(@Value("${security.password.cost:0}") int cost,
+                                                     @Value("${security.password.target-verify-time:50ms}") Duration target,
+                                                     @Value("${security.password.min-cost:10}") int minCost,
+                                                     @Value("${security.password.max-cost:14}") int maxCost,
+                                                     @Value("${security.password.cost-tolerance:1}") int tolerance,
+                                                     MeterRegistry meterRegistry) {
+        CalibratedPasswordEncoder encoder;
+        if (cost > 0) {
+            // cost ثابت شده بر اندازه گیری مقدم است
+            encoder = CalibratedPasswordEncoder.withCost(Math.max(minCost, Math.min(maxCost, cost)), tolerance);
+            log.info("Password hashing: bcrypt cost {} (pinned) verifies in {} ms",
+                    encoder.getCost(), String.format("%.1f", encoder.getVerifyMillis()));
+        } else {
+            encoder = CalibratedPasswordEncoder.calibrate(target, minCost, maxCost, tolerance);
+            log.info("Password hashing calibrated: bcrypt cost {} verifies in {} ms (target {} ms)",
+                    encoder.getCost(), String.format("%.1f", encoder.getVerifyMillis()), target.toMillis());
+        }
+
+        Gauge.builder("security.password.cost", encoder, CalibratedPasswordEncoder::getCost)
+                .description("BCrypt work factor in use")
+                .register(meterRegistry);
+        Gauge.builder("security.password.verify.time", encoder, CalibratedPasswordEncoder::getVerifyMillis)
+                .description("Measured verification time at the chosen work factor")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("security.password.verify.target", target, t -> t.toNanos() / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        return encoder;
     }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package com.example.bookmarket.config;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Claims of a JWT whose signature and expiry have been checked, read once into immutable fields.
+ */
+public record VerifiedToken(
+        String tokenId,
+        String username,
+        String tokenType,
+        Set<String> roles,
+        List<GrantedAuthority> authorities,
+        Instant issuedAt,
+        Instant expiresAt
+) {
+    static VerifiedToken from(Claims claims) {
+        Collection<?> roleClaim = claims.get("roles", Collection.class);
+        Set<String> roles = roleClaim == null ? Set.of() : Set.copyOf(roleClaim.stream().map(String::valueOf).toList());
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority("ROLE_" + role))
+                .toList();
+
+        return new VerifiedToken(
+                claims.getId(),
+                claims.getSubject(),
+                claims.get("token_type", String.class),
+                roles,
+                authorities,
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration().toInstant()
+        );
+    }
+
+    public boolean isAccessToken() {
+        return "access".equals(tokenType);
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(tokenType);
+    }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
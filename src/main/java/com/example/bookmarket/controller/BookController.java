@@ -1,12 +1,20 @@
 package com.example.bookmarket.controller;
 
 import com.example.bookmarket.dto.AddBookDto;
+import com.example.bookmarket.dto.BookSearchHitDto;
+import com.example.bookmarket.dto.CursorPageDto;
+import com.example.bookmarket.dto.PageDto;
 import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.enums.AutocompleteField;
+import com.example.bookmarket.enums.BookSortField;
 import com.example.bookmarket.exception.BookNotFoundException;
 import com.example.bookmarket.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -55,21 +63,45 @@ public class BookController {
 
     @Operation(summary = "پیدا کردن همه کتاب ها")
     @GetMapping("/all")
-    public ResponseEntity<List<UpdateBookDto>> getAllBooks() {
-        List<UpdateBookDto> books = bookService.findAll();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<CursorPageDto<UpdateBookDto>> getAllBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "ID") BookSortField sort) {
+        CursorPageDto<UpdateBookDto> page = bookService.findPage(cursor, size, sort);
+        return ResponseEntity.ok(page);
     }
 
     @Operation(summary = "پیدا کردن کتاب ها با فیلتر")
     @GetMapping("/search")
-    public ResponseEntity<List<UpdateBookDto>> searchBooks(
+    public ResponseEntity<PageDto<UpdateBookDto>> searchBooks(
             @RequestParam(required = false) String title,
             @RequestParam(required = false) String author,
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) BigDecimal minPrice,
-            @RequestParam(required = false) BigDecimal maxPrice) {
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @ParameterObject @PageableDefault(size = 20, sort = "id") Pageable pageable) {
 
-        List<UpdateBookDto> books = bookService.searchBooks(title, author, genre, minPrice, maxPrice);
+        PageDto<UpdateBookDto> books = bookService.searchBooks(title, author, genre, minPrice, maxPrice, pageable);
         return ResponseEntity.ok(books);
     }
+
+    @Operation(summary = "جستجوی متنی رتبه بندی شده کتاب ها")
+    @GetMapping("/search/ranked")
+    public ResponseEntity<List<BookSearchHitDto>> rankedSearch(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean fuzzy) {
+        List<BookSearchHitDto> hits = bookService.rankedSearch(q, limit, fuzzy);
+        return ResponseEntity.ok(hits);
+    }
+
+    @Operation(summary = "تکمیل خودکار عنوان یا نویسنده")
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<String>> autocomplete(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "TITLE") AutocompleteField field,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<String> completions = bookService.autocomplete(prefix, field, limit);
+        return ResponseEntity.ok(completions);
+    }
 }
\ No newline at end of file
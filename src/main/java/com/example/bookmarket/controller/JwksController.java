@@ -0,0 +1,34 @@
+package com.example.bookmarket.controller;
+
+import com.example.bookmarket.config.JwtKeyRing;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@Tag(name = "کلیدهای عمومی JWT", description = "")
+public class JwksController {
+    private final JwtKeyRing keyRing;
+    private final Duration maxAge;
+
+    // نودهای خواننده هم هر refresh-interval یک بار می خوانند؛ کش طولانی تر فقط کلید جدید را دیرتر می رساند
+    public JwksController(JwtKeyRing keyRing, @Value("${jwt.keys.refresh-interval:1m}") Duration maxAge) {
+        this.keyRing = keyRing;
+        this.maxAge = maxAge;
+    }
+
+    @Operation(summary = "کلیدهای عمومی برای تایید توکن ها")
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(maxAge).cachePublic())
+                .body(keyRing.jwks());
+    }
+}
@@ -1,16 +1,20 @@
 package com.example.bookmarket.controller;
 
 import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
 import com.example.bookmarket.dto.AddLibrarianDto;
 import com.example.bookmarket.dto.RefreshTokenRequest;
 import com.example.bookmarket.dto.TokenDto;
 import com.example.bookmarket.dto.UpdateLibrarianDto;
 import com.example.bookmarket.service.LibrarianService;
+import com.example.bookmarket.service.LoginThrottle;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -19,10 +23,12 @@ import org.springframework.web.bind.annotation.*;
 public class LibrarianController {
     private final LibrarianService librarianService;
     private final JwtUtil jwtUtil;
+    private final LoginThrottle loginThrottle;
 
-    public LibrarianController(LibrarianService librarianService, JwtUtil jwtUtil) {
+    public LibrarianController(LibrarianService librarianService, JwtUtil jwtUtil, LoginThrottle loginThrottle) {
         this.librarianService = librarianService;
         this.jwtUtil = jwtUtil;
+        this.loginThrottle = loginThrottle;
     }
 
     @Operation(summary = "ثبت نام کردن کتابدار")
@@ -34,15 +40,26 @@ public class LibrarianController {
 
     @Operation(summary = "وارد شدن کتابدار")
     @PostMapping("/login")
-    public ResponseEntity<TokenDto> login(@RequestParam String username, @RequestParam String password) {
+    public ResponseEntity<TokenDto> login(@RequestParam String username, @RequestParam String password,
+                                          HttpServletRequest request) {
+        loginThrottle.acquire(username, request.getRemoteAddr());
         TokenDto tokenDto = librarianService.login(username, password);
         return ResponseEntity.ok(tokenDto);
     }
 
     @Operation(summary = "خارج شدن کتابدار")
     @PostMapping("/logout/{userId}")
-    public ResponseEntity<Void> logout(@PathVariable Long userId) {
-        librarianService.logout(userId);
+    public ResponseEntity<Void> logout(@PathVariable Long userId, Authentication authentication) {
+        VerifiedToken accessToken = authentication != null && authentication.getDetails() instanceof VerifiedToken token
+                ? token : null;
+        librarianService.logout(userId, accessToken);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "ابطال همه توکن های کتابدار")
+    @PostMapping("/revoke-all/{userId}")
+    public ResponseEntity<Void> revokeAll(@PathVariable Long userId) {
+        librarianService.revokeAllTokens(userId);
         return ResponseEntity.noContent().build();
     }
 
@@ -1,18 +1,24 @@
 package com.example.bookmarket.controller;
 
+import com.example.bookmarket.dto.CursorPageDto;
 import com.example.bookmarket.dto.LoanDto;
+import com.example.bookmarket.dto.LoanSearchCriteria;
+import com.example.bookmarket.dto.StatisticsDto;
 import com.example.bookmarket.dto.UpdateLoanDto;
 import com.example.bookmarket.enums.LoanStatus;
 import com.example.bookmarket.exception.LoanNotFoundException;
 import com.example.bookmarket.service.LoanService;
+import com.example.bookmarket.service.StatisticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +30,7 @@ import java.util.Map;
 public class LoanController {
 
     private final LoanService loanService;
+    private final StatisticsService statisticsService;
 
     @Operation(summary = "امانت گرفتن کتاب")
     @PostMapping("/add")
@@ -71,22 +78,30 @@ public class LoanController {
     @Operation(summary = "وضعیت امانت ها")
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Long>> getLoanStats() {
+        StatisticsDto statistics = statisticsService.getStatistics();
         Map<String, Long> stats = new HashMap<>();
-        stats.put("activeLoans", loanService.countActiveLoans());
-        stats.put("returnedLoans", loanService.countReturnedLoans());
-        stats.put("totalLoans", loanService.countTotalLoans());
+        stats.put("activeLoans", statistics.activeLoans());
+        stats.put("returnedLoans", statistics.returnedLoans());
+        stats.put("totalLoans", statistics.totalLoans());
 
         return ResponseEntity.ok(stats);
     }
 
     @Operation(summary = "پیدا کردن امانت با فیلتر")
     @GetMapping("/search")
-    public ResponseEntity<List<UpdateLoanDto>> searchLoans(
+    public ResponseEntity<CursorPageDto<UpdateLoanDto>> searchLoans(
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) Long bookId,
-            @RequestParam(required = false) LoanStatus status) {
+            @RequestParam(required = false) LoanStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate loanedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate loanedTo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dueTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
 
-        List<UpdateLoanDto> loans = loanService.searchLoans(userId, bookId, status);
+        LoanSearchCriteria criteria = new LoanSearchCriteria(userId, bookId, status, loanedFrom, loanedTo, dueFrom, dueTo);
+        CursorPageDto<UpdateLoanDto> loans = loanService.searchLoans(criteria, cursor, size);
         return ResponseEntity.ok(loans);
     }
-}
\ No newline at end of file
+}
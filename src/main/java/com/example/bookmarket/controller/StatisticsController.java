@@ -1,14 +1,25 @@
 package com.example.bookmarket.controller;
 
+import com.example.bookmarket.dto.DistinctUsersDto;
+import com.example.bookmarket.dto.LoanActivityDto;
+import com.example.bookmarket.dto.MostBorrowedDto;
+import com.example.bookmarket.dto.RevenueDto;
 import com.example.bookmarket.dto.StatisticsDto;
+import com.example.bookmarket.enums.RevenuePeriod;
+import com.example.bookmarket.enums.RollupGranularity;
 import com.example.bookmarket.service.StatisticsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.List;
+
 @RestController
 @RequestMapping("api/v1/statistics")
 @Tag(name = "وضعیت جامع سایت", description = "")
@@ -25,4 +36,47 @@ public class StatisticsController {
         StatisticsDto stats = statisticsService.getStatistics();
         return ResponseEntity.ok(stats);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "امانت، برگشت و دیرکرد به تفکیک ژانر در هر ساعت یا روز")
+    @GetMapping("/loans/activity")
+    public ResponseEntity<List<LoanActivityDto>> getLoanActivity(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") RollupGranularity granularity,
+            @RequestParam(required = false) String genre) {
+        List<LoanActivityDto> activity = statisticsService.getLoanActivity(granularity, from, to, genre);
+        return ResponseEntity.ok(activity);
+    }
+
+    @Operation(summary = "پرامانت ترین کتاب های چند روز اخیر (تقریبی، با کران خطا)")
+    @GetMapping("/books/most-borrowed")
+    public ResponseEntity<List<MostBorrowedDto>> getMostBorrowed(
+            @RequestParam(defaultValue = "7") int days,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<MostBorrowedDto> books = statisticsService.getMostBorrowed(days, limit);
+        return ResponseEntity.ok(books);
+    }
+
+    @Operation(summary = "تعداد تقریبی امانت گیرندگان و نظر دهندگان متمایز در یک بازه")
+    @GetMapping("/users/distinct")
+    public ResponseEntity<DistinctUsersDto> getDistinctUsers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        DistinctUsersDto users = statisticsService.getDistinctUsers(from, to);
+        return ResponseEntity.ok(users);
+    }
+
+    @Operation(summary = "درآمد، تخفیف و میانگین قیمت امانت ها به تفکیک ژانر و دوره",
+            description = "امانت های تازه حداکثر بعد از statistics.revenue.refresh-interval دیده می شوند. ویرایش "
+                    + "(کتاب، ژانر یا قیمت) و حذف امانت هایی که قبلا خوانده شده اند تا بازسازی بعدی، هر "
+                    + "statistics.revenue.rebuild-interval، با مقدار قبلی شمرده می شوند.")
+    @GetMapping("/revenue")
+    public ResponseEntity<List<RevenueDto>> getRevenue(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "MONTH") RevenuePeriod period,
+            @RequestParam(required = false) String genre) {
+        List<RevenueDto> revenue = statisticsService.getRevenue(period, from, to, genre);
+        return ResponseEntity.ok(revenue);
+    }
+}
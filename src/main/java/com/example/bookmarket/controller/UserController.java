@@ -1,15 +1,19 @@
 package com.example.bookmarket.controller;
 
 import com.example.bookmarket.dto.*;
+import com.example.bookmarket.service.LoginThrottle;
 import com.example.bookmarket.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,11 +24,13 @@ import org.slf4j.LoggerFactory;
 public class UserController {
     private final UserService userService;
     private final JwtUtil jwtUtil;
+    private final LoginThrottle loginThrottle;
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
-    public UserController(UserService userService, JwtUtil jwtUtil) {
+    public UserController(UserService userService, JwtUtil jwtUtil, LoginThrottle loginThrottle) {
         this.userService = userService;
         this.jwtUtil = jwtUtil;
+        this.loginThrottle = loginThrottle;
     }
 
     @Operation(summary = "ثبت نام کردن کاربر")
@@ -36,15 +42,27 @@ public class UserController {
 
     @Operation(summary = "وارد شدن کاربر")
     @PostMapping("/login")
-    public ResponseEntity<TokenDto> login(@Valid @RequestBody LoginUserDto loginRequestDto) {
+    public ResponseEntity<TokenDto> login(@Valid @RequestBody LoginUserDto loginRequestDto, HttpServletRequest request) {
+        loginThrottle.acquire(loginRequestDto.username(), request.getRemoteAddr());
         TokenDto tokenDto = userService.login(loginRequestDto.username(), loginRequestDto.password());
         return ResponseEntity.ok(tokenDto);
     }
 
     @Operation(summary = "خارج شدن کاربر")
     @PostMapping("/logout/{userId}")
-    public ResponseEntity<Void> logout(@PathVariable Long userId) {
-        userService.logout(userId);
+    public ResponseEntity<Void> logout(@PathVariable Long userId, Authentication authentication) {
+        VerifiedToken accessToken = authentication != null && authentication.getDetails() instanceof VerifiedToken token
+                ? token : null;
+        userService.logout(userId, accessToken);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "ابطال همه توکن های کاربر")
+    @PostMapping("/revoke-all/{userId}")
+    public ResponseEntity<Void> revokeAll(@PathVariable Long userId, Authentication authentication) {
+        VerifiedToken caller = authentication != null && authentication.getDetails() instanceof VerifiedToken token
+                ? token : null;
+        userService.revokeAllTokens(userId, caller);
         return ResponseEntity.noContent().build();
     }
 
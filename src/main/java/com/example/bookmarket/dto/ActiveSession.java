@@ -0,0 +1,10 @@
+package com.example.bookmarket.dto;
+
+import java.time.Instant;
+
+// نشستی که در پایگاه داده هنوز فعال است؛ برای بازسازی SessionRegistry بعد از راه اندازی مجدد
+public interface ActiveSession {
+    Long getId();
+    String getUsername();
+    Instant getExpiresAt();
+}
@@ -0,0 +1,10 @@
+package com.example.bookmarket.dto;
+
+public record BookSearchHitDto(
+        Long id,
+        String title,
+        String author,
+        String genre,
+        double score
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.bookmarket.dto;
+
+import java.util.List;
+
+public record CursorPageDto<T>(
+        List<T> items,
+        String nextCursor,
+        boolean hasNext
+) {
+}
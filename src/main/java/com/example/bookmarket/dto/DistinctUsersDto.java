@@ -0,0 +1,16 @@
+package com.example.bookmarket.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Approximate number of distinct users who borrowed or commented between {@code from} and {@code to}, both
+ * inclusive. {@code standardError} is relative, e.g. 0.016 for 1.6%.
+ */
+public record DistinctUsersDto(
+        LocalDate from,
+        LocalDate to,
+        long borrowers,
+        long commenters,
+        double standardError
+) {
+}
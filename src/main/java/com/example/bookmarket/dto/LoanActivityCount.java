@@ -0,0 +1,11 @@
+package com.example.bookmarket.dto;
+
+import java.time.LocalDate;
+
+// شمارش امانت ها برای یک ژانر در یک ساعت از یک روز، برای پر کردن اولیه rollup ها
+public interface LoanActivityCount {
+    String getGenre();
+    LocalDate getDay();
+    Integer getHour();
+    long getTotal();
+}
@@ -0,0 +1,12 @@
+package com.example.bookmarket.dto;
+
+import java.time.LocalDateTime;
+
+public record LoanActivityDto(
+        LocalDateTime bucket,
+        String genre,
+        long checkouts,
+        long returns,
+        long overdues
+) {
+}
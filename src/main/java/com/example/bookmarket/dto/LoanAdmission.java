@@ -0,0 +1,12 @@
+package com.example.bookmarket.dto;
+
+import java.math.BigDecimal;
+
+// همه چیزی که برای پذیرش یک امانت از پایگاه داده لازم است، در یک کوئری
+public interface LoanAdmission {
+    long getActiveLoans();
+    Integer getStock();
+    BigDecimal getPrice();
+    BigDecimal getFinalPrice();
+    String getGenre();
+}
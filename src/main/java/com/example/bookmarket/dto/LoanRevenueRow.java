@@ -0,0 +1,13 @@
+package com.example.bookmarket.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// ستون های لازم برای تحلیل درآمد، بدون بارگذاری موجودیت امانت
+public interface LoanRevenueRow {
+    Long getId();
+    String getGenre();
+    LocalDateTime getLoanDate();
+    BigDecimal getPrice();
+    BigDecimal getFinalPrice();
+}
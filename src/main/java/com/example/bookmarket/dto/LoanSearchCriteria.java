@@ -0,0 +1,17 @@
+package com.example.bookmarket.dto;
+
+import com.example.bookmarket.enums.LoanStatus;
+
+import java.time.LocalDate;
+
+// فیلترهای جستجوی امانت؛ هر مقدار null یعنی بدون محدودیت و بازه ها شامل دو سر هستند
+public record LoanSearchCriteria(
+        Long userId,
+        Long bookId,
+        LoanStatus status,
+        LocalDate loanedFrom,
+        LocalDate loanedTo,
+        LocalDate dueFrom,
+        LocalDate dueTo
+) {
+}
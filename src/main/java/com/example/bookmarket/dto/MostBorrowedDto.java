@@ -0,0 +1,14 @@
+package com.example.bookmarket.dto;
+
+/**
+ * {@code count} is an upper bound on how often the book was borrowed in the window and {@code count - error} a
+ * lower bound. {@code guaranteed} is true when the book is certainly among the top books of the window.
+ */
+public record MostBorrowedDto(
+        Long bookId,
+        String title,
+        long count,
+        long error,
+        boolean guaranteed
+) {
+}
@@ -0,0 +1,9 @@
+package com.example.bookmarket.dto;
+
+import java.time.LocalDate;
+
+public interface OverdueCount {
+    String getGenre();
+    LocalDate getDueDate();
+    long getTotal();
+}
@@ -0,0 +1,12 @@
+package com.example.bookmarket.dto;
+
+import java.util.List;
+
+public record PageDto<T>(
+        List<T> items,
+        int page,
+        int size,
+        long totalElements,
+        int totalPages
+) {
+}
@@ -0,0 +1,18 @@
+package com.example.bookmarket.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Loans checked out in one period for one genre. {@code revenue} sums the final prices, {@code discount} the
+ * difference to the list prices and {@code averagePrice} is the average final price.
+ */
+public record RevenueDto(
+        LocalDate period,
+        String genre,
+        long loans,
+        BigDecimal revenue,
+        BigDecimal discount,
+        BigDecimal averagePrice
+) {
+}
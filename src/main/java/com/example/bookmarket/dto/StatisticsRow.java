@@ -0,0 +1,7 @@
+package com.example.bookmarket.dto;
+
+// یک سطر از شمارش گروهی: BOOK، USER یا وضعیت امانت
+public interface StatisticsRow {
+    String getKind();
+    long getTotal();
+}
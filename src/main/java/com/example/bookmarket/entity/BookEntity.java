@@ -3,6 +3,8 @@ package com.example.bookmarket.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -10,9 +12,15 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
 @Data
 @NoArgsConstructor
-@Table(name = "book")
+@Table(name = "book", indexes = {
+        @Index(name = "idx_book_title_id", columnList = "title, id"),
+        @Index(name = "idx_book_genre_final_price", columnList = "genre, final_price"),
+        @Index(name = "idx_book_final_price", columnList = "final_price")
+})
 public class BookEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -3,12 +3,17 @@ package com.example.bookmarket.entity;
 import com.example.bookmarket.enums.LibrarianStatus;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "librarian")
 @Table(name = "librarian")
 public class LibrarianEntity {
     @Id
@@ -27,7 +32,12 @@ public class LibrarianEntity {
     @Column(nullable = false)
     private LibrarianStatus status = LibrarianStatus.INACTIVE;
 
+    // پایان اعتبار refresh token نشست فعلی؛ SessionRegistry آن را با تاخیر و دسته ای می نویسد
+    @Column(name = "session_expires_at")
+    private Instant sessionExpiresAt;
+
     @ElementCollection(fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "librarian-roles")
     @CollectionTable(name = "librarian_roles", joinColumns = @JoinColumn(name = "librarian_id"))
     @Column(name = "role")
     private Set<String> roles = new HashSet<>();
@@ -77,6 +87,14 @@ public class LibrarianEntity {
         this.status = status;
     }
 
+    public Instant getSessionExpiresAt() {
+        return sessionExpiresAt;
+    }
+
+    public void setSessionExpiresAt(Instant sessionExpiresAt) {
+        this.sessionExpiresAt = sessionExpiresAt;
+    }
+
     public Set<String> getRoles() {
         return roles;
     }
@@ -0,0 +1,91 @@
+package com.example.bookmarket.entity;
+
+import com.example.bookmarket.enums.RollupGranularity;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkouts, returns and overdues of one genre within one hour or day starting at {@code bucketStart}.
+ * An overdue is counted in the day after the due date of a loan that was still active when that day began.
+ */
+@Entity
+@Table(name = "loan_activity_rollup", uniqueConstraints = @UniqueConstraint(
+        name = "uk_loan_activity_rollup_bucket", columnNames = {"granularity", "bucket_start", "genre"}))
+public class LoanActivityRollupEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false, length = 100)
+    private String genre;
+
+    @Column(nullable = false)
+    private long checkouts;
+
+    @Column(nullable = false)
+    private long returns;
+
+    @Column(nullable = false)
+    private long overdues;
+
+    public LoanActivityRollupEntity() {
+    }
+
+    public LoanActivityRollupEntity(RollupGranularity granularity, LocalDateTime bucketStart, String genre,
+                                    long checkouts, long returns, long overdues) {
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.genre = genre;
+        this.checkouts = checkouts;
+        this.returns = returns;
+        this.overdues = overdues;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public RollupGranularity getGranularity() {
+        return granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public long getCheckouts() {
+        return checkouts;
+    }
+
+    public void setCheckouts(long checkouts) {
+        this.checkouts = checkouts;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    public void setReturns(long returns) {
+        this.returns = returns;
+    }
+
+    public long getOverdues() {
+        return overdues;
+    }
+
+    public void setOverdues(long overdues) {
+        this.overdues = overdues;
+    }
+}
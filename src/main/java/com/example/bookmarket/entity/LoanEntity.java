@@ -7,17 +7,22 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "loan")
+// id آخرین ستون است تا جستجوی صفحه بندی شده با ORDER BY id بدون مرتب سازی از روی ایندکس خوانده شود
+@Table(name = "loan", indexes = {
+        @Index(name = "idx_loan_user_status_id", columnList = "user_id, status, id"),
+        @Index(name = "idx_loan_book_status_id", columnList = "book_id, status, id"),
+        @Index(name = "idx_loan_status_due_date_id", columnList = "status, due_date, id")
+})
 public class LoanEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id", nullable = false)
     private BookEntity book;
 
@@ -37,6 +42,10 @@ public class LoanEntity {
     @Enumerated(EnumType.STRING)
     private LoanStatus status = LoanStatus.ACTIVE;
 
+    // امانت هایی که پیش از افزودن این ستون برگشته اند مقدار ندارند
+    @Column(name = "returned_at")
+    private LocalDateTime returnedAt;
+
     @PrePersist
     protected void onCreate() {
         loanDate = LocalDateTime.now();
@@ -109,4 +118,12 @@ public class LoanEntity {
     public void setStatus(LoanStatus status) {
         this.status = status;
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getReturnedAt() {
+        return returnedAt;
+    }
+
+    public void setReturnedAt(LocalDateTime returnedAt) {
+        this.returnedAt = returnedAt;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bookmarket.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A revocation keyed either by a token's jti or by {@code sub:<username>} for revoke-all. Any token matching the
+ * key and issued no later than {@code revokedAt} is rejected. The row is useless once {@code expiresAt} passes,
+ * because every token it could match has expired by then.
+ */
+@Entity
+@Table(name = "revoked_token", indexes = {
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revoked_at")
+})
+public class RevokedTokenEntity {
+    @Id
+    @Column(name = "token_key", length = 150)
+    private String tokenKey;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public RevokedTokenEntity() {
+    }
+
+    public RevokedTokenEntity(String tokenKey, Instant revokedAt, Instant expiresAt) {
+        this.tokenKey = tokenKey;
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getTokenKey() {
+        return tokenKey;
+    }
+
+    public void setTokenKey(String tokenKey) {
+        this.tokenKey = tokenKey;
+    }
+
+    public Instant getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(Instant revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
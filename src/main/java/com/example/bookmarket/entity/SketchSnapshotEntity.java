@@ -0,0 +1,64 @@
+package com.example.bookmarket.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * The serialized state of one day's in-memory statistics sketch, so that a restart keeps the window it covers.
+ * {@code kind} names the sketch, {@code payload} is whatever that sketch writes with its {@code toBytes}.
+ */
+@Entity
+@Table(name = "sketch_snapshot", uniqueConstraints = @UniqueConstraint(
+        name = "uk_sketch_snapshot_kind_day", columnNames = {"kind", "snapshot_day"}))
+public class SketchSnapshotEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 40)
+    private String kind;
+
+    @Column(name = "snapshot_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = 65_536)
+    private byte[] payload;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public SketchSnapshotEntity() {
+    }
+
+    public SketchSnapshotEntity(String kind, LocalDate day) {
+        this.kind = kind;
+        this.day = day;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+        this.updatedAt = Instant.now();
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
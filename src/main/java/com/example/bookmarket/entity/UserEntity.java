@@ -4,12 +4,17 @@ import com.example.bookmarket.enums.UserStatus;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 @Table(name = "User_")
 public class UserEntity {
     @Id
@@ -30,7 +35,12 @@ public class UserEntity {
     @Enumerated(EnumType.STRING)
     private UserStatus status;
 
+    // پایان اعتبار refresh token نشست فعلی؛ SessionRegistry آن را با تاخیر و دسته ای می نویسد
+    @Column(name = "session_expires_at")
+    private Instant sessionExpiresAt;
+
     @ElementCollection(fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-roles")
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Column(name = "role")
     private Set<String> roles = new HashSet<>();
@@ -98,6 +108,14 @@ public class UserEntity {
         this.status = status;
     }
 
+    public Instant getSessionExpiresAt() {
+        return sessionExpiresAt;
+    }
+
+    public void setSessionExpiresAt(Instant sessionExpiresAt) {
+        this.sessionExpiresAt = sessionExpiresAt;
+    }
+
     public LocalDateTime getRegisterDate() {
         return registerDate;
     }
@@ -0,0 +1,6 @@
+package com.example.bookmarket.enums;
+
+public enum AutocompleteField {
+    TITLE,
+    AUTHOR
+}
@@ -0,0 +1,13 @@
+package com.example.bookmarket.enums;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum RollupGranularity {
+    HOUR,
+    DAY;
+
+    public LocalDateTime bucketOf(LocalDateTime time) {
+        return time.truncatedTo(this == HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+}
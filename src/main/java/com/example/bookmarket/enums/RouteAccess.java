@@ -0,0 +1,20 @@
+package com.example.bookmarket.enums;
+
+import java.util.List;
+
+public enum RouteAccess {
+    PUBLIC,
+    USER("USER"),
+    ADMIN("ADMIN"),
+    USER_OR_ADMIN("USER", "ADMIN");
+
+    private final List<String> roles;
+
+    RouteAccess(String... roles) {
+        this.roles = List.of(roles);
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+}
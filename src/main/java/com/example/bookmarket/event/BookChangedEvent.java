@@ -0,0 +1,24 @@
+package com.example.bookmarket.event;
+
+import com.example.bookmarket.dto.UpdateBookDto;
+
+/**
+ * Published by BookService whenever a book is added, updated or deleted.
+ * {@code book} is the state after the change, or null when the book was deleted.
+ */
+public record BookChangedEvent(
+        Long bookId,
+        UpdateBookDto book
+) {
+    public static BookChangedEvent saved(UpdateBookDto book) {
+        return new BookChangedEvent(book.id(), book);
+    }
+
+    public static BookChangedEvent deleted(Long bookId) {
+        return new BookChangedEvent(bookId, null);
+    }
+
+    public boolean isDeleted() {
+        return book == null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bookmarket.event;
+
+/**
+ * Published by InventoryService after a copy of a book was taken or put back.
+ */
+public record BookStockChangedEvent(
+        Long bookId
+) {
+}
@@ -0,0 +1,13 @@
+package com.example.bookmarket.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by CommentService after a comment was saved.
+ */
+public record CommentAddedEvent(
+        Long bookId,
+        Long userId,
+        LocalDateTime occurredAt
+) {
+}
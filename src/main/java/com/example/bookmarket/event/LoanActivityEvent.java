@@ -0,0 +1,27 @@
+package com.example.bookmarket.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by LoanService when a book is checked out or returned.
+ */
+public record LoanActivityEvent(
+        Kind kind,
+        Long bookId,
+        Long userId,
+        String genre,
+        LocalDateTime occurredAt
+) {
+    public enum Kind {
+        CHECKOUT,
+        RETURN
+    }
+
+    public static LoanActivityEvent checkout(Long bookId, Long userId, String genre, LocalDateTime occurredAt) {
+        return new LoanActivityEvent(Kind.CHECKOUT, bookId, userId, genre, occurredAt);
+    }
+
+    public static LoanActivityEvent returned(Long bookId, Long userId, String genre, LocalDateTime occurredAt) {
+        return new LoanActivityEvent(Kind.RETURN, bookId, userId, genre, occurredAt);
+    }
+}
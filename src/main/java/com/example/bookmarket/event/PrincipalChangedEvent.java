@@ -0,0 +1,10 @@
+package com.example.bookmarket.event;
+
+/**
+ * Published by UserService and LibrarianService when an account's credentials, status or
+ * existence changes, so anything cached under {@code username} can be dropped.
+ */
+public record PrincipalChangedEvent(
+        String username
+) {
+}
@@ -0,0 +1,44 @@
+package com.example.bookmarket.event;
+
+import com.example.bookmarket.enums.LoanStatus;
+
+/**
+ * Published by the write paths with how much each statistic changed; applied to
+ * {@link com.example.bookmarket.service.StatisticsRegistry} once the transaction commits.
+ */
+public record StatisticsChangedEvent(
+        long books,
+        long users,
+        long activeLoans,
+        long returnedLoans
+) {
+    public static StatisticsChangedEvent bookAdded() {
+        return new StatisticsChangedEvent(1, 0, 0, 0);
+    }
+
+    public static StatisticsChangedEvent bookDeleted() {
+        return new StatisticsChangedEvent(-1, 0, 0, 0);
+    }
+
+    public static StatisticsChangedEvent userAdded() {
+        return new StatisticsChangedEvent(0, 1, 0, 0);
+    }
+
+    public static StatisticsChangedEvent userDeleted() {
+        return new StatisticsChangedEvent(0, -1, 0, 0);
+    }
+
+    public static StatisticsChangedEvent loanCreated() {
+        return new StatisticsChangedEvent(0, 0, 1, 0);
+    }
+
+    public static StatisticsChangedEvent loanReturned() {
+        return new StatisticsChangedEvent(0, 0, -1, 1);
+    }
+
+    public static StatisticsChangedEvent loanDeleted(LoanStatus status) {
+        return status == LoanStatus.ACTIVE
+                ? new StatisticsChangedEvent(0, 0, -1, 0)
+                : new StatisticsChangedEvent(0, 0, 0, -1);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bookmarket.exception;
+
+public class AccountAccessDeniedException extends RuntimeException {
+    public AccountAccessDeniedException(Long accountId) {
+        super("Not allowed to act on account " + accountId);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bookmarket.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -93,12 +94,48 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.FORBIDDEN);
     }
 
+    // Handler for AccountAccessDeniedException
+    @ExceptionHandler(AccountAccessDeniedException.class)
+    public ResponseEntity<Map<String, String>> handleAccountAccessDenied(AccountAccessDeniedException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.FORBIDDEN);
+    }
+
     // Handler for CommentNotFoundException
     @ExceptionHandler(CommentNotFoundException.class)
     public ResponseEntity<Map<String, String>> handleCommentNotFound(CommentNotFoundException ex) {
         return createErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
 
+    // Handler for InvalidCursorException
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidCursor(InvalidCursorException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Handler for InvalidSortException
+    @ExceptionHandler(InvalidSortException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidSort(InvalidSortException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Handler for InvalidDateRangeException
+    @ExceptionHandler(InvalidDateRangeException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidDateRange(InvalidDateRangeException ex) {
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Handler for TooManyRequestsException
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyRequests(TooManyRequestsException ex) {
+        return withRetryAfter(createErrorResponse(ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS), ex.getRetryAfterSeconds());
+    }
+
+    // Handler for ServiceBusyException
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<Map<String, String>> handleServiceBusy(ServiceBusyException ex) {
+        return withRetryAfter(createErrorResponse(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE), ex.getRetryAfterSeconds());
+    }
+
     // Handler for generic exceptions
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, String>> handleGenericException(Exception ex) {
@@ -126,4 +163,10 @@ public class GlobalExceptionHandler {
 
         return ResponseEntity.status(status).body(response);
     }
+
+    private ResponseEntity<Map<String, String>> withRetryAfter(ResponseEntity<Map<String, String>> response, long seconds) {
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                .body(response.getBody());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.bookmarket.exception;
+
+import java.time.LocalDate;
+
+public class InvalidDateRangeException extends RuntimeException {
+    public InvalidDateRangeException(LocalDate from, LocalDate to) {
+        super("Invalid date range: " + from + " is after " + to);
+    }
+
+    public InvalidDateRangeException(LocalDate from, LocalDate to, int maxDays) {
+        super("Invalid date range: " + from + " to " + to + " is longer than " + maxDays + " days");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bookmarket.exception;
+
+public class InvalidSortException extends RuntimeException {
+    public InvalidSortException(String property) {
+        super("Cannot sort by: " + property);
+    }
+}
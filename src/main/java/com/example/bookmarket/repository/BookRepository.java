@@ -1,16 +1,41 @@
 package com.example.bookmarket.repository;
 
 import com.example.bookmarket.entity.BookEntity;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface BookRepository extends JpaRepository<BookEntity, Long> {
+public interface BookRepository extends JpaRepository<BookEntity, Long>, JpaSpecificationExecutor<BookEntity> {
     boolean existsByTitle(String title);
     List<BookEntity> findByTitleContainingIgnoreCase(String title);
     List<BookEntity> findByAuthorContainingIgnoreCase(String author);
     List<BookEntity> findByGenre(String genre);
 
-}
\ No newline at end of file
+    // صفحه بندی keyset: به جای OFFSET از آخرین کلید صفحه قبل ادامه می دهیم
+    List<BookEntity> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT b FROM BookEntity b WHERE b.title > :title OR (b.title = :title AND b.id > :id) " +
+            "ORDER BY b.title ASC, b.id ASC")
+    List<BookEntity> findTitlePageAfter(@Param("title") String title, @Param("id") Long id, Limit limit);
+
+    @Query("SELECT b FROM BookEntity b ORDER BY b.title ASC, b.id ASC")
+    List<BookEntity> findTitlePage(Limit limit);
+
+    // کم کردن موجودی فقط وقتی که موجودی بیشتر از صفر باشد
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookEntity b SET b.numberOfBooks = b.numberOfBooks - 1 " +
+            "WHERE b.id = :bookId AND b.numberOfBooks > 0")
+    int decrementStock(@Param("bookId") Long bookId);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE BookEntity b SET b.numberOfBooks = COALESCE(b.numberOfBooks, 0) + 1 WHERE b.id = :bookId")
+    int incrementStock(@Param("bookId") Long bookId);
+
+}
@@ -0,0 +1,57 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.BookEntity;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+
+// هر فیلتر برای مقدار null یک Specification خالی برمی گرداند تا بتوان همه را با هم ترکیب کرد
+public final class BookSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private BookSpecifications() {
+    }
+
+    public static Specification<BookEntity> titleContains(String title) {
+        return containsIgnoreCase("title", title);
+    }
+
+    public static Specification<BookEntity> authorContains(String author) {
+        return containsIgnoreCase("author", author);
+    }
+
+    public static Specification<BookEntity> genreEquals(String genre) {
+        if (genre == null || genre.isBlank()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("genre"), genre);
+    }
+
+    public static Specification<BookEntity> finalPriceAtLeast(BigDecimal minPrice) {
+        if (minPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("finalPrice"), minPrice);
+    }
+
+    public static Specification<BookEntity> finalPriceAtMost(BigDecimal maxPrice) {
+        if (maxPrice == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("finalPrice"), maxPrice);
+    }
+
+    private static Specification<BookEntity> containsIgnoreCase(String attribute, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(value.toLowerCase()) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(attribute)), pattern, LIKE_ESCAPE);
+    }
+
+    // % و _ ورودی کاربر باید حرف عادی باشند، نه wildcard
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
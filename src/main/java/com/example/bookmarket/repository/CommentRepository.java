@@ -1,10 +1,16 @@
 package com.example.bookmarket.repository;
 
+import com.example.bookmarket.dto.CommentDto;
 import com.example.bookmarket.entity.CommentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<CommentEntity, Long> {
-    List<CommentEntity> findByBookId(Long bookId);
-}
\ No newline at end of file
+    // یک SELECT برای همه نظرات کتاب، بدون بارگذاری کاربر و کتاب هر ردیف
+    @Query("SELECT new com.example.bookmarket.dto.CommentDto(c.user.id, c.book.id, c.content, c.rating) " +
+            "FROM CommentEntity c WHERE c.book.id = :bookId ORDER BY c.id")
+    List<CommentDto> findDtosByBookId(@Param("bookId") Long bookId);
+}
@@ -0,0 +1,50 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.LoanActivityRollupEntity;
+import com.example.bookmarket.enums.RollupGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LoanActivityRollupRepository extends JpaRepository<LoanActivityRollupEntity, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE LoanActivityRollupEntity r SET r.checkouts = r.checkouts + :checkouts, r.returns = r.returns + :returns " +
+            "WHERE r.granularity = :granularity AND r.bucketStart = :bucketStart AND r.genre = :genre")
+    int addActivity(@Param("granularity") RollupGranularity granularity,
+                    @Param("bucketStart") LocalDateTime bucketStart,
+                    @Param("genre") String genre,
+                    @Param("checkouts") long checkouts,
+                    @Param("returns") long returns);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE LoanActivityRollupEntity r SET r.overdues = :overdues " +
+            "WHERE r.granularity = :granularity AND r.bucketStart = :bucketStart AND r.genre = :genre")
+    int setOverdues(@Param("granularity") RollupGranularity granularity,
+                    @Param("bucketStart") LocalDateTime bucketStart,
+                    @Param("genre") String genre,
+                    @Param("overdues") long overdues);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE LoanActivityRollupEntity r SET r.overdues = 0 " +
+            "WHERE r.bucketStart >= :from AND r.bucketStart < :to AND r.overdues <> 0")
+    int clearOverdues(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT r FROM LoanActivityRollupEntity r WHERE r.granularity = :granularity " +
+            "AND r.bucketStart >= :from AND r.bucketStart < :to AND (:genre IS NULL OR r.genre = :genre) " +
+            "ORDER BY r.bucketStart, r.genre")
+    List<LoanActivityRollupEntity> findSeries(@Param("granularity") RollupGranularity granularity,
+                                              @Param("from") LocalDateTime from,
+                                              @Param("to") LocalDateTime to,
+                                              @Param("genre") String genre);
+}
@@ -1,19 +1,97 @@
 package com.example.bookmarket.repository;
 
-import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.dto.LoanActivityCount;
+import com.example.bookmarket.dto.LoanAdmission;
+import com.example.bookmarket.dto.LoanRevenueRow;
+import com.example.bookmarket.dto.OverdueCount;
+import com.example.bookmarket.dto.StatisticsRow;
+import com.example.bookmarket.dto.UpdateLoanDto;
 import com.example.bookmarket.entity.LoanEntity;
 import com.example.bookmarket.entity.UserEntity;
 import com.example.bookmarket.enums.LoanStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
-public interface LoanRepository extends JpaRepository<LoanEntity, Long> {
-    List<LoanEntity> findByUser(UserEntity user);
-    List<LoanEntity> findByBook(BookEntity book);
-    List<LoanEntity> findByStatus(LoanStatus status);
+public interface LoanRepository extends JpaRepository<LoanEntity, Long>, JpaSpecificationExecutor<LoanEntity> {
     long countByStatus(LoanStatus status);
     long countByUserAndStatus(UserEntity user, LoanStatus status);
+    long countByUserIdAndStatus(Long userId, LoanStatus status);
+    // اعلان دیرکرد نام کاربر و عنوان کتاب را لازم دارد، پس هر دو در همان کوئری join می شوند
+    @EntityGraph(attributePaths = {"user", "book"})
     List<LoanEntity> findByDueDateBeforeAndStatus(LocalDate dueDate, LoanStatus status);
-}
\ No newline at end of file
+
+    // فقط ستون های DTO خوانده می شوند؛ user.id و book.id از ستون های کلید خارجی می آیند و join ندارند
+    @Query("SELECT new com.example.bookmarket.dto.UpdateLoanDto(l.id, l.user.id, l.book.id, l.dueDate) " +
+            "FROM LoanEntity l ORDER BY l.id")
+    List<UpdateLoanDto> findAllLoanDtos();
+
+    @Query("SELECT new com.example.bookmarket.dto.UpdateLoanDto(l.id, l.user.id, l.book.id, l.dueDate) " +
+            "FROM LoanEntity l WHERE l.id = :id")
+    Optional<UpdateLoanDto> findLoanDtoById(@Param("id") Long id);
+
+    // وجود کاربر، تعداد امانت های فعال و موجودی کتاب در یک رفت و برگشت
+    @Query("SELECT " +
+            "(SELECT COUNT(l) FROM LoanEntity l WHERE l.user.id = u.id AND l.status = :active) AS activeLoans, " +
+            "b.numberOfBooks AS stock, b.price AS price, b.finalPrice AS finalPrice, b.genre AS genre " +
+            "FROM UserEntity u, BookEntity b WHERE u.id = :userId AND b.id = :bookId")
+    Optional<LoanAdmission> findAdmission(@Param("userId") Long userId,
+                                          @Param("bookId") Long bookId,
+                                          @Param("active") LoanStatus active);
+
+    // return loan به ژانر کتاب برای rollup ها نیاز دارد
+    @EntityGraph(attributePaths = "book")
+    Optional<LoanEntity> findWithBookById(Long id);
+
+    // تغییر وضعیت شرطی است تا از دو برگشت یا برگشت و حذف هم زمان فقط یکی موجودی را برگرداند
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE LoanEntity l SET l.status = :returned, l.returnedAt = :returnedAt " +
+            "WHERE l.id = :id AND l.status = :active")
+    int markReturned(@Param("id") Long id,
+                     @Param("returnedAt") LocalDateTime returnedAt,
+                     @Param("active") LoanStatus active,
+                     @Param("returned") LoanStatus returned);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM LoanEntity l WHERE l.id = :id AND l.status = :status")
+    int deleteByIdAndStatus(@Param("id") Long id, @Param("status") LoanStatus status);
+
+    // فقط یک بار برای پر کردن rollup ها از تاریخچه اجرا می شوند
+    @Query("SELECT b.genre AS genre, CAST(l.loanDate AS LocalDate) AS day, EXTRACT(HOUR FROM l.loanDate) AS hour, " +
+            "COUNT(l) AS total FROM LoanEntity l JOIN l.book b WHERE l.loanDate < :before " +
+            "GROUP BY b.genre, CAST(l.loanDate AS LocalDate), EXTRACT(HOUR FROM l.loanDate)")
+    List<LoanActivityCount> countCheckoutsByHour(@Param("before") LocalDateTime before);
+
+    @Query("SELECT b.genre AS genre, CAST(l.returnedAt AS LocalDate) AS day, EXTRACT(HOUR FROM l.returnedAt) AS hour, " +
+            "COUNT(l) AS total FROM LoanEntity l JOIN l.book b WHERE l.returnedAt < :before " +
+            "GROUP BY b.genre, CAST(l.returnedAt AS LocalDate), EXTRACT(HOUR FROM l.returnedAt)")
+    List<LoanActivityCount> countReturnsByHour(@Param("before") LocalDateTime before);
+
+    // امانتی که روز بعد از سررسید هنوز فعال بوده؛ امانت های برگشتی بدون returned_at شمرده نمی شوند
+    @Query("SELECT b.genre AS genre, l.dueDate AS dueDate, COUNT(l) AS total FROM LoanEntity l JOIN l.book b " +
+            "WHERE l.dueDate >= :from AND l.dueDate < :to " +
+            "AND (l.status = :active OR CAST(l.returnedAt AS LocalDate) > l.dueDate) " +
+            "GROUP BY b.genre, l.dueDate")
+    List<OverdueCount> countOverdues(@Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("active") LoanStatus active);
+
+    // همه شمارش های صفحه آمار در یک رفت و برگشت: BOOK، USER و یک سطر برای هر وضعیت امانت
+    @Query("SELECT 'BOOK' AS kind, COUNT(b) AS total FROM BookEntity b " +
+            "UNION ALL SELECT 'USER', COUNT(u) FROM UserEntity u " +
+            "UNION ALL SELECT CAST(l.status AS String), COUNT(l) FROM LoanEntity l GROUP BY l.status")
+    List<StatisticsRow> countAllByKind();
+
+    @Query("SELECT l.id AS id, b.genre AS genre, l.loanDate AS loanDate, l.price AS price, " +
+            "l.finalPrice AS finalPrice FROM LoanEntity l JOIN l.book b WHERE l.id > :afterId ORDER BY l.id")
+    List<LoanRevenueRow> findRevenueRowsAfter(@Param("afterId") Long afterId, Limit limit);
+}
@@ -0,0 +1,71 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.enums.LoanStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+// مثل BookSpecifications: فیلتر null حذف می شود. شرط ها روی ستون های کلید خارجی هستند تا join لازم نشود
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    public static Specification<LoanEntity> userIdEquals(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("user").get("id"), userId);
+    }
+
+    public static Specification<LoanEntity> bookIdEquals(Long bookId) {
+        if (bookId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("book").get("id"), bookId);
+    }
+
+    public static Specification<LoanEntity> statusEquals(LoanStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<LoanEntity> loanedOnOrAfter(LocalDate from) {
+        if (from == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("loanDate"), from.atStartOfDay());
+    }
+
+    public static Specification<LoanEntity> loanedOnOrBefore(LocalDate to) {
+        if (to == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThan(root.get("loanDate"), to.plusDays(1).atStartOfDay());
+    }
+
+    public static Specification<LoanEntity> dueOnOrAfter(LocalDate from) {
+        if (from == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("dueDate"), from);
+    }
+
+    public static Specification<LoanEntity> dueOnOrBefore(LocalDate to) {
+        if (to == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("dueDate"), to);
+    }
+
+    // کلید keyset: امانت ها از جدید به قدیم، پس صفحه بعد شناسه های کوچک تر است
+    public static Specification<LoanEntity> idBefore(Long id) {
+        if (id == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThan(root.get("id"), id);
+    }
+}
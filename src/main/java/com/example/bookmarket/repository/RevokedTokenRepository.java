@@ -0,0 +1,30 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.RevokedTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedTokenEntity, String> {
+
+    @Query("SELECT r.tokenKey FROM RevokedTokenEntity r WHERE r.expiresAt > :now")
+    List<String> findLiveKeys(@Param("now") Instant now);
+
+    List<RevokedTokenEntity> findByRevokedAtAfterAndExpiresAtAfter(Instant since, Instant now);
+
+    @Query("SELECT r.tokenKey FROM RevokedTokenEntity r WHERE r.expiresAt <= :now")
+    List<String> findExpiredKeys(@Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedTokenEntity r WHERE r.tokenKey IN :keys")
+    int deleteByKeys(@Param("keys") Collection<String> keys);
+}
@@ -0,0 +1,30 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.SketchSnapshotEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SketchSnapshotRepository extends JpaRepository<SketchSnapshotEntity, Long> {
+
+    List<SketchSnapshotEntity> findByKindAndDayGreaterThanEqual(String kind, LocalDate from);
+
+    // برای ادغام خواندن-نوشتن؛ ترتیب ثابت روزها جلوی بن بست دو گره را می گیرد
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<SketchSnapshotEntity> findByKindAndDayInOrderByDayAsc(String kind, Collection<LocalDate> days);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SketchSnapshotEntity s WHERE s.kind = :kind AND s.day < :before")
+    int deleteOlderThan(@Param("kind") String kind, @Param("before") LocalDate before);
+}
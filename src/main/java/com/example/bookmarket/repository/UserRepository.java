@@ -1,9 +1,21 @@
 package com.example.bookmarket.repository;
 
+import com.example.bookmarket.dto.ActiveSession;
 import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.UserStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,5 +23,29 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
 
     boolean existsByUsername(String username);
 
+    // هر درخواست احراز هویت این کوئری را می زند، پس نتیجه اش در query cache می ماند
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<UserEntity> findByUsername(String username);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserEntity a SET a.status = :status, a.sessionExpiresAt = :expiresAt WHERE a.id IN :ids")
+    int updateSessionState(@Param("ids") Collection<Long> ids,
+                           @Param("status") UserStatus status,
+                           @Param("expiresAt") Instant expiresAt);
+
+    // همه نشست هایی که refresh token شان منقضی شده با یک دستور بسته می شوند
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserEntity a SET a.status = :inactive, a.sessionExpiresAt = null " +
+            "WHERE a.status <> :inactive AND (a.sessionExpiresAt IS NULL OR a.sessionExpiresAt <= :now)")
+    int expireSessions(@Param("inactive") UserStatus inactive, @Param("now") Instant now);
+
+    @Query("SELECT a.id AS id, a.username AS username, a.sessionExpiresAt AS expiresAt FROM UserEntity a " +
+            "WHERE a.status = :active AND a.sessionExpiresAt > :now")
+    List<ActiveSession> findActiveSessions(@Param("active") UserStatus active, @Param("now") Instant now);
+
+    @Query("SELECT a.id AS id, a.username AS username, a.sessionExpiresAt AS expiresAt FROM UserEntity a " +
+            "WHERE a.id = :id AND a.status = :active AND a.sessionExpiresAt > :now")
+    Optional<ActiveSession> findActiveSession(@Param("id") Long id, @Param("active") UserStatus active, @Param("now") Instant now);
 }
\ No newline at end of file
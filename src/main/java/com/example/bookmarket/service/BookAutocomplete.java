@@ -0,0 +1,85 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.enums.AutocompleteField;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typeahead completions for book titles and authors. Authors are ranked by how many books they
+ * have in the catalog; titles by how many copies of the same title exist, then alphabetically.
+ */
+@Slf4j
+@Component
+public class BookAutocomplete {
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final PrefixCompleter titles = new PrefixCompleter();
+    private final PrefixCompleter authors = new PrefixCompleter();
+    private final Map<Long, Labels> labelsByBook = new HashMap<>();
+
+    public BookAutocomplete(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    private record Labels(String title, String author) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        labelsByBook.clear();
+        long lastId = 0;
+        List<BookEntity> batch;
+        do {
+            batch = bookRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_BATCH_SIZE));
+            for (BookEntity book : batch) {
+                labelsByBook.put(book.getId(), new Labels(book.getTitle(), book.getAuthor()));
+                lastId = book.getId();
+            }
+        } while (batch.size() == REBUILD_BATCH_SIZE);
+
+        List<String> allTitles = new ArrayList<>(labelsByBook.size());
+        List<String> allAuthors = new ArrayList<>(labelsByBook.size());
+        labelsByBook.values().forEach(labels -> {
+            allTitles.add(labels.title());
+            allAuthors.add(labels.author());
+        });
+        titles.rebuild(allTitles);
+        authors.rebuild(allAuthors);
+        log.info("Autocomplete built for {} books ({} KB)", labelsByBook.size(),
+                (titles.memoryBytes() + authors.memoryBytes()) / 1024);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBookChanged(BookChangedEvent event) {
+        Labels previous = labelsByBook.remove(event.bookId());
+        if (previous != null) {
+            titles.remove(previous.title());
+            authors.remove(previous.author());
+        }
+        if (!event.isDeleted()) {
+            Labels current = new Labels(event.book().title(), event.book().author());
+            labelsByBook.put(event.bookId(), current);
+            titles.add(current.title());
+            authors.add(current.author());
+        }
+    }
+
+    public List<String> complete(String prefix, AutocompleteField field, int limit) {
+        PrefixCompleter completer = field == AutocompleteField.AUTHOR ? authors : titles;
+        return completer.complete(prefix, limit);
+    }
+}
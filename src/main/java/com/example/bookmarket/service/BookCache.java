@@ -0,0 +1,61 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.event.BookStockChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of books by id (Caffeine, W-TinyLFU admission, size and TTL bounded).
+ * <p>
+ * Entries are invalidated after the writing transaction commits. A load that started before the
+ * commit cannot survive it: Caffeine runs loads atomically per key, so the invalidation waits for
+ * an in-flight load of the same id and then removes what it stored.
+ */
+@Component
+public class BookCache {
+
+    public static final String NAME = "books";
+
+    private final Cache<Long, UpdateBookDto> cache;
+
+    public BookCache(@Value("${cache.books.maximum-size:10000}") long maximumSize,
+                     @Value("${cache.books.expire-after-write:10m}") Duration expireAfterWrite,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    public Optional<UpdateBookDto> get(Long bookId, Function<Long, Optional<UpdateBookDto>> loader) {
+        // Caffeine برای null چیزی ذخیره نمی کند، پس کتاب های ناموجود کش نمی شوند
+        return Optional.ofNullable(cache.get(bookId, id -> loader.apply(id).orElse(null)));
+    }
+
+    public void invalidate(Long bookId) {
+        cache.invalidate(bookId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        invalidate(event.bookId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(BookStockChangedEvent event) {
+        invalidate(event.bookId());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.BookSearchHitDto;
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over book title, author and genre, ranked with BM25F
+ * (per-field weighted term frequency, one length normalization per book).
+ * Built once at startup and kept current from {@link BookChangedEvent}s after commit.
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float AUTHOR_WEIGHT = 2f;
+    private static final float GENRE_WEIGHT = 1f;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    private static final int MAX_EDIT_DISTANCE = 2;
+    private static final int FUZZY_PREFIX_LENGTH = 7;
+    private static final double FUZZY_PENALTY = 0.5;
+
+    private final BookRepository bookRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    private final Map<Long, IndexedBook> books = new HashMap<>();
+    private final SymmetricDeleteDictionary dictionary =
+            new SymmetricDeleteDictionary(MAX_EDIT_DISTANCE, FUZZY_PREFIX_LENGTH);
+    private double totalLength;
+
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    private record IndexedBook(Long id, String title, String author, String genre,
+                               float length, Map<String, Float> termFrequencies) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            books.clear();
+            dictionary.clear();
+            totalLength = 0;
+
+            long lastId = 0;
+            List<BookEntity> batch;
+            do {
+                batch = bookRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_BATCH_SIZE));
+                for (BookEntity book : batch) {
+                    add(book.getId(), book.getTitle(), book.getAuthor(), book.getGenre());
+                    lastId = book.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book search index built: {} books, {} terms in {} ms",
+                books.size(), postings.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            remove(event.bookId());
+            if (!event.isDeleted()) {
+                UpdateBookDto book = event.book();
+                add(book.id(), book.title(), book.author(), book.genre());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<BookSearchHitDto> search(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    /**
+     * @param fuzzy also match index terms within one edit (terms up to 5 characters) or two edits
+     *              of each query term; every edit halves that term's contribution to the score
+     */
+    public List<BookSearchHitDto> search(String query, int limit, boolean fuzzy) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextNormalizer.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = books.size();
+            if (documentCount == 0) {
+                return List.of();
+            }
+            double averageLength = totalLength / documentCount;
+
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<String, Integer> matches = fuzzy ? expand(term) : Map.of(term, 0);
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map.Entry<String, Integer> match : matches.entrySet()) {
+                    Map<Long, Float> termPostings = postings.get(match.getKey());
+                    if (termPostings == null) {
+                        continue;
+                    }
+                    double df = termPostings.size();
+                    double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                    double penalty = Math.pow(FUZZY_PENALTY, match.getValue());
+                    for (Map.Entry<Long, Float> posting : termPostings.entrySet()) {
+                        double tf = posting.getValue();
+                        double length = books.get(posting.getKey()).length();
+                        double score = penalty * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                        // هر کلمه جستجو فقط یک بار حساب می شود، با بهترین تطابقش
+                        termScores.merge(posting.getKey(), score, Math::max);
+                    }
+                }
+                termScores.forEach((bookId, score) -> scores.merge(bookId, score, Double::sum));
+            }
+
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<BookSearchHitDto> hits = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                Map.Entry<Long, Double> entry = top.poll();
+                IndexedBook book = books.get(entry.getKey());
+                hits.add(new BookSearchHitDto(book.id(), book.title(), book.author(), book.genre(), entry.getValue()));
+            }
+            hits.sort(Comparator.comparingDouble(BookSearchHitDto::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // باید با read lock صدا زده شود
+    private Map<String, Integer> expand(String term) {
+        if (term.length() <= 2) {
+            return Map.of(term, 0);
+        }
+        int distance = term.length() <= 5 ? 1 : MAX_EDIT_DISTANCE;
+        Map<String, Integer> matches = dictionary.lookup(term, distance);
+        if (dictionary.contains(term)) {
+            matches.put(term, 0);
+        }
+        return matches;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // باید با write lock صدا زده شود
+    private void add(Long id, String title, String author, String genre) {
+        Map<String, Float> frequencies = new HashMap<>();
+        float length = addField(frequencies, title, TITLE_WEIGHT)
+                + addField(frequencies, author, AUTHOR_WEIGHT)
+                + addField(frequencies, genre, GENRE_WEIGHT);
+
+        books.put(id, new IndexedBook(id, title, author, genre, length, frequencies));
+        totalLength += length;
+        frequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> {
+            dictionary.add(t);
+            return new HashMap<>();
+        }).put(id, tf));
+    }
+
+    // باید با write lock صدا زده شود
+    private void remove(Long bookId) {
+        IndexedBook existing = books.remove(bookId);
+        if (existing == null) {
+            return;
+        }
+        totalLength -= existing.length();
+        for (String term : existing.termFrequencies().keySet()) {
+            Map<Long, Float> termPostings = postings.get(term);
+            termPostings.remove(bookId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+                dictionary.remove(term);
+            }
+        }
+    }
+
+    private static float addField(Map<String, Float> frequencies, String text, float weight) {
+        List<String> tokens = TextNormalizer.tokenize(text);
+        for (String token : tokens) {
+            frequencies.merge(token, weight, Float::sum);
+        }
+        return tokens.size() * weight;
+    }
+}
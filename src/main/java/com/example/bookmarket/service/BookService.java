@@ -1,24 +1,67 @@
 package com.example.bookmarket.service;
 
 import com.example.bookmarket.dto.AddBookDto;
+import com.example.bookmarket.dto.BookSearchHitDto;
+import com.example.bookmarket.dto.CursorPageDto;
+import com.example.bookmarket.dto.PageDto;
 import com.example.bookmarket.dto.UpdateBookDto;
 import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.enums.AutocompleteField;
+import com.example.bookmarket.enums.BookSortField;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.event.StatisticsChangedEvent;
 import com.example.bookmarket.exception.BookNotFoundException;
+import com.example.bookmarket.exception.InvalidCursorException;
+import com.example.bookmarket.exception.InvalidSortException;
 import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.BookSpecifications;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.RoundingMode;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class BookService {
+    // فیلدهایی که جستجو می تواند بر اساسشان مرتب کند؛ بقیه خطای 400 می گیرند
+    private static final Set<String> SEARCH_SORT_PROPERTIES =
+            Set.of("id", "title", "author", "genre", "price", "finalPrice", "publishDate", "registerDate");
+
     private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookAutocomplete bookAutocomplete;
+    private final BookCache bookCache;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository,
+                       ApplicationEventPublisher eventPublisher,
+                       BookSearchIndex bookSearchIndex,
+                       BookAutocomplete bookAutocomplete,
+                       BookCache bookCache,
+                       @Value("${books.page.default-size:20}") int defaultPageSize,
+                       @Value("${books.page.max-size:100}") int maxPageSize) {
         this.bookRepository = bookRepository;
+        this.eventPublisher = eventPublisher;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookAutocomplete = bookAutocomplete;
+        this.bookCache = bookCache;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     private BigDecimal calculateFinalPrice(BigDecimal price, Integer discountPercentage) {
@@ -56,13 +99,14 @@ public class BookService {
 
 
         BookEntity savedBook = bookRepository.save(bookEntity);
+        eventPublisher.publishEvent(BookChangedEvent.saved(convertToUpdateBookDto(savedBook)));
+        eventPublisher.publishEvent(StatisticsChangedEvent.bookAdded());
         return convertToAddBookDto(savedBook);
     }
 
     @Transactional(readOnly = true)
     public Optional<UpdateBookDto> findById(Long bookId) {
-        return bookRepository.findById(bookId)
-                .map(this::convertToUpdateBookDto);
+        return bookCache.get(bookId, id -> bookRepository.findById(id).map(this::convertToUpdateBookDto));
     }
 
     @Transactional
@@ -84,7 +128,9 @@ public class BookService {
 
 
         BookEntity updatedBook = bookRepository.save(bookEntity);
-        return convertToUpdateBookDto(updatedBook);
+        UpdateBookDto result = convertToUpdateBookDto(updatedBook);
+        eventPublisher.publishEvent(BookChangedEvent.saved(result));
+        return result;
     }
 
     @Transactional
@@ -93,39 +139,90 @@ public class BookService {
             throw new BookNotFoundException(bookId);
         }
         bookRepository.deleteById(bookId);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(bookId));
+        eventPublisher.publishEvent(StatisticsChangedEvent.bookDeleted());
     }
 
     @Transactional(readOnly = true)
-    public List<UpdateBookDto> findAll() {
-        return bookRepository.findAll().stream()
-                .map(this::convertToUpdateBookDto)
-                .collect(Collectors.toList());
-    }
+    public CursorPageDto<UpdateBookDto> findPage(String cursor, Integer size, BookSortField sort) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        Limit limit = Limit.of(pageSize + 1);
+        BookCursor after = cursor == null || cursor.isBlank() ? null : BookCursor.decode(cursor, sort);
 
-    public List<UpdateBookDto> searchBooks(String title, String author, String genre,
-                                           BigDecimal minPrice, BigDecimal maxPrice) {
         List<BookEntity> books;
-
-        if (title != null) {
-            books = bookRepository.findByTitleContainingIgnoreCase(title);
-        } else if (author != null) {
-            books = bookRepository.findByAuthorContainingIgnoreCase(author);
-        } else if (genre != null) {
-            books = bookRepository.findByGenre(genre);
+        if (sort == BookSortField.TITLE) {
+            books = after == null
+                    ? bookRepository.findTitlePage(limit)
+                    : bookRepository.findTitlePageAfter(after.title(), after.id(), limit);
         } else {
-            books = bookRepository.findAll();
+            books = bookRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after.id(), limit);
+        }
+
+        boolean hasNext = books.size() > pageSize;
+        if (hasNext) {
+            books = books.subList(0, pageSize);
         }
 
-        if (minPrice != null || maxPrice != null) {
-            books = books.stream()
-                    .filter(book -> (minPrice == null || book.getFinalPrice().compareTo(minPrice) >= 0) &&
-                            (maxPrice == null || book.getFinalPrice().compareTo(maxPrice) <= 0))
-                    .collect(Collectors.toList());
+        String nextCursor = null;
+        if (hasNext) {
+            BookEntity last = books.get(books.size() - 1);
+            nextCursor = new BookCursor(sort, last.getId(), last.getTitle()).encode();
         }
 
-        return books.stream()
+        List<UpdateBookDto> items = books.stream()
                 .map(this::convertToUpdateBookDto)
                 .collect(Collectors.toList());
+        return new CursorPageDto<>(items, nextCursor, hasNext);
+    }
+
+    // کرسر برای کلاینت مات است: base64 از نوع مرتب سازی و کلید آخرین ردیف
+    private record BookCursor(BookSortField sort, Long id, String title) {
+
+        String encode() {
+            String raw = sort == BookSortField.TITLE ? "t:" + id + ":" + title : "i:" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static BookCursor decode(String cursor, BookSortField sort) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                if (sort == BookSortField.TITLE && raw.startsWith("t:")) {
+                    int separator = raw.indexOf(':', 2);
+                    return new BookCursor(sort, Long.parseLong(raw.substring(2, separator)), raw.substring(separator + 1));
+                }
+                if (sort != BookSortField.TITLE && raw.startsWith("i:")) {
+                    return new BookCursor(sort, Long.parseLong(raw.substring(2)), null);
+                }
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                // پایین InvalidCursorException پرتاب می شود
+            }
+            throw new InvalidCursorException(cursor);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public PageDto<UpdateBookDto> searchBooks(String title, String author, String genre,
+                                              BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        Specification<BookEntity> filters = Specification.allOf(
+                BookSpecifications.titleContains(title),
+                BookSpecifications.authorContains(author),
+                BookSpecifications.genreEquals(genre),
+                BookSpecifications.finalPriceAtLeast(minPrice),
+                BookSpecifications.finalPriceAtMost(maxPrice)
+        );
+
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SEARCH_SORT_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidSortException(order.getProperty());
+            }
+        }
+        Pageable capped = PageRequest.of(pageable.getPageNumber(),
+                Math.min(pageable.getPageSize(), maxPageSize), pageable.getSort());
+        Page<UpdateBookDto> page = bookRepository.findAll(filters, capped)
+                .map(this::convertToUpdateBookDto);
+
+        return new PageDto<>(page.getContent(), page.getNumber(), page.getSize(),
+                page.getTotalElements(), page.getTotalPages());
     }
 
     private AddBookDto convertToAddBookDto(BookEntity book) {
@@ -155,6 +252,14 @@ public class BookService {
         );
     }
 
+    public List<BookSearchHitDto> rankedSearch(String query, int limit, boolean fuzzy) {
+        return bookSearchIndex.search(query, Math.min(limit, maxPageSize), fuzzy);
+    }
+
+    public List<String> autocomplete(String prefix, AutocompleteField field, int limit) {
+        return bookAutocomplete.complete(prefix, field, Math.min(limit, maxPageSize));
+    }
+
     public List<UpdateBookDto> searchByTitle(String title) {
         return bookRepository.findByTitleContainingIgnoreCase(title).stream()
                 .map(this::convertToUpdateBookDto)
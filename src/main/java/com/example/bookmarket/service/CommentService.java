@@ -4,6 +4,7 @@ import com.example.bookmarket.dto.CommentDto;
 import com.example.bookmarket.entity.CommentEntity;
 import com.example.bookmarket.entity.UserEntity;
 import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.event.CommentAddedEvent;
 import com.example.bookmarket.exception.BookNotFoundException;
 import com.example.bookmarket.exception.CommentNotFoundException;
 import com.example.bookmarket.exception.UserNotFoundException;
@@ -11,11 +12,12 @@ import com.example.bookmarket.repository.CommentRepository;
 import com.example.bookmarket.repository.UserRepository;
 import com.example.bookmarket.repository.BookRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +26,7 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public CommentDto addComment(CommentDto commentDto) {
@@ -40,13 +43,13 @@ public class CommentService {
         comment.setRating(commentDto.rating());
 
         CommentEntity savedComment = commentRepository.save(comment);
+        eventPublisher.publishEvent(new CommentAddedEvent(book.getId(), user.getId(), LocalDateTime.now()));
         return convertToDto(savedComment);
     }
 
+    @Transactional(readOnly = true)
     public List<CommentDto> getCommentsByBookId(Long bookId) {
-        return commentRepository.findByBookId(bookId).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return commentRepository.findDtosByBookId(bookId);
     }
 
     @Transactional
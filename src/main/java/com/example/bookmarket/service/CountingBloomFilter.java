@@ -0,0 +1,121 @@
+package com.example.bookmarket.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter over strings with 4-bit counters, sixteen to a {@code long}. {@link #mightContain}
+ * never returns false for a key that was added and not removed; it returns true for an absent key with
+ * roughly the false-positive rate the filter was sized for. Counters that reach 15 stick there so that
+ * removal can never produce a false negative.
+ * <p>
+ * Thread-safe: counters are updated with CAS, so lookups take no lock.
+ */
+public class CountingBloomFilter {
+
+    private static final int COUNTER_BITS = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / COUNTER_BITS;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private final AtomicLongArray words;
+    private final int counters;
+    private final int hashes;
+
+    public CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("expectedEntries must be positive");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        this.counters = (int) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.hashes = Math.max(1, (int) Math.round((double) counters / expectedEntries * ln2));
+        this.words = new AtomicLongArray((counters + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+    }
+
+    public void add(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            update(index(hash, i), 1);
+        }
+    }
+
+    /**
+     * Removes one earlier {@link #add} of the key. Removing a key that was never added can cause false negatives.
+     */
+    public void remove(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            update(index(hash, i), -1);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashes; i++) {
+            int index = index(hash, i);
+            if (counter(words.get(index / COUNTERS_PER_WORD), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    public int counters() {
+        return counters;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    private void update(int index, int delta) {
+        int word = index / COUNTERS_PER_WORD;
+        int shift = (index % COUNTERS_PER_WORD) * COUNTER_BITS;
+        while (true) {
+            long current = words.get(word);
+            long count = (current >>> shift) & COUNTER_MASK;
+            // شمارنده اشباع شده دیگر تغییر نمی کند، شمارنده صفر هم کم نمی شود
+            if (count == COUNTER_MASK || (delta < 0 && count == 0)) {
+                return;
+            }
+            long next = delta > 0 ? current + (1L << shift) : current - (1L << shift);
+            if (words.compareAndSet(word, current, next)) {
+                return;
+            }
+        }
+    }
+
+    private static long counter(long word, int index) {
+        return (word >>> ((index % COUNTERS_PER_WORD) * COUNTER_BITS)) & COUNTER_MASK;
+    }
+
+    // double hashing: اندیس i ام برابر h1 + i * h2 است
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, counters);
+    }
+
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        // finalizer از MurmurHash3 برای پخش بهتر بیت ها
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.entity.SketchSnapshotEntity;
+import com.example.bookmarket.repository.SketchSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One sketch per day, snapshotted to the {@code sketch_snapshot} rows of one {@code kind}; the common part of the
+ * statistics trackers.
+ * <p>
+ * Each day has the sketch that queries read and a second one with the offers not yet written. A snapshot merges
+ * only the unwritten offers into the stored row, which it reads under a write lock, and then rebuilds the day
+ * from the stored row plus whatever arrived meanwhile. Nothing is merged twice, so sketches whose merge adds
+ * counts work as well as idempotent ones, and every node can write the same day: the row ends up with all of
+ * their offers and each node's view picks up the others' the next time it writes that day. An insert race
+ * between two nodes or a lock failure is retried; any other failure puts the offers back for the next snapshot.
+ */
+@Slf4j
+final class DailySketches<S> {
+
+    interface Codec<S> {
+        S create();
+
+        void offer(S sketch, long item);
+
+        // یک sketch جدید برمی گرداند و هیچ کدام از ورودی ها را تغییر نمی دهد
+        S merge(S first, S second);
+
+        byte[] toBytes(S sketch);
+
+        S fromBytes(byte[] bytes);
+    }
+
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+
+    private final String kind;
+    private final Codec<S> codec;
+    private final SketchSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<LocalDate, S> days = new ConcurrentHashMap<>();
+    private final Map<LocalDate, S> unsaved = new ConcurrentHashMap<>();
+    // offer ها با هم اجرا می شوند؛ برداشتن unsaved و بازسازی روزها انحصاری است
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    DailySketches(String kind, Codec<S> codec, SketchSnapshotRepository snapshotRepository,
+                  TransactionTemplate transactionTemplate) {
+        this.kind = kind;
+        this.codec = codec;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    void offer(LocalDate day, long item) {
+        lock.readLock().lock();
+        try {
+            codec.offer(days.computeIfAbsent(day, d -> codec.create()), item);
+            codec.offer(unsaved.computeIfAbsent(day, d -> codec.create()), item);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the day's sketch, or null when nothing was offered or stored for it
+     */
+    S get(LocalDate day) {
+        return days.get(day);
+    }
+
+    int size() {
+        return days.size();
+    }
+
+    /**
+     * Writes the unwritten offers and drops the days before {@code oldest}, in memory and in the table.
+     */
+    void snapshot(LocalDate oldest) {
+        Map<LocalDate, S> batch;
+        lock.writeLock().lock();
+        try {
+            days.keySet().removeIf(day -> day.isBefore(oldest));
+            unsaved.keySet().removeIf(day -> day.isBefore(oldest));
+            batch = new HashMap<>(unsaved);
+            unsaved.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= SNAPSHOT_ATTEMPTS; attempt++) {
+            try {
+                refresh(write(batch, oldest));
+                return;
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                // گره دیگری همان روز را هم زمان درج کرده یا قفل را گرفته است؛ دوباره خوانده می شود
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = e;
+                break;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            batch.forEach((day, sketch) -> unsaved.merge(day, sketch, codec::merge));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.warn("Snapshot of {} failed, {} days will be retried: {}", kind, batch.size(), failure.getMessage());
+    }
+
+    /**
+     * Replaces the days from {@code oldest} on with what is stored, plus the offers not written yet.
+     */
+    void recover(LocalDate oldest) {
+        Map<LocalDate, S> stored = new HashMap<>();
+        for (SketchSnapshotEntity snapshot : snapshotRepository.findByKindAndDayGreaterThanEqual(kind, oldest)) {
+            stored.put(snapshot.getDay(), codec.fromBytes(snapshot.getPayload()));
+        }
+        refresh(stored);
+    }
+
+    private Map<LocalDate, S> write(Map<LocalDate, S> batch, LocalDate oldest) {
+        return transactionTemplate.execute(status -> {
+            Map<LocalDate, S> stored = new HashMap<>();
+            if (!batch.isEmpty()) {
+                Map<LocalDate, SketchSnapshotEntity> existing = snapshotRepository
+                        .findByKindAndDayInOrderByDayAsc(kind, batch.keySet()).stream()
+                        .collect(Collectors.toMap(SketchSnapshotEntity::getDay, Function.identity()));
+                batch.forEach((day, offers) -> {
+                    SketchSnapshotEntity snapshot = existing.get(day);
+                    S sketch = offers;
+                    if (snapshot == null) {
+                        snapshot = new SketchSnapshotEntity(kind, day);
+                    } else {
+                        sketch = codec.merge(codec.fromBytes(snapshot.getPayload()), offers);
+                    }
+                    snapshot.setPayload(codec.toBytes(sketch));
+                    snapshotRepository.save(snapshot);
+                    stored.put(day, sketch);
+                });
+            }
+            snapshotRepository.deleteOlderThan(kind, oldest);
+            return stored;
+        });
+    }
+
+    private void refresh(Map<LocalDate, S> stored) {
+        lock.writeLock().lock();
+        try {
+            stored.forEach((day, sketch) -> {
+                S newer = unsaved.get(day);
+                days.put(day, newer == null ? sketch : codec.merge(sketch, newer));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
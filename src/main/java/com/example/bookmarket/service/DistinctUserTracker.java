@@ -0,0 +1,145 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.CommentAddedEvent;
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.repository.SketchSnapshotRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate distinct borrowers and commenters over any range of days, without {@code COUNT(DISTINCT user_id)}.
+ * <p>
+ * Each activity has one {@link HyperLogLog} per day; a range query unions the days it covers. The users seen
+ * since the last snapshot are merged into the sketches stored in {@code sketch_snapshot} every
+ * {@code statistics.distinct-users.snapshot-interval}, as {@link DailySketches} describes, so all nodes converge
+ * on the union of their users. Days older than {@code statistics.distinct-users.retention-days} are dropped.
+ */
+@Slf4j
+@Component
+public class DistinctUserTracker {
+
+    public enum Activity {
+        BORROW("distinct-borrowers"),
+        COMMENT("distinct-commenters");
+
+        private final String kind;
+
+        Activity(String kind) {
+            this.kind = kind;
+        }
+    }
+
+    private final int precision;
+    private final int retentionDays;
+    private final Map<Activity, DailySketches<HyperLogLog>> days = new EnumMap<>(Activity.class);
+
+    public DistinctUserTracker(SketchSnapshotRepository snapshotRepository, TransactionTemplate transactionTemplate,
+                               @Value("${statistics.distinct-users.precision:12}") int precision,
+                               @Value("${statistics.distinct-users.retention-days:400}") int retentionDays,
+                               MeterRegistry meterRegistry) {
+        this.precision = precision;
+        this.retentionDays = retentionDays;
+        DailySketches.Codec<HyperLogLog> codec = new DailySketches.Codec<>() {
+            @Override
+            public HyperLogLog create() {
+                return new HyperLogLog(precision);
+            }
+
+            @Override
+            public void offer(HyperLogLog sketch, long userId) {
+                sketch.offer(userId);
+            }
+
+            @Override
+            public HyperLogLog merge(HyperLogLog first, HyperLogLog second) {
+                return HyperLogLog.union(precision, List.of(first, second));
+            }
+
+            @Override
+            public byte[] toBytes(HyperLogLog sketch) {
+                return sketch.toBytes();
+            }
+
+            @Override
+            public HyperLogLog fromBytes(byte[] bytes) {
+                return HyperLogLog.fromBytes(bytes);
+            }
+        };
+        for (Activity activity : Activity.values()) {
+            days.put(activity, new DailySketches<>(activity.kind, codec, snapshotRepository, transactionTemplate));
+        }
+        Gauge.builder("statistics.distinct-users.days", this, DistinctUserTracker::size).register(meterRegistry);
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanActivity(LoanActivityEvent event) {
+        if (event.kind() == LoanActivityEvent.Kind.CHECKOUT) {
+            record(Activity.BORROW, event.userId(), event.occurredAt());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommentAdded(CommentAddedEvent event) {
+        record(Activity.COMMENT, event.userId(), event.occurredAt());
+    }
+
+    /**
+     * @param to inclusive
+     */
+    public HyperLogLog union(Activity activity, LocalDate from, LocalDate to) {
+        List<HyperLogLog> range = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            HyperLogLog sketch = days.get(activity).get(day);
+            if (sketch != null) {
+                range.add(sketch);
+            }
+        }
+        return HyperLogLog.union(precision, range);
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.distinct-users.snapshot-interval:1m}")
+    public synchronized void snapshot() {
+        LocalDate oldest = LocalDate.now().minusDays(retentionDays - 1);
+        days.values().forEach(sketches -> sketches.snapshot(oldest));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        LocalDate oldest = LocalDate.now().minusDays(retentionDays - 1);
+        days.values().forEach(sketches -> sketches.recover(oldest));
+        log.info("Recovered distinct user sketches for {} days", size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private void record(Activity activity, Long userId, LocalDateTime occurredAt) {
+        days.get(activity).offer(occurredAt.toLocalDate(), userId);
+    }
+
+    private int size() {
+        return days.values().stream().mapToInt(DailySketches::size).sum();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.bookmarket.service;
+
+/**
+ * HyperLogLog distinct counter (Flajolet et al.) over {@code long} items with {@code 2^precision} one-byte
+ * registers. The standard error of {@link #estimate()} is about {@code 1.04 / sqrt(2^precision)}, 1.6% at the
+ * default precision of 12, whatever the number of distinct items; small cardinalities use linear counting.
+ * <p>
+ * Merging takes the register-wise maximum, so it is commutative and idempotent: merging the same sketch twice,
+ * or merging sketches of overlapping streams, never counts an item twice. Thread-safe; updates take the
+ * sketch's lock.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 15) {
+            throw new IllegalArgumentException("precision must be between 4 and 15");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public synchronized void offer(long item) {
+        long hash = mix(item);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // اولین بیت یک در بیت های باقیمانده؛ بیت نگهبان از 64 فراتر رفتن را می گیرد
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public synchronized long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Folds {@code other} into this sketch. Both must have the same precision.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge precision " + other.precision + " into " + precision);
+        }
+        byte[] incoming;
+        synchronized (other) {
+            incoming = other.registers.clone();
+        }
+        synchronized (this) {
+            for (int i = 0; i < registers.length; i++) {
+                if (incoming[i] > registers[i]) {
+                    registers[i] = incoming[i];
+                }
+            }
+        }
+    }
+
+    public static HyperLogLog union(int precision, Iterable<HyperLogLog> sketches) {
+        HyperLogLog union = new HyperLogLog(precision);
+        for (HyperLogLog sketch : sketches) {
+            union.merge(sketch);
+        }
+        return union;
+    }
+
+    // یک بایت دقت و سپس ثبات ها؛ با دقت 12 حدود 4KB
+    public synchronized byte[] toBytes() {
+        byte[] bytes = new byte[1 + registers.length];
+        bytes[0] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 1, registers.length);
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog(bytes[0]);
+        if (bytes.length != 1 + sketch.registers.length) {
+            throw new IllegalArgumentException("expected " + (1 + sketch.registers.length) + " bytes, got " + bytes.length);
+        }
+        System.arraycopy(bytes, 1, sketch.registers, 0, sketch.registers.length);
+        return sketch;
+    }
+
+    // finalizer از MurmurHash3؛ شناسه های پشت سر هم را در همه بیت ها پخش می کند
+    private static long mix(long item) {
+        long hash = item;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
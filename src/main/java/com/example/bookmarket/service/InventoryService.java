@@ -0,0 +1,46 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.BookStockChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Stock changes for loans. Each call is a single conditional UPDATE, so concurrent
+ * checkouts of the same book cannot oversell and no entity is loaded or dirty-checked.
+ */
+@Service
+public class InventoryService {
+    private final BookRepository bookRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InventoryService(BookRepository bookRepository, ApplicationEventPublisher eventPublisher) {
+        this.bookRepository = bookRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * @return true if one copy was taken, false if the book is out of stock or does not exist
+     */
+    @Transactional
+    public boolean reserve(Long bookId) {
+        return changed(bookId, bookRepository.decrementStock(bookId));
+    }
+
+    /**
+     * @return true if the copy was put back, false if the book does not exist
+     */
+    @Transactional
+    public boolean release(Long bookId) {
+        return changed(bookId, bookRepository.incrementStock(bookId));
+    }
+
+    private boolean changed(Long bookId, int updatedRows) {
+        if (updatedRows == 1) {
+            eventPublisher.publishEvent(new BookStockChangedEvent(bookId));
+            return true;
+        }
+        return false;
+    }
+}
@@ -1,16 +1,21 @@
 package com.example.bookmarket.service;
 
 import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
 import com.example.bookmarket.dto.AddLibrarianDto;
 import com.example.bookmarket.dto.TokenDto;
 import com.example.bookmarket.dto.UpdateLibrarianDto;
 import com.example.bookmarket.entity.LibrarianEntity;
+import com.example.bookmarket.enums.AccountType;
 import com.example.bookmarket.enums.LibrarianStatus;
+import com.example.bookmarket.event.PrincipalChangedEvent;
 import com.example.bookmarket.exception.*;
 import com.example.bookmarket.repository.LibrarianRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
@@ -19,100 +24,153 @@ import java.util.Set;
 public class LibrarianService {
     private final LibrarianRepository librarianRepository;
     private final JwtUtil jwtUtil;
-    private final PasswordEncoder passwordEncoder;
-
-    public LibrarianService(LibrarianRepository librarianRepository, JwtUtil jwtUtil, PasswordEncoder passwordEncoder) {
+    private final PasswordHasher passwordHasher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SessionRegistry sessionRegistry;
+    private final TokenRevocationService tokenRevocationService;
+    private final TransactionTemplate transactionTemplate;
+
+    public LibrarianService(LibrarianRepository librarianRepository, JwtUtil jwtUtil, PasswordHasher passwordHasher,
+                            ApplicationEventPublisher eventPublisher, SessionRegistry sessionRegistry,
+                            TokenRevocationService tokenRevocationService, TransactionTemplate transactionTemplate) {
         this.librarianRepository = librarianRepository;
         this.jwtUtil = jwtUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.eventPublisher = eventPublisher;
+        this.sessionRegistry = sessionRegistry;
+        this.tokenRevocationService = tokenRevocationService;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
+    // هش کردن بیرون از تراکنش انجام می شود تا اتصال پایگاه داده در صف هش کردن منتظر نماند
     public AddLibrarianDto add(AddLibrarianDto addLibrarianDto) {
         if (librarianRepository.existsByUsername(addLibrarianDto.username())) {
             throw new RuntimeException("Librarian with username '" + addLibrarianDto.username() + "' already exists");
         }
+        String passwordHash = passwordHasher.encode(addLibrarianDto.password());
+
+        return transactionTemplate.execute(status -> {
+            if (librarianRepository.existsByUsername(addLibrarianDto.username())) {
+                throw new RuntimeException("Librarian with username '" + addLibrarianDto.username() + "' already exists");
+            }
 
-        var librarianEntity = new LibrarianEntity();
-        librarianEntity.setUsername(addLibrarianDto.username());
-        librarianEntity.setPassword(passwordEncoder.encode(addLibrarianDto.password()));
-        librarianEntity.setStatus(LibrarianStatus.INACTIVE); // تغییر به LibrarianStatus
+            var librarianEntity = new LibrarianEntity();
+            librarianEntity.setUsername(addLibrarianDto.username());
+            librarianEntity.setPassword(passwordHash);
+            librarianEntity.setStatus(LibrarianStatus.INACTIVE); // تغییر به LibrarianStatus
 
-        LibrarianEntity savedLibrarian = librarianRepository.save(librarianEntity);
-        return convertToAddLibrarianDto(savedLibrarian);
+            LibrarianEntity savedLibrarian = librarianRepository.save(librarianEntity);
+            return convertToAddLibrarianDto(savedLibrarian);
+        });
     }
 
     public TokenDto login(String username, String password) {
         LibrarianEntity librarian = librarianRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
 
-        if (librarian.getStatus() == LibrarianStatus.ACTIVE) { // تغییر به LibrarianStatus
+        if (sessionRegistry.isActive(AccountType.LIBRARIAN, librarian.getId())) {
             throw new UserAlreadyLoggedInException(username);
         }
 
-        if (!passwordEncoder.matches(password, librarian.getPassword())) {
+        if (!passwordHasher.matches(password, librarian.getPassword())) {
             throw new IllegalArgumentException("Incorrect password"); // تغییر به InvalidPasswordException
         }
 
-        librarian.setStatus(LibrarianStatus.ACTIVE); // تغییر به LibrarianStatus
-        librarianRepository.save(librarian);
+        String rehashed = passwordHasher.rehashIfNeeded(password, librarian.getPassword());
+        if (rehashed != null) {
+            librarian.setPassword(rehashed);
+            librarianRepository.save(librarian);
+        }
 
         Set<String> roles = getLibrarianRoles(username); // استفاده از متد getLibrarianRoles
 
         String accessToken = jwtUtil.generateToken(username, roles);
         String refreshToken = jwtUtil.generateRefreshToken(username);
 
+        Instant sessionExpiresAt = jwtUtil.verify(refreshToken).expiresAt();
+        if (!sessionRegistry.open(AccountType.LIBRARIAN, librarian.getId(), username, sessionExpiresAt)) {
+            throw new UserAlreadyLoggedInException(username);
+        }
+
         return new TokenDto(accessToken, refreshToken, "Login successful"); // اضافه کردن پیام
     }
 
+    /**
+     * @param accessToken the caller's token; it must belong to {@code id} or to an admin. Logging out oneself
+     *                    revokes that token, logging out another librarian revokes all of theirs.
+     */
     @Transactional
-    public void logout(Long id) {
+    public void logout(Long id, VerifiedToken accessToken) {
         LibrarianEntity librarianEntity = librarianRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException(id));
+        boolean self = accessToken != null && librarianEntity.getUsername().equals(accessToken.username());
+        if (!self && (accessToken == null || !accessToken.roles().contains("ADMIN"))) {
+            throw new AccountAccessDeniedException(id);
+        }
 
-        if (librarianEntity.getStatus() == LibrarianStatus.INACTIVE) { // تغییر به LibrarianStatus
+        if (!sessionRegistry.close(AccountType.LIBRARIAN, id)) {
             throw new UserAlreadyLoggedOutException(librarianEntity.getUsername());
         }
+        // توکن مدیری که دیگری را خارج می کند باطل نمی شود؛ توکن های کتابدار هدف را نمی شناسیم، پس همه باطل می شوند
+        if (self) {
+            tokenRevocationService.revoke(accessToken);
+        } else {
+            tokenRevocationService.revokeAll(librarianEntity.getUsername());
+        }
+        eventPublisher.publishEvent(new PrincipalChangedEvent(librarianEntity.getUsername()));
+    }
 
-        librarianEntity.setStatus(LibrarianStatus.INACTIVE); // تغییر به LibrarianStatus
-        librarianRepository.save(librarianEntity);
+    public void revokeAllTokens(Long id) {
+        LibrarianEntity librarianEntity = librarianRepository.findById(id)
+                .orElseThrow(() -> new UserNotFoundException(id));
+
+        tokenRevocationService.revokeAll(librarianEntity.getUsername());
+        sessionRegistry.close(AccountType.LIBRARIAN, id);
     }
 
-    @Transactional
     public UpdateLibrarianDto update(UpdateLibrarianDto updateLibrarianDto) {
-        LibrarianEntity librarianEntity = librarianRepository.findById(updateLibrarianDto.id())
-                .orElseThrow(() -> new UserNotFoundException(updateLibrarianDto.id()));
+        String passwordHash = updateLibrarianDto.password() == null ? null
+                : passwordHasher.encode(updateLibrarianDto.password());
 
-        if (updateLibrarianDto.username() != null) {
-            librarianEntity.setUsername(updateLibrarianDto.username());
-        }
-        if (updateLibrarianDto.password() != null) {
-            librarianEntity.setPassword(passwordEncoder.encode(updateLibrarianDto.password()));
-        }
+        return transactionTemplate.execute(status -> {
+            LibrarianEntity librarianEntity = librarianRepository.findById(updateLibrarianDto.id())
+                    .orElseThrow(() -> new UserNotFoundException(updateLibrarianDto.id()));
+            eventPublisher.publishEvent(new PrincipalChangedEvent(librarianEntity.getUsername()));
 
-        LibrarianEntity updatedLibrarian = librarianRepository.save(librarianEntity);
-        return convertToUpdateLibrarianDto(updatedLibrarian);
+            if (updateLibrarianDto.username() != null && !updateLibrarianDto.username().equals(librarianEntity.getUsername())) {
+                librarianEntity.setUsername(updateLibrarianDto.username());
+                eventPublisher.publishEvent(new PrincipalChangedEvent(updateLibrarianDto.username()));
+            }
+            if (passwordHash != null) {
+                librarianEntity.setPassword(passwordHash);
+            }
+
+            LibrarianEntity updatedLibrarian = librarianRepository.save(librarianEntity);
+            return convertToUpdateLibrarianDto(updatedLibrarian);
+        });
     }
 
     @Transactional
     public void delete(Long id) {
-        if (!librarianRepository.existsById(id)) {
-            throw new UserNotFoundException(id);
-        }
-        librarianRepository.deleteById(id);
+        LibrarianEntity librarianEntity = librarianRepository.findById(id)
+                .orElseThrow(() -> new UserNotFoundException(id));
+        librarianRepository.delete(librarianEntity);
+        sessionRegistry.close(AccountType.LIBRARIAN, id);
+        eventPublisher.publishEvent(new PrincipalChangedEvent(librarianEntity.getUsername()));
     }
 
     @Transactional
     public TokenDto refreshToken(String refreshToken) {
         try {
-            String username = jwtUtil.extractUsername(refreshToken);
+            VerifiedToken token = jwtUtil.verify(refreshToken);
+            String username = token.username();
 
-            if (!jwtUtil.isRefreshToken(refreshToken)) {
+            if (!token.isRefreshToken()) {
                 throw new InvalidTokenException("Invalid token type. Refresh token required.");
             }
 
-            if (!jwtUtil.validateToken(refreshToken, username)) {
-                throw new InvalidTokenException("Refresh token is invalid or expired");
+            if (tokenRevocationService.isRevoked(token)) {
+                throw new InvalidTokenException("Refresh token has been revoked");
             }
 
 
@@ -120,7 +178,7 @@ public class LibrarianService {
                     .orElseThrow(() -> new UserNotFoundException(username));
 
 
-            if (librarian.getStatus() != LibrarianStatus.ACTIVE) { // تغییر به LibrarianStatus
+            if (!sessionRegistry.isActive(AccountType.LIBRARIAN, librarian.getId())) {
                 throw new UserInactiveException("Librarian account is not active");
             }
 
@@ -0,0 +1,261 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.LoanActivityCount;
+import com.example.bookmarket.dto.LoanActivityDto;
+import com.example.bookmarket.dto.OverdueCount;
+import com.example.bookmarket.entity.LoanActivityRollupEntity;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.RollupGranularity;
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.repository.LoanActivityRollupRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hourly and daily checkouts, returns and overdues per genre, kept in {@code loan_activity_rollup} so that the
+ * activity endpoint reads a few hundred rollup rows instead of grouping the loan table.
+ * <p>
+ * Checkouts and returns arrive as {@link LoanActivityEvent}s after the loan transaction commits, are summed in
+ * memory and written behind every {@code statistics.activity.flush-interval}; reads add the unwritten deltas.
+ * A delta leaves memory only in the same step that commits it, so a read sees it exactly once.
+ * Overdues are not events: the count for a day is recomputed from the loans due the day before, for the last
+ * {@code statistics.activity.overdue-lookback} days, hourly and at startup.
+ * <p>
+ * When the table is empty at startup it is filled once from the loan table. Loans returned before
+ * {@code returned_at} existed are missing from the returns and overdues of that backfill.
+ */
+@Slf4j
+@Component
+public class LoanActivityRollup {
+
+    static final String UNKNOWN_GENRE = "UNKNOWN";
+
+    private record BucketKey(RollupGranularity granularity, LocalDateTime bucketStart, String genre) {
+    }
+
+    private record Delta(long checkouts, long returns) {
+        Delta plus(Delta other) {
+            return new Delta(checkouts + other.checkouts, returns + other.returns);
+        }
+
+        Delta minus(Delta other) {
+            return new Delta(checkouts - other.checkouts, returns - other.returns);
+        }
+
+        boolean isZero() {
+            return checkouts == 0 && returns == 0;
+        }
+    }
+
+    private final LoanActivityRollupRepository rollupRepository;
+    private final LoanRepository loanRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int overdueLookback;
+    private final Map<BucketKey, Delta> pending = new ConcurrentHashMap<>();
+    // خواندن ها در حین نوشتن flush دوباره تکرار می شوند تا یک دلتا هم در جدول و هم در pending دیده نشود
+    private final StampedLock flushLock = new StampedLock();
+    // پر کردن اولیه و رویدادها روی مرز backfilledUntil توافق می کنند
+    private final ReadWriteLock cutoffLock = new ReentrantReadWriteLock();
+
+    // رویدادهای قبل از این لحظه در پر کردن اولیه شمرده شده اند
+    private volatile LocalDateTime backfilledUntil = LocalDateTime.MIN;
+
+    public LoanActivityRollup(LoanActivityRollupRepository rollupRepository, LoanRepository loanRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${statistics.activity.overdue-lookback:7}") int overdueLookback,
+                              MeterRegistry meterRegistry) {
+        this.rollupRepository = rollupRepository;
+        this.loanRepository = loanRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.overdueLookback = overdueLookback;
+        Gauge.builder("statistics.activity.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanActivity(LoanActivityEvent event) {
+        Delta delta = event.kind() == LoanActivityEvent.Kind.CHECKOUT ? new Delta(1, 0) : new Delta(0, 1);
+        String genre = genreOf(event.genre());
+        cutoffLock.readLock().lock();
+        try {
+            if (event.occurredAt().isBefore(backfilledUntil)) {
+                return;
+            }
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                pending.merge(new BucketKey(granularity, granularity.bucketOf(event.occurredAt()), genre), delta, Delta::plus);
+            }
+        } finally {
+            cutoffLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param to exclusive
+     */
+    public List<LoanActivityDto> series(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, String genre) {
+        long stamp = flushLock.tryOptimisticRead();
+        List<LoanActivityDto> series = read(granularity, from, to, genre);
+        if (flushLock.validate(stamp)) {
+            return series;
+        }
+        stamp = flushLock.readLock();
+        try {
+            return read(granularity, from, to, genre);
+        } finally {
+            flushLock.unlockRead(stamp);
+        }
+    }
+
+    private List<LoanActivityDto> read(RollupGranularity granularity, LocalDateTime from, LocalDateTime to, String genre) {
+        Map<BucketKey, LoanActivityDto> series = new TreeMap<>(
+                Comparator.comparing(BucketKey::bucketStart).thenComparing(BucketKey::genre));
+        for (LoanActivityRollupEntity row : rollupRepository.findSeries(granularity, from, to, genre)) {
+            series.put(new BucketKey(granularity, row.getBucketStart(), row.getGenre()), new LoanActivityDto(
+                    row.getBucketStart(), row.getGenre(), row.getCheckouts(), row.getReturns(), row.getOverdues()));
+        }
+        pending.forEach((key, delta) -> {
+            if (key.granularity() != granularity || key.bucketStart().isBefore(from) || !key.bucketStart().isBefore(to)
+                    || (genre != null && !genre.equals(key.genre()))) {
+                return;
+            }
+            LoanActivityDto row = series.get(key);
+            series.put(key, row == null
+                    ? new LoanActivityDto(key.bucketStart(), key.genre(), delta.checkouts(), delta.returns(), 0)
+                    : new LoanActivityDto(row.bucket(), row.genre(), row.checkouts() + delta.checkouts(),
+                    row.returns() + delta.returns(), row.overdues()));
+        });
+        return new ArrayList<>(series.values());
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.activity.flush-interval:10s}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // دلتاها تا کامیت در pending می مانند؛ اگر نوشتن شکست بخورد چیزی برای بازگرداندن نیست
+        Map<BucketKey, Delta> batch = new HashMap<>(pending);
+        long stamp = flushLock.writeLock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(this::write));
+            // رویدادهایی که در این فاصله رسیده اند باقی می مانند
+            batch.forEach((key, delta) -> pending.computeIfPresent(key, (k, current) -> {
+                Delta rest = current.minus(delta);
+                return rest.isZero() ? null : rest;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Loan activity flush failed, {} buckets will be retried: {}", batch.size(), e.getMessage());
+        } finally {
+            flushLock.unlockWrite(stamp);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${statistics.activity.overdue-interval:1h}",
+            fixedDelayString = "${statistics.activity.overdue-interval:1h}")
+    public synchronized void recomputeOverdues() {
+        LocalDate today = LocalDate.now();
+        recomputeOverdues(today.minusDays(overdueLookback), today);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (rollupRepository.count() == 0) {
+            backfill();
+        }
+        recomputeOverdues();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Fills the rollups from the loan table with one grouped query each for checkouts, returns and overdues.
+     */
+    public synchronized void backfill() {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now();
+        cutoffLock.writeLock().lock();
+        try {
+            pending.clear();
+            backfilledUntil = cutoff;
+        } finally {
+            cutoffLock.writeLock().unlock();
+        }
+
+        Map<BucketKey, Delta> buckets = new HashMap<>();
+        for (LoanActivityCount count : loanRepository.countCheckoutsByHour(cutoff)) {
+            addHour(buckets, count, new Delta(count.getTotal(), 0));
+        }
+        for (LoanActivityCount count : loanRepository.countReturnsByHour(cutoff)) {
+            addHour(buckets, count, new Delta(0, count.getTotal()));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            rollupRepository.deleteAllInBatch();
+            buckets.forEach(this::write);
+        });
+        recomputeOverdues(LocalDate.EPOCH, cutoff.toLocalDate());
+        log.info("Backfilled {} loan activity buckets in {} ms", buckets.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // یک امانت از شروع روز بعد از سررسید دیرکرد حساب می شود؛ بازه [from, to) روی تاریخ سررسید است
+    private void recomputeOverdues(LocalDate from, LocalDate to) {
+        List<OverdueCount> counts = loanRepository.countOverdues(from, to, LoanStatus.ACTIVE);
+        transactionTemplate.executeWithoutResult(status -> {
+            rollupRepository.clearOverdues(from.plusDays(1).atStartOfDay(), to.plusDays(1).atStartOfDay());
+            Map<String, Map<LocalDate, Long>> byGenre = new HashMap<>();
+            for (OverdueCount count : counts) {
+                byGenre.computeIfAbsent(genreOf(count.getGenre()), genre -> new HashMap<>())
+                        .merge(count.getDueDate(), count.getTotal(), Long::sum);
+            }
+            byGenre.forEach((genre, byDueDate) -> byDueDate.forEach((dueDate, total) -> {
+                LocalDateTime overdueAt = dueDate.plusDays(1).atStartOfDay();
+                for (RollupGranularity granularity : RollupGranularity.values()) {
+                    if (rollupRepository.setOverdues(granularity, overdueAt, genre, total) == 0) {
+                        rollupRepository.save(new LoanActivityRollupEntity(granularity, overdueAt, genre, 0, 0, total));
+                    }
+                }
+            }));
+        });
+    }
+
+    private static void addHour(Map<BucketKey, Delta> buckets, LoanActivityCount count, Delta delta) {
+        LocalDateTime hour = count.getDay().atTime(count.getHour(), 0);
+        String genre = genreOf(count.getGenre());
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            buckets.merge(new BucketKey(granularity, granularity.bucketOf(hour), genre), delta, Delta::plus);
+        }
+    }
+
+    private void write(BucketKey key, Delta delta) {
+        int updated = rollupRepository.addActivity(key.granularity(), key.bucketStart(), key.genre(),
+                delta.checkouts(), delta.returns());
+        if (updated == 0) {
+            rollupRepository.save(new LoanActivityRollupEntity(key.granularity(), key.bucketStart(), key.genre(),
+                    delta.checkouts(), delta.returns(), 0));
+        }
+    }
+
+    private static String genreOf(String genre) {
+        return genre == null || genre.isBlank() ? UNKNOWN_GENRE : genre;
+    }
+}
@@ -1,21 +1,33 @@
 package com.example.bookmarket.service;
 
+import com.example.bookmarket.dto.CursorPageDto;
+import com.example.bookmarket.dto.LoanAdmission;
 import com.example.bookmarket.dto.LoanDto;
+import com.example.bookmarket.dto.LoanSearchCriteria;
 import com.example.bookmarket.dto.UpdateLoanDto;
 import com.example.bookmarket.entity.BookEntity;
 import com.example.bookmarket.entity.LoanEntity;
 import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
 import com.example.bookmarket.enums.LoanStatus;
-import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.event.StatisticsChangedEvent;
 import com.example.bookmarket.exception.*;
 import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.LoanSpecifications;
 import com.example.bookmarket.repository.UserRepository;
 import com.example.bookmarket.repository.BookRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -24,64 +36,67 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class LoanService {
 
-    private LoanRepository loanRepository;
-    private UserRepository userRepository;
-    private BookRepository bookRepository;
+    private final LoanRepository loanRepository;
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final InventoryService inventoryService;
+    private final SessionRegistry sessionRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public LoanService(LoanRepository loanRepository, UserRepository userRepository, BookRepository bookRepository) {
-        this.loanRepository = loanRepository;
-        this.userRepository = userRepository;
-        this.bookRepository = bookRepository;
-    }
+    private static final int MAX_ACTIVE_LOANS = 5;
+
+    @Value("${loans.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${loans.page.max-size:100}")
+    private int maxPageSize;
 
     @Transactional
     public LoanDto createLoan(LoanDto loanDto) {
-        UserEntity user = userRepository.findById(loanDto.userId())
-                .orElseThrow(() -> new UserNotFoundException(loanDto.userId()));
+        Long userId = loanDto.userId();
+        Long bookId = loanDto.bookId();
 
-        if (user.getStatus() == UserStatus.INACTIVE) {
-            throw new UserInactiveException(loanDto.userId());
-        }
-
-        BookEntity book = bookRepository.findById(loanDto.bookId())
-                .orElseThrow(() -> new BookNotFoundException(loanDto.bookId()));
+        LoanAdmission admission = loanRepository.findAdmission(userId, bookId, LoanStatus.ACTIVE)
+                .orElseThrow(() -> userRepository.existsById(userId)
+                        ? new BookNotFoundException(bookId)
+                        : new UserNotFoundException(userId));
 
-        long activeLoansCount = countActiveLoansByUserId(loanDto.userId());
-        if (activeLoansCount >= 5) {
-            throw new LimitExceededException(loanDto.userId());
+        if (!sessionRegistry.isActive(AccountType.USER, userId)) {
+            throw new UserInactiveException(userId);
         }
 
-        Integer stock = book.getNumberOfBooks();
-        if (stock == null || stock <= 0) {
-            throw new BookOutOfStockException(loanDto.bookId());
+        if (admission.getActiveLoans() >= MAX_ACTIVE_LOANS) {
+            throw new LimitExceededException(userId);
         }
 
-        book.setNumberOfBooks(stock - 1);
-        bookRepository.save(book);
+        Integer stock = admission.getStock();
+        if (stock == null || stock <= 0 || !inventoryService.reserve(bookId)) {
+            throw new BookOutOfStockException(bookId);
+        }
 
         LoanEntity loan = new LoanEntity();
-        loan.setUser(user);
-        loan.setBook(book);
-        loan.setPrice(book.getPrice());
-        loan.setFinalPrice(book.getFinalPrice());
+        loan.setUser(userRepository.getReferenceById(userId));
+        loan.setBook(bookRepository.getReferenceById(bookId));
+        loan.setPrice(admission.getPrice());
+        loan.setFinalPrice(admission.getFinalPrice());
         loan.setLoanDate(LocalDateTime.now());
         loan.setDueDate(loanDto.dueDate());
 
         LoanEntity savedLoan = loanRepository.save(loan);
+        eventPublisher.publishEvent(StatisticsChangedEvent.loanCreated());
+        eventPublisher.publishEvent(
+                LoanActivityEvent.checkout(bookId, userId, admission.getGenre(), savedLoan.getLoanDate()));
         return convertToLoanDto(savedLoan);
     }
 
     @Transactional(readOnly = true)
     public Optional<UpdateLoanDto> findById(Long loanId) {
-        return loanRepository.findById(loanId)
-                .map(this::convertToUpdateLoanDto);
+        return loanRepository.findLoanDtoById(loanId);
     }
 
     @Transactional(readOnly = true)
     public List<UpdateLoanDto> getAllLoans() {
-        return loanRepository.findAll().stream()
-                .map(this::convertToUpdateLoanDto)
-                .collect(Collectors.toList());
+        return loanRepository.findAllLoanDtos();
     }
 
     @Transactional
@@ -92,12 +107,12 @@ public class LoanService {
         UserEntity user = userRepository.findById(updateLoanDto.userId())
                 .orElseThrow(() -> new UserNotFoundException(updateLoanDto.userId()));
 
-        if (user.getStatus() == UserStatus.INACTIVE) {
+        if (!sessionRegistry.isActive(AccountType.USER, user.getId())) {
             throw new UserInactiveException(updateLoanDto.userId());
         }
 
         long activeLoansCount = countActiveLoansByUserId(updateLoanDto.userId());
-        if (activeLoansCount >= 5) {
+        if (activeLoansCount >= MAX_ACTIVE_LOANS) {
             throw new LimitExceededException(updateLoanDto.userId());
         }
 
@@ -119,78 +134,47 @@ public class LoanService {
         LoanEntity loan = loanRepository.findById(id)
                 .orElseThrow(() -> new LoanNotFoundException(id));
 
-        if (loan.getStatus() == LoanStatus.ACTIVE) {
-            BookEntity book = loan.getBook();
-            Integer currentStock = book.getNumberOfBooks();
-            book.setNumberOfBooks(currentStock + 1);
-            bookRepository.save(book);
+        // وضعیت خوانده شده ممکن است تا حذف عوض شود، پس حذف به همان وضعیت مشروط است
+        LoanStatus status = loan.getStatus();
+        if (loanRepository.deleteByIdAndStatus(id, status) == 0) {
+            status = status == LoanStatus.ACTIVE ? LoanStatus.RETURNED : LoanStatus.ACTIVE;
+            if (loanRepository.deleteByIdAndStatus(id, status) == 0) {
+                throw new LoanNotFoundException(id);
+            }
         }
 
-        loanRepository.deleteById(id);
-    }
-
-    @Transactional(readOnly = true)
-    public List<UpdateLoanDto> getLoansByUserId(Long userId) {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException(userId));
-        return loanRepository.findByUser(user).stream()
-                .map(this::convertToUpdateLoanDto)
-                .collect(Collectors.toList());
-    }
-
-    @Transactional(readOnly = true)
-    public List<UpdateLoanDto> getLoansByBookId(Long bookId) {
-        BookEntity book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new BookNotFoundException(bookId));
-        return loanRepository.findByBook(book).stream()
-                .map(this::convertToUpdateLoanDto)
-                .collect(Collectors.toList());
+        if (status == LoanStatus.ACTIVE) {
+            inventoryService.release(loan.getBook().getId());
+        }
+        eventPublisher.publishEvent(StatisticsChangedEvent.loanDeleted(status));
     }
 
     @Transactional
     public void returnLoan(Long loanId) {
-        LoanEntity loan = loanRepository.findById(loanId)
+        LoanEntity loan = loanRepository.findWithBookById(loanId)
                 .orElseThrow(() -> new LoanNotFoundException(loanId));
 
         if (loan.getStatus() == LoanStatus.RETURNED) {
             throw new BookAlreadyReturnedException();
         }
 
-        BookEntity book = loan.getBook();
-        Integer currentStock = book.getNumberOfBooks();
-        book.setNumberOfBooks(currentStock + 1);
-        bookRepository.save(book);
-
-        loan.setStatus(LoanStatus.RETURNED);
-        loanRepository.save(loan);
-    }
-
-    public long countLoansByStatus(LoanStatus status) { // تغییر به LoanStatus
-        return loanRepository.countByStatus(status);
-    }
-
-    public long countActiveLoans() {
-        return countLoansByStatus(LoanStatus.ACTIVE);
-    }
-
-    public long countReturnedLoans() {
-        return countLoansByStatus(LoanStatus.RETURNED);
-    }
-
-    public long countTotalLoans() {
-        return countActiveLoans() + countReturnedLoans();
-    }
+        LocalDateTime returnedAt = LocalDateTime.now();
+        if (loanRepository.markReturned(loanId, returnedAt, LoanStatus.ACTIVE, LoanStatus.RETURNED) == 0) {
+            // برگشت یا حذف هم زمان زودتر ثبت شده است
+            if (loanRepository.existsById(loanId)) {
+                throw new BookAlreadyReturnedException();
+            }
+            throw new LoanNotFoundException(loanId);
+        }
 
-    public List<UpdateLoanDto> getLoansByStatus(LoanStatus status) {
-        return loanRepository.findByStatus(status).stream()
-                .map(this::convertToUpdateLoanDto)
-                .collect(Collectors.toList());
+        inventoryService.release(loan.getBook().getId());
+        eventPublisher.publishEvent(StatisticsChangedEvent.loanReturned());
+        eventPublisher.publishEvent(LoanActivityEvent.returned(loan.getBook().getId(), loan.getUser().getId(),
+                loan.getBook().getGenre(), returnedAt));
     }
 
     public long countActiveLoansByUserId(Long userId) {
-        UserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException(userId));
-        return loanRepository.countByUserAndStatus(user, LoanStatus.ACTIVE);
+        return loanRepository.countByUserIdAndStatus(userId, LoanStatus.ACTIVE);
     }
 
     private LoanDto convertToLoanDto(LoanEntity loan) {
@@ -211,21 +195,66 @@ public class LoanService {
     }
 
     @Transactional(readOnly = true)
-    public List<UpdateLoanDto> searchLoans(Long userId, Long bookId, LoanStatus status) {
-        if (userId != null) {
-            // بررسی وجود کاربر
-            UserEntity user = userRepository.findById(userId)
-                    .orElseThrow(() -> new UserNotFoundException(userId));
-            return getLoansByUserId(userId);
-        } else if (bookId != null) {
-
-            BookEntity book = bookRepository.findById(bookId)
-                    .orElseThrow(() -> new BookNotFoundException(bookId));
-            return getLoansByBookId(bookId);
-        } else if (status != null) {
-            return getLoansByStatus(status);
-        } else {
-            return getAllLoans();
+    public CursorPageDto<UpdateLoanDto> searchLoans(LoanSearchCriteria criteria, String cursor, Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        Long before = cursor == null || cursor.isBlank() ? null : LoanCursor.decode(cursor).id();
+
+        // همه فیلترها در یک کوئری؛ ایندکس های (user_id, status, id)، (book_id, status, id) و (status, due_date, id)
+        // آن را پوشش می دهند و ردیف ها را به ترتیب id برمی گردانند. در آخری ترتیب id فقط وقتی برقرار است که due_date
+        // با تساوی مقایسه شود؛ با بازه سررسید پایگاه داده ردیف های بازه را مرتب می کند
+        Specification<LoanEntity> filters = Specification.allOf(
+                LoanSpecifications.userIdEquals(criteria.userId()),
+                LoanSpecifications.bookIdEquals(criteria.bookId()),
+                LoanSpecifications.statusEquals(criteria.status()),
+                LoanSpecifications.loanedOnOrAfter(criteria.loanedFrom()),
+                LoanSpecifications.loanedOnOrBefore(criteria.loanedTo()),
+                LoanSpecifications.dueOnOrAfter(criteria.dueFrom()),
+                LoanSpecifications.dueOnOrBefore(criteria.dueTo()),
+                LoanSpecifications.idBefore(before)
+        );
+        List<LoanEntity> loans = loanRepository.findBy(filters, query -> query
+                .sortBy(Sort.by(Sort.Direction.DESC, "id"))
+                .limit(pageSize + 1)
+                .all());
+
+        if (loans.isEmpty() && before == null) {
+            // وجود کاربر و کتاب فقط وقتی بررسی می شود که نتیجه ای نباشد
+            if (criteria.userId() != null && !userRepository.existsById(criteria.userId())) {
+                throw new UserNotFoundException(criteria.userId());
+            }
+            if (criteria.bookId() != null && !bookRepository.existsById(criteria.bookId())) {
+                throw new BookNotFoundException(criteria.bookId());
+            }
+        }
+
+        boolean hasNext = loans.size() > pageSize;
+        if (hasNext) {
+            loans = loans.subList(0, pageSize);
+        }
+        String nextCursor = hasNext ? new LoanCursor(loans.get(loans.size() - 1).getId()).encode() : null;
+
+        List<UpdateLoanDto> items = loans.stream()
+                .map(this::convertToUpdateLoanDto)
+                .collect(Collectors.toList());
+        return new CursorPageDto<>(items, nextCursor, hasNext);
+    }
+
+    private record LoanCursor(Long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(("l:" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static LoanCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                if (raw.startsWith("l:")) {
+                    return new LoanCursor(Long.parseLong(raw.substring(2)));
+                }
+            } catch (IllegalArgumentException e) {
+                // پایین InvalidCursorException پرتاب می شود
+            }
+            throw new InvalidCursorException(cursor);
         }
     }
-}
\ No newline at end of file
+}
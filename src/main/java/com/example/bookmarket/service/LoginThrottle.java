@@ -0,0 +1,109 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets per client IP, per (username, client IP) pair and per username for the login endpoints.
+ * A bucket holds up to {@code capacity} attempts and regains one every {@code refill-every}.
+ * <p>
+ * The pair bucket stops one address quickly without locking the account out for everyone else. The larger,
+ * slower account bucket caps the guesses against one username from all addresses together, so spreading an
+ * attack over many addresses does not multiply its attempts. An attempt takes a token from every bucket or
+ * from none.
+ */
+@Component
+public class LoginThrottle {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final int usernameCapacity;
+    private final long usernameRefillNanos;
+    private final int accountCapacity;
+    private final long accountRefillNanos;
+    private final int ipCapacity;
+    private final long ipRefillNanos;
+
+    public LoginThrottle(@Value("${security.login.per-username.capacity:5}") int usernameCapacity,
+                         @Value("${security.login.per-username.refill-every:12s}") Duration usernameRefill,
+                         @Value("${security.login.per-account.capacity:20}") int accountCapacity,
+                         @Value("${security.login.per-account.refill-every:1m}") Duration accountRefill,
+                         @Value("${security.login.per-ip.capacity:30}") int ipCapacity,
+                         @Value("${security.login.per-ip.refill-every:2s}") Duration ipRefill) {
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefillNanos = usernameRefill.toNanos();
+        this.accountCapacity = accountCapacity;
+        this.accountRefillNanos = accountRefill.toNanos();
+        this.ipCapacity = ipCapacity;
+        this.ipRefillNanos = ipRefill.toNanos();
+
+        // سطلی که مدتی استفاده نشده دوباره پر است، پس حذفش تاثیری ندارد
+        long idleNanos = Math.max(Math.max(usernameCapacity * usernameRefillNanos, accountCapacity * accountRefillNanos),
+                ipCapacity * ipRefillNanos);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(idleNanos, TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /**
+     * @throws TooManyRequestsException when the client IP, the username from that IP or the username from any
+     *                                  address has no attempts left
+     */
+    public void acquire(String username, String clientIp) {
+        TokenBucket ip = buckets.get("ip:" + clientIp, k -> new TokenBucket(ipCapacity, ipRefillNanos));
+        TokenBucket account = buckets.get("account:" + username,
+                k -> new TokenBucket(accountCapacity, accountRefillNanos));
+        TokenBucket user = buckets.get("user:" + username + "@" + clientIp,
+                k -> new TokenBucket(usernameCapacity, usernameRefillNanos));
+        long now = System.nanoTime();
+        // ترتیب قفل ها همیشه IP، حساب و بعد جفت است، پس دو درخواست هم زمان بن بست نمی سازند
+        synchronized (ip) {
+            synchronized (account) {
+                synchronized (user) {
+                    long waitNanos = Math.max(ip.refill(now), Math.max(account.refill(now), user.refill(now)));
+                    if (waitNanos > 0) {
+                        throw new TooManyRequestsException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L)));
+                    }
+                    ip.take();
+                    account.take();
+                    user.take();
+                }
+            }
+        }
+    }
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final long refillNanos;
+        private double tokens;
+        private long updatedAt;
+
+        private TokenBucket(int capacity, long refillNanos) {
+            this.capacity = capacity;
+            this.refillNanos = refillNanos;
+            this.tokens = capacity;
+            this.updatedAt = System.nanoTime();
+        }
+
+        /**
+         * Caller holds the bucket's lock.
+         *
+         * @return 0 when a token is available, otherwise nanoseconds until the next one is
+         */
+        private long refill(long now) {
+            tokens = Math.min(capacity, tokens + (double) Math.max(0, now - updatedAt) / refillNanos);
+            updatedAt = Math.max(updatedAt, now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * refillNanos);
+        }
+
+        private void take() {
+            tokens -= 1;
+        }
+    }
+}
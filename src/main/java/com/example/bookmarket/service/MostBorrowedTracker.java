@@ -0,0 +1,128 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.repository.SketchSnapshotRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Approximate most borrowed books over a sliding window of days, without reading the loan table.
+ * <p>
+ * Each day has its own {@link SpaceSaving} summary of the books checked out that day, so memory is bounded by
+ * {@code statistics.most-borrowed.capacity} counters per retained day. A window query merges the summaries of
+ * its days; days older than {@code statistics.most-borrowed.retention-days} are dropped, which is the decay.
+ * The checkouts since the last snapshot are merged into the summaries stored in {@code sketch_snapshot} every
+ * {@code statistics.most-borrowed.snapshot-interval}, as {@link DailySketches} describes, so each node's
+ * checkouts are counted once and every node sees the others'.
+ */
+@Slf4j
+@Component
+public class MostBorrowedTracker {
+
+    static final String KIND = "most-borrowed";
+
+    /**
+     * The top books of a window. A book is certainly among them when its lower bound is at least
+     * {@code threshold}, the most any book outside the list could have been borrowed.
+     */
+    public record Ranking(List<SpaceSaving.Estimate> top, long threshold, long total) {
+    }
+
+    private final int capacity;
+    private final int retentionDays;
+    private final DailySketches<SpaceSaving> days;
+
+    public MostBorrowedTracker(SketchSnapshotRepository snapshotRepository, TransactionTemplate transactionTemplate,
+                               @Value("${statistics.most-borrowed.capacity:1000}") int capacity,
+                               @Value("${statistics.most-borrowed.retention-days:31}") int retentionDays,
+                               MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.retentionDays = retentionDays;
+        this.days = new DailySketches<>(KIND, new DailySketches.Codec<>() {
+            @Override
+            public SpaceSaving create() {
+                return new SpaceSaving(capacity);
+            }
+
+            @Override
+            public void offer(SpaceSaving summary, long bookId) {
+                summary.offer(bookId);
+            }
+
+            @Override
+            public SpaceSaving merge(SpaceSaving first, SpaceSaving second) {
+                return SpaceSaving.merge(capacity, List.of(first, second));
+            }
+
+            @Override
+            public byte[] toBytes(SpaceSaving summary) {
+                return summary.toBytes();
+            }
+
+            @Override
+            public SpaceSaving fromBytes(byte[] bytes) {
+                return SpaceSaving.fromBytes(bytes);
+            }
+        }, snapshotRepository, transactionTemplate);
+        Gauge.builder("statistics.most-borrowed.days", days, DailySketches::size).register(meterRegistry);
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLoanActivity(LoanActivityEvent event) {
+        if (event.kind() != LoanActivityEvent.Kind.CHECKOUT) {
+            return;
+        }
+        days.offer(event.occurredAt().toLocalDate(), event.bookId());
+    }
+
+    /**
+     * @param windowDays the window ends today and includes it
+     */
+    public Ranking top(int windowDays, int n) {
+        LocalDate today = LocalDate.now();
+        List<SpaceSaving> window = new ArrayList<>();
+        for (int i = 0; i < windowDays; i++) {
+            SpaceSaving day = days.get(today.minusDays(i));
+            if (day != null) {
+                window.add(day);
+            }
+        }
+        SpaceSaving merged = SpaceSaving.merge(capacity, window);
+        List<SpaceSaving.Estimate> top = merged.top(n + 1);
+        long threshold = top.size() > n ? top.get(n).count() : merged.minCount();
+        return new Ranking(top.subList(0, Math.min(n, top.size())), threshold, merged.total());
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.most-borrowed.snapshot-interval:1m}")
+    public synchronized void snapshot() {
+        days.snapshot(LocalDate.now().minusDays(retentionDays - 1));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void recover() {
+        days.recover(LocalDate.now().minusDays(retentionDays - 1));
+        log.info("Recovered most borrowed summaries for {} days", days.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+}
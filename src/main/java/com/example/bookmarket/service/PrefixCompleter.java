@@ -0,0 +1,333 @@
+package com.example.bookmarket.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighted prefix completion over normalized strings.
+ * <p>
+ * Keys live in an immutable sorted snapshot: all characters packed into one {@code char[]} with an
+ * offsets array, plus an argmax segment tree over the weights. Every key that starts with a prefix
+ * sits in one contiguous range, and the best k of that range are pulled in O(k log k) by repeatedly
+ * splitting the range around its maximum. Changes go to a small sorted delta that is merged into a
+ * new snapshot once it grows past {@link #COMPACTION_THRESHOLD}.
+ */
+public class PrefixCompleter {
+
+    static final int COMPACTION_THRESHOLD = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Entry> delta = new TreeMap<>();
+    private Snapshot base = Snapshot.build(new String[0], new String[0], new int[0]);
+
+    private record Entry(String display, int weight) {
+    }
+
+    private record Candidate(String key, String display, int weight) {
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingInt(Candidate::weight).reversed()
+            .thenComparing(Candidate::key);
+
+    public static String toKey(String text) {
+        return String.join(" ", TextNormalizer.tokenize(text));
+    }
+
+    public void rebuild(Collection<String> displays) {
+        Map<String, Entry> entries = new HashMap<>();
+        for (String display : displays) {
+            String key = toKey(display);
+            if (!key.isEmpty()) {
+                entries.merge(key, new Entry(display, 1), (a, b) -> new Entry(a.display(), a.weight() + 1));
+            }
+        }
+        String[] keys = entries.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        String[] shown = new String[keys.length];
+        int[] weights = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Entry entry = entries.get(keys[i]);
+            shown[i] = entry.display();
+            weights[i] = entry.weight();
+        }
+
+        Snapshot snapshot = Snapshot.build(keys, shown, weights);
+        lock.writeLock().lock();
+        try {
+            base = snapshot;
+            delta.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(String display) {
+        adjust(display, 1);
+    }
+
+    public void remove(String display) {
+        adjust(display, -1);
+    }
+
+    private void adjust(String display, int change) {
+        String key = toKey(display);
+        if (key.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry current = delta.get(key);
+            if (current == null) {
+                int index = base.indexOf(key);
+                current = index >= 0
+                        ? new Entry(base.displays[index], base.weights[index])
+                        : new Entry(display, 0);
+            }
+            int weight = Math.max(0, current.weight() + change);
+            String shown = current.weight() == 0 ? display : current.display();
+            delta.put(key, new Entry(shown, weight));
+
+            if (delta.size() > COMPACTION_THRESHOLD) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        String key = toKey(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Candidate> candidates = new ArrayList<>(limit * 2);
+
+            int from = base.lowerBound(key);
+            int to = base.prefixEnd(key, from);
+            PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> base.better(a[2], b[2]) == a[2] ? -1 : 1);
+            if (from < to) {
+                ranges.add(new int[]{from, to, base.argMax(from, to)});
+            }
+            int taken = 0;
+            while (!ranges.isEmpty() && taken < limit) {
+                int[] range = ranges.poll();
+                int best = range[2];
+                if (range[0] < best) {
+                    ranges.add(new int[]{range[0], best, base.argMax(range[0], best)});
+                }
+                if (best + 1 < range[1]) {
+                    ranges.add(new int[]{best + 1, range[1], base.argMax(best + 1, range[1])});
+                }
+                String bestKey = base.key(best);
+                if (!delta.containsKey(bestKey)) {
+                    candidates.add(new Candidate(bestKey, base.displays[best], base.weights[best]));
+                    taken++;
+                }
+            }
+
+            delta.subMap(key, true, key + Character.MAX_VALUE, false).forEach((deltaKey, entry) -> {
+                if (entry.weight() > 0) {
+                    candidates.add(new Candidate(deltaKey, entry.display(), entry.weight()));
+                }
+            });
+
+            candidates.sort(BEST_FIRST);
+            List<String> completions = new ArrayList<>(Math.min(limit, candidates.size()));
+            for (int i = 0; i < candidates.size() && i < limit; i++) {
+                completions.add(candidates.get(i).display());
+            }
+            return completions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = base.memoryBytes();
+            for (Map.Entry<String, Entry> entry : delta.entrySet()) {
+                bytes += 64 + 2L * (entry.getKey().length() + entry.getValue().display().length());
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // باید با write lock صدا زده شود
+    private void compact() {
+        List<String> keys = new ArrayList<>(base.size + delta.size());
+        List<String> shown = new ArrayList<>(base.size + delta.size());
+        List<Integer> weights = new ArrayList<>(base.size + delta.size());
+
+        int i = 0;
+        var pending = delta.entrySet().iterator();
+        Map.Entry<String, Entry> next = pending.hasNext() ? pending.next() : null;
+        while (i < base.size || next != null) {
+            String baseKey = i < base.size ? base.key(i) : null;
+            int order = baseKey == null ? 1 : next == null ? -1 : baseKey.compareTo(next.getKey());
+            if (order < 0) {
+                keys.add(baseKey);
+                shown.add(base.displays[i]);
+                weights.add(base.weights[i]);
+                i++;
+            } else {
+                if (next.getValue().weight() > 0) {
+                    keys.add(next.getKey());
+                    shown.add(next.getValue().display());
+                    weights.add(next.getValue().weight());
+                }
+                if (order == 0) {
+                    i++;
+                }
+                next = pending.hasNext() ? pending.next() : null;
+            }
+        }
+
+        base = Snapshot.build(keys.toArray(new String[0]), shown.toArray(new String[0]),
+                weights.stream().mapToInt(Integer::intValue).toArray());
+        delta.clear();
+    }
+
+    private static final class Snapshot {
+        final int size;
+        final char[] chars;
+        final int[] offsets;
+        final String[] displays;
+        final int[] weights;
+        final int[] tree;
+
+        private Snapshot(char[] chars, int[] offsets, String[] displays, int[] weights) {
+            this.size = weights.length;
+            this.chars = chars;
+            this.offsets = offsets;
+            this.displays = displays;
+            this.weights = weights;
+            this.tree = new int[2 * size];
+            for (int i = 0; i < size; i++) {
+                tree[size + i] = i;
+            }
+            for (int node = size - 1; node > 0; node--) {
+                tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+            }
+        }
+
+        static Snapshot build(String[] sortedKeys, String[] displays, int[] weights) {
+            int[] offsets = new int[sortedKeys.length + 1];
+            for (int i = 0; i < sortedKeys.length; i++) {
+                offsets[i + 1] = offsets[i] + sortedKeys[i].length();
+            }
+            char[] chars = new char[offsets[sortedKeys.length]];
+            for (int i = 0; i < sortedKeys.length; i++) {
+                sortedKeys[i].getChars(0, sortedKeys[i].length(), chars, offsets[i]);
+            }
+            return new Snapshot(chars, offsets, displays, weights);
+        }
+
+        String key(int index) {
+            return new String(chars, offsets[index], offsets[index + 1] - offsets[index]);
+        }
+
+        // وزن بیشتر بهتر است، در تساوی کلید کوچکتر (اندیس کمتر)
+        int better(int a, int b) {
+            if (weights[a] != weights[b]) {
+                return weights[a] > weights[b] ? a : b;
+            }
+            return Math.min(a, b);
+        }
+
+        int argMax(int from, int to) {
+            int best = from;
+            for (int l = from + size, r = to + size; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = better(best, tree[l++]);
+                }
+                if ((r & 1) == 1) {
+                    best = better(best, tree[--r]);
+                }
+            }
+            return best;
+        }
+
+        int compare(int index, String other) {
+            int start = offsets[index];
+            int length = offsets[index + 1] - start;
+            int common = Math.min(length, other.length());
+            for (int i = 0; i < common; i++) {
+                char c = chars[start + i];
+                char o = other.charAt(i);
+                if (c != o) {
+                    return c - o;
+                }
+            }
+            return length - other.length();
+        }
+
+        boolean startsWith(int index, String prefix) {
+            int start = offsets[index];
+            if (offsets[index + 1] - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (chars[start + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int lowerBound(String key) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int prefixEnd(String prefix, int from) {
+            int lo = from;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (startsWith(mid, prefix)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int indexOf(String key) {
+            int index = lowerBound(key);
+            return index < size && compare(index, key) == 0 ? index : -1;
+        }
+
+        long memoryBytes() {
+            long bytes = 16 + 2L * chars.length + 16 + 4L * offsets.length + 16 + 4L * weights.length
+                    + 16 + 4L * tree.length + 16 + 4L * displays.length;
+            for (String display : displays) {
+                bytes += 40 + 2L * display.length();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.PrincipalChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Authenticated principals by username, so JwtRequestFilter does not hit the database on every request.
+ * <p>
+ * Entries live for a short TTL and are dropped after the transaction that updates, deletes or logs out
+ * the account commits. Cached principals carry no password hash.
+ */
+@Component
+public class PrincipalCache {
+
+    public static final String NAME = "principals";
+
+    private final Cache<String, UserDetails> cache;
+
+    public PrincipalCache(@Value("${cache.principals.maximum-size:10000}") long maximumSize,
+                          @Value("${cache.principals.expire-after-write:60s}") Duration expireAfterWrite,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * @throws org.springframework.security.core.userdetails.UsernameNotFoundException from the loader; misses are not cached
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return cache.get(username, name -> withoutPassword(loader.apply(name)));
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        invalidate(event.username());
+    }
+
+    private static UserDetails withoutPassword(UserDetails userDetails) {
+        return User.withUsername(userDetails.getUsername())
+                .password("")
+                .authorities(userDetails.getAuthorities())
+                .accountExpired(!userDetails.isAccountNonExpired())
+                .accountLocked(!userDetails.isAccountNonLocked())
+                .credentialsExpired(!userDetails.isCredentialsNonExpired())
+                .disabled(!userDetails.isEnabled())
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.LoanRevenueRow;
+import com.example.bookmarket.dto.RevenueDto;
+import com.example.bookmarket.enums.RevenuePeriod;
+import com.example.bookmarket.repository.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Revenue, discount and average price per genre and period, computed by scanning a {@link RevenueColumns}
+ * copy of the loan prices instead of the loan table.
+ * <p>
+ * The copy is refreshed every {@code statistics.revenue.refresh-interval} by appending new loans only. Ids are
+ * taken at insert but become visible at commit, so a loan can show up below the highest id already loaded: each
+ * refresh re-reads the last {@code statistics.revenue.refresh-overlap} ids and skips the ones it has.
+ * <p>
+ * Loans already loaded are not re-read. A loan edited after it was loaded ({@link LoanService#updateLoan} can
+ * change its book, and so its genre, its prices and its due date) is counted with its old genre and prices, and a
+ * deleted loan is still counted, until the copy is rebuilt at startup and every
+ * {@code statistics.revenue.rebuild-interval}. The same holds for a loan committed later than the overlap.
+ * <p>
+ * The rebuild loads a new copy next to the one being served and swaps them, so for its duration the heap holds
+ * both: budget twice the size of {@link RevenueColumns} for the loan count, plus the spare capacity of its arrays.
+ */
+@Slf4j
+@Component
+public class RevenueAnalytics {
+
+    private static final int PAGE_SIZE = 10_000;
+    private static final int MINOR_UNITS = 2;
+
+    private final LoanRepository loanRepository;
+    private final int refreshOverlap;
+    private volatile RevenueColumns columns = new RevenueColumns(0, ForkJoinPool.commonPool());
+    private long lastLoanId;
+    // شناسه های بارشده در پنجره همپوشانی، تا امانتی که دوباره خوانده می شود دو بار اضافه نشود
+    private NavigableSet<Long> recentIds = new TreeSet<>();
+
+    public RevenueAnalytics(LoanRepository loanRepository,
+                            @Value("${statistics.revenue.refresh-overlap:1000}") int refreshOverlap,
+                            MeterRegistry meterRegistry) {
+        this.loanRepository = loanRepository;
+        this.refreshOverlap = refreshOverlap;
+        Gauge.builder("statistics.revenue.loans", this, analytics -> analytics.columns.size()).register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${statistics.revenue.refresh-interval:30s}")
+    public synchronized void refresh() {
+        long afterId = Math.max(0, lastLoanId - refreshOverlap);
+        List<LoanRevenueRow> page;
+        do {
+            page = loanRepository.findRevenueRowsAfter(afterId, Limit.of(PAGE_SIZE));
+            // هر صفحه جداگانه ثبت می شود تا خطا در صفحه بعدی پنجره را با شناسه های هرس شده دوباره نخواند
+            lastLoanId = append(columns, recentIds, page, lastLoanId);
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${statistics.revenue.rebuild-interval:1h}",
+            fixedDelayString = "${statistics.revenue.rebuild-interval:1h}")
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        RevenueColumns rebuilt = new RevenueColumns(columns.size(), ForkJoinPool.commonPool());
+        NavigableSet<Long> loaded = new TreeSet<>();
+        long afterId = 0;
+        List<LoanRevenueRow> page;
+        do {
+            page = loanRepository.findRevenueRowsAfter(afterId, Limit.of(PAGE_SIZE));
+            afterId = append(rebuilt, loaded, page, afterId);
+        } while (page.size() == PAGE_SIZE);
+        columns = rebuilt;
+        recentIds = loaded;
+        lastLoanId = afterId;
+        log.info("Loaded {} loans into the revenue columns in {} ms", rebuilt.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * @param to inclusive
+     */
+    public List<RevenueDto> revenue(RevenuePeriod period, LocalDate from, LocalDate to, String genre) {
+        int fromDay = (int) from.toEpochDay();
+        int[] bucketOfDay = new int[(int) (to.toEpochDay() - fromDay + 1)];
+        List<LocalDate> bucketStarts = new ArrayList<>();
+        for (int i = 0; i < bucketOfDay.length; i++) {
+            LocalDate start = period.startOf(from.plusDays(i));
+            if (bucketStarts.isEmpty() || !bucketStarts.get(bucketStarts.size() - 1).equals(start)) {
+                bucketStarts.add(start);
+            }
+            bucketOfDay[i] = bucketStarts.size() - 1;
+        }
+
+        RevenueColumns.Totals totals = columns.aggregate(fromDay, bucketOfDay, bucketStarts.size(), genre);
+        List<RevenueDto> revenue = new ArrayList<>();
+        for (int bucket = 0; bucket < bucketStarts.size(); bucket++) {
+            for (int code = 0; code < totals.genres().size(); code++) {
+                long loans = totals.get(code, bucket, RevenueColumns.Totals.LOANS);
+                if (loans == 0) {
+                    continue;
+                }
+                BigDecimal income = toMajor(totals.get(code, bucket, RevenueColumns.Totals.REVENUE));
+                revenue.add(new RevenueDto(bucketStarts.get(bucket), totals.genres().get(code), loans, income,
+                        toMajor(totals.get(code, bucket, RevenueColumns.Totals.DISCOUNT)),
+                        income.divide(BigDecimal.valueOf(loans), MINOR_UNITS, RoundingMode.HALF_UP)));
+            }
+        }
+        revenue.sort(Comparator.comparing(RevenueDto::period).thenComparing(RevenueDto::genre));
+        return revenue;
+    }
+
+    /**
+     * @return the highest id loaded so far
+     */
+    private long append(RevenueColumns target, NavigableSet<Long> loaded, List<LoanRevenueRow> page, long lastId) {
+        for (LoanRevenueRow row : page) {
+            if (!loaded.add(row.getId())) {
+                continue;
+            }
+            String genre = row.getGenre() == null || row.getGenre().isBlank()
+                    ? LoanActivityRollup.UNKNOWN_GENRE : row.getGenre();
+            target.append(genre, (int) row.getLoanDate().toLocalDate().toEpochDay(),
+                    toMinor(row.getPrice()), toMinor(row.getFinalPrice()));
+            lastId = Math.max(lastId, row.getId());
+        }
+        loaded.headSet(lastId - refreshOverlap, true).clear();
+        return lastId;
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        return amount.setScale(MINOR_UNITS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal toMajor(long minor) {
+        return BigDecimal.valueOf(minor, MINOR_UNITS);
+    }
+}
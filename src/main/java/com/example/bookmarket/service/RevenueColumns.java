@@ -0,0 +1,171 @@
+package com.example.bookmarket.service;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Append-only columnar copy of the loan prices: one primitive array per column, prices in minor units and genres
+ * dictionary-encoded, so a scan touches a few hundred megabytes of arrays for ten million loans instead of that
+ * many entities and {@code BigDecimal}s.
+ * <p>
+ * One writer appends; each append publishes an immutable {@link Columns} view through a volatile field, so
+ * readers always scan a consistent prefix without locking. {@link #aggregate} splits the scan across the
+ * fork/join pool and adds the partial totals. Each leaf of the split holds a genres × buckets array of its own,
+ * so many genres or buckets mean fewer leaves: the partial arrays together stay within a fixed budget.
+ */
+public class RevenueColumns {
+
+    /**
+     * Totals of one aggregation, {@code LOANS}, {@code REVENUE} and {@code DISCOUNT} per genre and bucket.
+     */
+    public record Totals(List<String> genres, int buckets, long[] values) {
+        public static final int LOANS = 0;
+        public static final int REVENUE = 1;
+        public static final int DISCOUNT = 2;
+        static final int FIELDS = 3;
+
+        public long get(int genre, int bucket, int field) {
+            return values[(genre * buckets + bucket) * FIELDS + field];
+        }
+    }
+
+    private record Columns(int size, int[] genres, int[] days, long[] prices, long[] finalPrices,
+                           List<String> genreNames) {
+    }
+
+    // زیر این تعداد ردیف تقسیم بیشتر از هزینه ادغام آرایه های جزئی گران تر است
+    private static final int MIN_SPLIT = 1 << 16;
+    // سقف مجموع خانه های آرایه های جزئی همه برگ ها (16 مگابایت)؛ با سطل های زیاد برگ ها کمتر می شوند
+    private static final int MAX_PARTIAL_VALUES = 1 << 21;
+
+    private final ForkJoinPool pool;
+    private final Map<String, Integer> genreCodes = new HashMap<>();
+    private volatile Columns columns;
+
+    public RevenueColumns(int initialCapacity, ForkJoinPool pool) {
+        int capacity = Math.max(16, initialCapacity);
+        this.pool = pool;
+        this.columns = new Columns(0, new int[capacity], new int[capacity], new long[capacity], new long[capacity],
+                List.of());
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * @param epochDay the checkout day as {@link java.time.LocalDate#toEpochDay()}
+     */
+    public synchronized void append(String genre, int epochDay, long price, long finalPrice) {
+        Columns current = columns;
+        List<String> genreNames = current.genreNames();
+        Integer code = genreCodes.get(genre);
+        if (code == null) {
+            code = genreNames.size();
+            genreCodes.put(genre, code);
+            List<String> names = new ArrayList<>(genreNames);
+            names.add(genre);
+            genreNames = List.copyOf(names);
+        }
+
+        int size = current.size();
+        int[] genres = current.genres();
+        int[] days = current.days();
+        long[] prices = current.prices();
+        long[] finalPrices = current.finalPrices();
+        if (size == genres.length) {
+            int capacity = size + (size >> 1);
+            genres = Arrays.copyOf(genres, capacity);
+            days = Arrays.copyOf(days, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            finalPrices = Arrays.copyOf(finalPrices, capacity);
+        }
+        // خواننده ها فقط تا size نسخه خودشان را می خوانند، پس نوشتن بعد از آن امن است
+        genres[size] = code;
+        days[size] = epochDay;
+        prices[size] = price;
+        finalPrices[size] = finalPrice;
+        columns = new Columns(size + 1, genres, days, prices, finalPrices, genreNames);
+    }
+
+    /**
+     * Sums the loans whose day falls in {@code [fromDay, fromDay + bucketOfDay.length)} into
+     * {@code bucketOfDay[day - fromDay]}.
+     *
+     * @param genre only this genre, or all genres when null
+     */
+    public Totals aggregate(int fromDay, int[] bucketOfDay, int buckets, String genre) {
+        Columns snapshot = columns;
+        int genreCode = genre == null ? -1 : snapshot.genreNames().indexOf(genre);
+        if (genre != null && genreCode < 0) {
+            return new Totals(snapshot.genreNames(), buckets, new long[snapshot.genreNames().size() * buckets * Totals.FIELDS]);
+        }
+        // چند برگ برای هر هسته تا کار بین هسته ها متوازن شود، نه بیشتر، چون هر برگ آرایه جمع خودش را دارد
+        int partialLength = snapshot.genreNames().size() * buckets * Totals.FIELDS;
+        int leaves = Math.max(1, Math.min(pool.getParallelism() * 4, MAX_PARTIAL_VALUES / Math.max(1, partialLength)));
+        int split = Math.max(MIN_SPLIT, snapshot.size() / leaves + 1);
+        long[] values = pool.invoke(new Scan(snapshot, 0, snapshot.size(), split, fromDay, bucketOfDay, buckets, genreCode));
+        return new Totals(snapshot.genreNames(), buckets, values);
+    }
+
+    private static final class Scan extends RecursiveTask<long[]> {
+        private final Columns columns;
+        private final int from;
+        private final int to;
+        private final int split;
+        private final int fromDay;
+        private final int[] bucketOfDay;
+        private final int buckets;
+        private final int genreCode;
+
+        private Scan(Columns columns, int from, int to, int split, int fromDay, int[] bucketOfDay, int buckets,
+                     int genreCode) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+            this.fromDay = fromDay;
+            this.bucketOfDay = bucketOfDay;
+            this.buckets = buckets;
+            this.genreCode = genreCode;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= split) {
+                return scan();
+            }
+            int middle = (from + to) >>> 1;
+            Scan left = new Scan(columns, from, middle, split, fromDay, bucketOfDay, buckets, genreCode);
+            Scan right = new Scan(columns, middle, to, split, fromDay, bucketOfDay, buckets, genreCode);
+            left.fork();
+            long[] sum = right.compute();
+            long[] other = left.join();
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += other[i];
+            }
+            return sum;
+        }
+
+        private long[] scan() {
+            long[] sum = new long[columns.genreNames().size() * buckets * Totals.FIELDS];
+            int[] genres = columns.genres();
+            int[] days = columns.days();
+            long[] prices = columns.prices();
+            long[] finalPrices = columns.finalPrices();
+            int dayCount = bucketOfDay.length;
+            for (int i = from; i < to; i++) {
+                int offset = days[i] - fromDay;
+                if (offset < 0 || offset >= dayCount || (genreCode >= 0 && genres[i] != genreCode)) {
+                    continue;
+                }
+                int slot = (genres[i] * buckets + bucketOfDay[offset]) * Totals.FIELDS;
+                sum[slot + Totals.LOANS]++;
+                sum[slot + Totals.REVENUE] += finalPrices[i];
+                sum[slot + Totals.DISCOUNT] += prices[i] - finalPrices[i];
+            }
+            return sum;
+        }
+    }
+}
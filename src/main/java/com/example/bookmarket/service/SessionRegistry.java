@@ -0,0 +1,234 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.ActiveSession;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.LibrarianStatus;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.LibrarianRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which users and librarians are logged in, held in memory and written to the status columns behind the scenes.
+ * <p>
+ * Login and logout only touch the in-memory map and queue a status write. {@link #flush()} collapses all writes
+ * queued since the previous flush into a few set-based UPDATEs: one per account type for logouts and one per
+ * distinct session expiry for logins (refresh tokens expire on whole seconds, so logins in the same second share
+ * one statement). {@link #sweep()} ends sessions whose refresh token has lapsed with a single UPDATE per table,
+ * and {@link #recover()} reloads live sessions from the status columns after a restart.
+ * <p>
+ * A crash can lose up to one flush interval of transitions. Lost logins mean the user logs in again. Lost
+ * logouts stay active in the database until the sweeper sees the refresh token expire.
+ * <p>
+ * Each node has its own map, so sessions need not be sticky: a miss falls back to the status columns and caches
+ * what it finds, and a cached session is checked against them again after {@code sessions.revalidate-after}.
+ * A session opened on another node is therefore visible here once its login is flushed, and a logout on
+ * another node once it is flushed and this node's copy is revalidated.
+ */
+@Slf4j
+@Component
+public class SessionRegistry {
+
+    private static final int BATCH_SIZE = 1000;
+
+    public record SessionKey(AccountType type, Long accountId) {
+    }
+
+    private record Session(String username, Instant expiresAt, Instant revalidateAt) {
+        boolean isLive(Instant now) {
+            return expiresAt.isAfter(now);
+        }
+    }
+
+    private record StatusWrite(boolean active, Instant expiresAt) {
+    }
+
+    private final UserRepository userRepository;
+    private final LibrarianRepository librarianRepository;
+    private final Map<SessionKey, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<SessionKey, StatusWrite> pending = new ConcurrentHashMap<>();
+    private final Counter statements;
+    private final Duration revalidateAfter;
+
+    public SessionRegistry(UserRepository userRepository, LibrarianRepository librarianRepository,
+                           @Value("${sessions.revalidate-after:30s}") Duration revalidateAfter,
+                           MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.librarianRepository = librarianRepository;
+        this.revalidateAfter = revalidateAfter;
+        Gauge.builder("sessions.active", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("sessions.pending.writes", pending, Map::size).register(meterRegistry);
+        this.statements = Counter.builder("sessions.flush.statements")
+                .description("UPDATE statements issued by session write-behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false when the account already has a live session
+     */
+    public boolean open(AccountType type, Long accountId, String username, Instant expiresAt) {
+        Instant now = Instant.now();
+        boolean[] opened = {false};
+        sessions.compute(new SessionKey(type, accountId), (key, current) -> {
+            if (current != null && current.isLive(now)) {
+                return current;
+            }
+            opened[0] = true;
+            pending.put(key, new StatusWrite(true, expiresAt));
+            return new Session(username, expiresAt, now.plus(revalidateAfter));
+        });
+        return opened[0];
+    }
+
+    /**
+     * @return false when the account had no live session, here or in the database
+     */
+    public boolean close(AccountType type, Long accountId) {
+        Instant now = Instant.now();
+        SessionKey sessionKey = new SessionKey(type, accountId);
+        // نشستی که گره دیگری باز کرده اول از پایگاه داده خوانده می شود
+        lookup(sessionKey, now);
+        boolean[] closed = {false};
+        sessions.compute(sessionKey, (key, current) -> {
+            closed[0] = current != null && current.isLive(now);
+            if (current != null) {
+                pending.put(key, new StatusWrite(false, null));
+            }
+            return null;
+        });
+        return closed[0];
+    }
+
+    public boolean isActive(AccountType type, Long accountId) {
+        return lookup(new SessionKey(type, accountId), Instant.now()) != null;
+    }
+
+    @Scheduled(fixedDelayString = "${sessions.flush-interval:2s}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // تا نوشتن تمام نشده در pending می مانند تا lookup به جای آن ها وضعیت قدیمی پایگاه داده را نخواند
+        Map<SessionKey, StatusWrite> batch = new HashMap<>(pending);
+        try {
+            write(batch);
+        } catch (RuntimeException e) {
+            log.warn("Session status flush failed, {} writes will be retried: {}", batch.size(), e.getMessage());
+            return;
+        }
+        // نوشتن های جدیدتر برای همان حساب می مانند
+        batch.forEach(pending::remove);
+    }
+
+    @Scheduled(fixedDelayString = "${sessions.sweep-interval:1m}")
+    public synchronized void sweep() {
+        Instant now = Instant.now();
+        sessions.entrySet().removeIf(entry -> !entry.getValue().isLive(now));
+        flush();
+
+        int users = userRepository.expireSessions(UserStatus.INACTIVE, now);
+        int librarians = librarianRepository.expireSessions(LibrarianStatus.INACTIVE, now);
+        statements.increment(2);
+        if (users + librarians > 0) {
+            log.info("Expired {} user and {} librarian sessions", users, librarians);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        long started = System.nanoTime();
+        Instant now = Instant.now();
+        List<ActiveSession> users = userRepository.findActiveSessions(UserStatus.ACTIVE, now);
+        List<ActiveSession> librarians = librarianRepository.findActiveSessions(LibrarianStatus.ACTIVE, now);
+
+        users.forEach(session -> restore(AccountType.USER, session));
+        librarians.forEach(session -> restore(AccountType.LIBRARIAN, session));
+        log.info("Recovered {} sessions in {} ms", users.size() + librarians.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void restore(AccountType type, ActiveSession session) {
+        sessions.putIfAbsent(new SessionKey(type, session.getId()),
+                new Session(session.getUsername(), session.getExpiresAt(), Instant.now().plus(revalidateAfter)));
+    }
+
+    /**
+     * The live session of {@code key}, from memory while it is fresh and from the status columns otherwise.
+     */
+    private Session lookup(SessionKey key, Instant now) {
+        Session session = sessions.get(key);
+        // نوشتن هنوز ثبت نشده این گره از پایگاه داده تازه تر است
+        if (pending.containsKey(key) || (session != null && now.isBefore(session.revalidateAt()))) {
+            return session != null && session.isLive(now) ? session : null;
+        }
+
+        Optional<ActiveSession> stored = key.type() == AccountType.USER
+                ? userRepository.findActiveSession(key.accountId(), UserStatus.ACTIVE, now)
+                : librarianRepository.findActiveSession(key.accountId(), LibrarianStatus.ACTIVE, now);
+        if (stored.isEmpty()) {
+            if (session != null) {
+                sessions.remove(key, session);
+            }
+            return null;
+        }
+        Session loaded = new Session(stored.get().getUsername(), stored.get().getExpiresAt(), now.plus(revalidateAfter));
+        Session current = sessions.compute(key, (k, existing) -> existing == null || existing == session ? loaded : existing);
+        return current.isLive(now) ? current : null;
+    }
+
+    private void write(Map<SessionKey, StatusWrite> batch) {
+        for (AccountType type : AccountType.values()) {
+            List<Long> loggedOut = new ArrayList<>();
+            Map<Instant, List<Long>> loggedInByExpiry = new HashMap<>();
+            batch.forEach((key, write) -> {
+                if (key.type() != type) {
+                    return;
+                }
+                if (write.active()) {
+                    loggedInByExpiry.computeIfAbsent(write.expiresAt(), expiry -> new ArrayList<>()).add(key.accountId());
+                } else {
+                    loggedOut.add(key.accountId());
+                }
+            });
+
+            update(type, loggedOut, false, null);
+            loggedInByExpiry.forEach((expiresAt, ids) -> update(type, ids, true, expiresAt));
+        }
+    }
+
+    private void update(AccountType type, List<Long> ids, boolean active, Instant expiresAt) {
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+            if (type == AccountType.USER) {
+                userRepository.updateSessionState(chunk, active ? UserStatus.ACTIVE : UserStatus.INACTIVE, expiresAt);
+            } else {
+                librarianRepository.updateSessionState(chunk, active ? LibrarianStatus.ACTIVE : LibrarianStatus.INACTIVE, expiresAt);
+            }
+            statements.increment();
+        }
+    }
+}
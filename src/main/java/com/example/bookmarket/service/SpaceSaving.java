@@ -0,0 +1,158 @@
+package com.example.bookmarket.service;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitters summary (Metwally et al.) over {@code long} items with at most {@code capacity}
+ * counters. When a new item arrives and every counter is taken, it replaces the item with the smallest count and
+ * inherits that count as its error. Every item whose true count exceeds {@code total / capacity} is kept. For a
+ * kept item {@code count - error <= true count <= count}.
+ * <p>
+ * Summaries are mergeable: an item missing from one of the inputs is charged that input's minimum count, which
+ * bounds how often it could have been seen there. Thread-safe; updates take the summary's lock.
+ */
+public class SpaceSaving {
+
+    public record Estimate(long item, long count, long error) {
+        public long lowerBound() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter {
+        private final long item;
+        private long count;
+        private long error;
+
+        private Counter(long item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.<Counter>comparingLong(counter -> counter.count).thenComparingLong(counter -> counter.item);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    // کمترین شمارنده اول است؛ جایگزینی در O(log k)
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+    // بیشترین شمارش ممکن برای اقلامی که شمارنده ندارند؛ فقط بعد از ادغام صفر نیست
+    private long floor;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public synchronized void offer(long item) {
+        total++;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count++;
+            byCount.add(counter);
+        } else if (counters.size() < capacity) {
+            put(new Counter(item, floor + 1, floor));
+        } else {
+            Counter evicted = byCount.pollFirst();
+            counters.remove(evicted.item);
+            put(new Counter(item, evicted.count + 1, evicted.count));
+        }
+    }
+
+    /**
+     * @return the n items with the highest counts, highest first
+     */
+    public synchronized List<Estimate> top(int n) {
+        List<Estimate> top = new ArrayList<>(Math.min(n, counters.size()));
+        for (Iterator<Counter> it = byCount.descendingIterator(); it.hasNext() && top.size() < n; ) {
+            Counter counter = it.next();
+            top.add(new Estimate(counter.item, counter.count, counter.error));
+        }
+        return top;
+    }
+
+    /**
+     * The largest count an item that is not kept could have.
+     */
+    public synchronized long minCount() {
+        return counters.size() < capacity ? floor : byCount.first().count;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public static SpaceSaving merge(int capacity, Collection<SpaceSaving> summaries) {
+        List<Map<Long, Counter>> inputs = new ArrayList<>();
+        List<Long> minimums = new ArrayList<>();
+        Set<Long> items = new HashSet<>();
+        long total = 0;
+        for (SpaceSaving summary : summaries) {
+            synchronized (summary) {
+                Map<Long, Counter> copy = new HashMap<>();
+                summary.counters.forEach((item, counter) ->
+                        copy.put(item, new Counter(item, counter.count, counter.error)));
+                inputs.add(copy);
+                minimums.add(summary.minCount());
+                items.addAll(copy.keySet());
+                total += summary.total;
+            }
+        }
+
+        List<Counter> merged = new ArrayList<>(items.size());
+        for (long item : items) {
+            Counter sum = new Counter(item, 0, 0);
+            for (int i = 0; i < inputs.size(); i++) {
+                Counter counter = inputs.get(i).get(item);
+                sum.count += counter == null ? minimums.get(i) : counter.count;
+                sum.error += counter == null ? minimums.get(i) : counter.error;
+            }
+            merged.add(sum);
+        }
+        merged.sort(BY_COUNT.reversed());
+
+        SpaceSaving result = new SpaceSaving(capacity);
+        merged.stream().limit(capacity).forEach(result::put);
+        result.total = total;
+        // قلمی که در هیچ ورودی نبوده، در هر ورودی حداکثر به اندازه کمترین شمارنده آن دیده شده است
+        long unseen = minimums.stream().mapToLong(Long::longValue).sum();
+        result.floor = merged.size() > capacity ? Math.max(unseen, merged.get(capacity).count) : unseen;
+        return result;
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 2 * Long.BYTES + counters.size() * 3 * Long.BYTES);
+        buffer.putInt(capacity).putLong(total).putLong(floor);
+        for (Counter counter : byCount) {
+            buffer.putLong(counter.item).putLong(counter.count).putLong(counter.error);
+        }
+        return buffer.array();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        SpaceSaving summary = new SpaceSaving(buffer.getInt());
+        summary.total = buffer.getLong();
+        summary.floor = buffer.getLong();
+        while (buffer.hasRemaining()) {
+            summary.put(new Counter(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+        }
+        return summary;
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.item, counter);
+        byCount.add(counter);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.StatisticsDto;
+import com.example.bookmarket.dto.StatisticsRow;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.event.StatisticsChangedEvent;
+import com.example.bookmarket.repository.LoanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Book, user and loan counts kept in memory so that the statistics endpoints never query.
+ * <p>
+ * Each write path publishes a {@link StatisticsChangedEvent} that is added to the counters after its transaction
+ * commits, so rolled back writes are never counted. Writes that bypass the services, and events lost to a
+ * crash between commit and listener, are corrected every {@code statistics.reconcile-interval} by one grouped
+ * count.
+ * <p>
+ * A transaction holds the read side of {@code commitBarrier} from just before its commit until its delta has
+ * been added, and reconciliation runs its query under the write side. So when the query starts no commit is
+ * half applied: every committed write is already in the counters and in the query's result, and every later
+ * one is in neither, and the result can replace the counters outright.
+ * <p>
+ * A committing transaction waits at the barrier while holding its connection. Reconciliation therefore takes its
+ * own connection, by opening a transaction, before it takes the write side. Otherwise, with the pool exhausted by
+ * such transactions, it would wait for a connection that is only released after it unlocks.
+ */
+@Slf4j
+@Component
+public class StatisticsRegistry {
+
+    private final LoanRepository loanRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder books = new LongAdder();
+    private final LongAdder users = new LongAdder();
+    private final LongAdder activeLoans = new LongAdder();
+    private final LongAdder returnedLoans = new LongAdder();
+    private final AtomicLong lastDrift = new AtomicLong();
+    private final ReadWriteLock commitBarrier = new ReentrantReadWriteLock();
+
+    public StatisticsRegistry(LoanRepository loanRepository, TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry) {
+        this.loanRepository = loanRepository;
+        this.transactionTemplate = transactionTemplate;
+        Gauge.builder("statistics.reconcile.drift", lastDrift, AtomicLong::get)
+                .description("Total correction applied by the last reconciliation")
+                .register(meterRegistry);
+    }
+
+    public StatisticsDto snapshot() {
+        long active = activeLoans.sum();
+        long returned = returnedLoans.sum();
+        return new StatisticsDto(books.sum(), users.sum(), active + returned, active, returned);
+    }
+
+    @EventListener
+    public void onStatisticsChanged(StatisticsChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commitBarrier.readLock().lock();
+            try {
+                apply(event);
+            } finally {
+                commitBarrier.readLock().unlock();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitBarrier.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        apply(event);
+                    }
+                } finally {
+                    if (locked) {
+                        commitBarrier.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${statistics.reconcile-interval:5m}",
+            fixedDelayString = "${statistics.reconcile-interval:5m}")
+    public synchronized void reconcile() {
+        Map<String, Long> totals = new HashMap<>();
+        long[] before = new long[4];
+        // تراکنش اتصال را هنگام شروع می گیرد؛ کامیت ها فقط در مدت همین یک کوئری منتظر می مانند
+        transactionTemplate.executeWithoutResult(status -> {
+            commitBarrier.writeLock().lock();
+            try {
+                before[0] = books.sum();
+                before[1] = users.sum();
+                before[2] = activeLoans.sum();
+                before[3] = returnedLoans.sum();
+                for (StatisticsRow row : loanRepository.countAllByKind()) {
+                    totals.put(row.getKind(), row.getTotal());
+                }
+            } finally {
+                commitBarrier.writeLock().unlock();
+            }
+        });
+
+        // دلتاهای بعد از کوئری مال کامیت هایی هستند که در نتیجه آن نیامده اند
+        long drift = correct(books, totals.getOrDefault("BOOK", 0L) - before[0])
+                + correct(users, totals.getOrDefault("USER", 0L) - before[1])
+                + correct(activeLoans, totals.getOrDefault(LoanStatus.ACTIVE.name(), 0L) - before[2])
+                + correct(returnedLoans, totals.getOrDefault(LoanStatus.RETURNED.name(), 0L) - before[3]);
+        lastDrift.set(drift);
+        if (drift != 0) {
+            log.debug("Statistics reconciled, corrected by {}", drift);
+        }
+    }
+
+    private void apply(StatisticsChangedEvent event) {
+        books.add(event.books());
+        users.add(event.users());
+        activeLoans.add(event.activeLoans());
+        returnedLoans.add(event.returnedLoans());
+    }
+
+    private static long correct(LongAdder counter, long delta) {
+        counter.add(delta);
+        return Math.abs(delta);
+    }
+}
@@ -1,31 +1,105 @@
 package com.example.bookmarket.service;
 
-import com.example.bookmarket.enums.LoanStatus;
-import com.example.bookmarket.repository.BookRepository;
-import com.example.bookmarket.repository.UserRepository;
-import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.dto.DistinctUsersDto;
+import com.example.bookmarket.dto.LoanActivityDto;
+import com.example.bookmarket.dto.MostBorrowedDto;
+import com.example.bookmarket.dto.RevenueDto;
 import com.example.bookmarket.dto.StatisticsDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.enums.RevenuePeriod;
+import com.example.bookmarket.enums.RollupGranularity;
+import com.example.bookmarket.exception.InvalidDateRangeException;
+import com.example.bookmarket.repository.BookRepository;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Service
 public class StatisticsService {
+    private static final int MAX_MOST_BORROWED = 100;
+    private static final int MAX_REVENUE_DAYS = 3_660;
+    // هر روز یک سطل برای هر ژانر
+    private static final int MAX_DAILY_REVENUE_DAYS = 366;
+    private static final int MAX_DAILY_ACTIVITY_DAYS = 3_660;
+    // 24 ردیف برای هر ژانر در هر روز
+    private static final int MAX_HOURLY_ACTIVITY_DAYS = 31;
+
+    private final StatisticsRegistry statisticsRegistry;
+    private final LoanActivityRollup loanActivityRollup;
+    private final MostBorrowedTracker mostBorrowedTracker;
+    private final DistinctUserTracker distinctUserTracker;
+    private final RevenueAnalytics revenueAnalytics;
     private final BookRepository bookRepository;
-    private final UserRepository userRepository;
-    private final LoanRepository loanRepository;
 
-    public StatisticsService(BookRepository bookRepository, UserRepository userRepository, LoanRepository loanRepository) {
+    public StatisticsService(StatisticsRegistry statisticsRegistry, LoanActivityRollup loanActivityRollup,
+                             MostBorrowedTracker mostBorrowedTracker, DistinctUserTracker distinctUserTracker,
+                             RevenueAnalytics revenueAnalytics, BookRepository bookRepository) {
+        this.statisticsRegistry = statisticsRegistry;
+        this.loanActivityRollup = loanActivityRollup;
+        this.mostBorrowedTracker = mostBorrowedTracker;
+        this.distinctUserTracker = distinctUserTracker;
+        this.revenueAnalytics = revenueAnalytics;
         this.bookRepository = bookRepository;
-        this.userRepository = userRepository;
-        this.loanRepository = loanRepository;
     }
 
+    // از شمارنده های حافظه خوانده می شود، بدون کوئری
     public StatisticsDto getStatistics() {
-        long totalBooks = bookRepository.count();
-        long totalUsers = userRepository.count();
-        long totalLoans = loanRepository.count();
-        long activeLoans = loanRepository.countByStatus(LoanStatus.ACTIVE);
-        long returnedLoans = loanRepository.countByStatus(LoanStatus.RETURNED);
+        return statisticsRegistry.snapshot();
+    }
+
+    // از جدول rollup خوانده می شود، نه از جدول امانت ها؛ to هم شامل می شود
+    public List<LoanActivityDto> getLoanActivity(RollupGranularity granularity, LocalDate from, LocalDate to, String genre) {
+        if (to.isBefore(from)) {
+            throw new InvalidDateRangeException(from, to);
+        }
+        int maxDays = granularity == RollupGranularity.HOUR ? MAX_HOURLY_ACTIVITY_DAYS : MAX_DAILY_ACTIVITY_DAYS;
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new InvalidDateRangeException(from, to, maxDays);
+        }
+        return loanActivityRollup.series(granularity, from.atStartOfDay(), to.plusDays(1).atStartOfDay(), genre);
+    }
+
+    // رتبه بندی از خلاصه های حافظه است؛ فقط عنوان ها با یک کوئری روی کلید خوانده می شوند
+    public List<MostBorrowedDto> getMostBorrowed(int days, int limit) {
+        int windowDays = Math.max(1, Math.min(days, mostBorrowedTracker.getRetentionDays()));
+        MostBorrowedTracker.Ranking ranking = mostBorrowedTracker.top(windowDays,
+                Math.max(1, Math.min(limit, MAX_MOST_BORROWED)));
+
+        List<Long> bookIds = ranking.top().stream().map(SpaceSaving.Estimate::item).toList();
+        Map<Long, String> titles = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(BookEntity::getId, BookEntity::getTitle));
+        return ranking.top().stream()
+                .filter(estimate -> titles.containsKey(estimate.item()))
+                .map(estimate -> new MostBorrowedDto(estimate.item(), titles.get(estimate.item()), estimate.count(),
+                        estimate.error(), estimate.lowerBound() >= ranking.threshold()))
+                .toList();
+    }
+
+    // اجتماع sketch های روزانه؛ روزهای قدیمی تر از نگهداری شمرده نمی شوند. to هم شامل می شود
+    public DistinctUsersDto getDistinctUsers(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new InvalidDateRangeException(from, to);
+        }
+        LocalDate oldest = LocalDate.now().minusDays(distinctUserTracker.getRetentionDays() - 1);
+        LocalDate start = from.isBefore(oldest) ? oldest : from;
+        HyperLogLog borrowers = distinctUserTracker.union(DistinctUserTracker.Activity.BORROW, start, to);
+        HyperLogLog commenters = distinctUserTracker.union(DistinctUserTracker.Activity.COMMENT, start, to);
+        return new DistinctUsersDto(start, to, borrowers.estimate(), commenters.estimate(), borrowers.standardError());
+    }
 
-        return new StatisticsDto(totalBooks, totalUsers, totalLoans, activeLoans, returnedLoans);
+    // از ستون های حافظه با fork/join جمع زده می شود؛ to هم شامل می شود
+    public List<RevenueDto> getRevenue(RevenuePeriod period, LocalDate from, LocalDate to, String genre) {
+        if (to.isBefore(from)) {
+            throw new InvalidDateRangeException(from, to);
+        }
+        int maxDays = period == RevenuePeriod.DAY ? MAX_DAILY_REVENUE_DAYS : MAX_REVENUE_DAYS;
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new InvalidDateRangeException(from, to, maxDays);
+        }
+        return revenueAnalytics.revenue(period, from, to, genre);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,138 @@
+package com.example.bookmarket.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Symmetric-delete spelling dictionary (the SymSpell approach). Every term is stored under each
+ * string obtained by deleting up to {@code maxDistance} characters from its first
+ * {@code prefixLength} characters. A misspelled input only has to generate its own deletes and look
+ * them up, so candidates are found without comparing against every term; the few candidates are
+ * then verified with a real edit distance.
+ * <p>
+ * Not thread-safe: the owner guards it with its own lock.
+ */
+public class SymmetricDeleteDictionary {
+
+    private final int maxDistance;
+    private final int prefixLength;
+    private final Set<String> terms = new HashSet<>();
+    private final Map<String, List<String>> deletes = new HashMap<>();
+
+    public SymmetricDeleteDictionary(int maxDistance, int prefixLength) {
+        this.maxDistance = maxDistance;
+        this.prefixLength = prefixLength;
+    }
+
+    public void add(String term) {
+        if (!terms.add(term)) {
+            return;
+        }
+        for (String variant : variants(term, maxDistance)) {
+            deletes.computeIfAbsent(variant, v -> new ArrayList<>(2)).add(term);
+        }
+    }
+
+    public void remove(String term) {
+        if (!terms.remove(term)) {
+            return;
+        }
+        for (String variant : variants(term, maxDistance)) {
+            List<String> candidates = deletes.get(variant);
+            if (candidates != null) {
+                candidates.remove(term);
+                if (candidates.isEmpty()) {
+                    deletes.remove(variant);
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        terms.clear();
+        deletes.clear();
+    }
+
+    public boolean contains(String term) {
+        return terms.contains(term);
+    }
+
+    /**
+     * @return dictionary terms within {@code distance} edits of {@code input}, mapped to their distance
+     */
+    public Map<String, Integer> lookup(String input, int distance) {
+        int limit = Math.min(distance, maxDistance);
+        Map<String, Integer> matches = new HashMap<>();
+        Set<String> checked = new HashSet<>();
+        for (String variant : variants(input, limit)) {
+            List<String> candidates = deletes.get(variant);
+            if (candidates == null) {
+                continue;
+            }
+            for (String candidate : candidates) {
+                if (checked.add(candidate) && Math.abs(candidate.length() - input.length()) <= limit) {
+                    int editDistance = editDistance(input, candidate, limit);
+                    if (editDistance <= limit) {
+                        matches.put(candidate, editDistance);
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    private Set<String> variants(String term, int distance) {
+        String key = term.length() > prefixLength ? term.substring(0, prefixLength) : term;
+        Set<String> variants = new HashSet<>();
+        variants.add(key);
+        collectDeletes(key, distance, variants);
+        return variants;
+    }
+
+    private static void collectDeletes(String word, int remaining, Set<String> out) {
+        if (remaining == 0 || word.length() <= 1) {
+            return;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            String deleted = word.substring(0, i) + word.substring(i + 1);
+            if (out.add(deleted)) {
+                collectDeletes(deleted, remaining - 1, out);
+            }
+        }
+    }
+
+    // فاصله Damerau-Levenshtein (optimal string alignment) با توقف زودهنگام وقتی از limit بیشتر شود
+    static int editDistance(String a, String b, int limit) {
+        int[] previousPrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previousPrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > limit) {
+                return limit + 1;
+            }
+            int[] recycled = previousPrevious;
+            previousPrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.bookmarket.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalizes search text so Persian and Arabic variants of the same word compare equal:
+ * Arabic yeh/kaf are mapped to Persian forms, hamza-carrying alefs to plain alef,
+ * diacritics, tatweel and zero-width joiners are dropped and Persian/Arabic digits become ASCII.
+ */
+public final class TextNormalizer {
+
+    private TextNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\u064A', '\u0649' -> out.append('\u06CC');
+                case '\u0643' -> out.append('\u06A9');
+                case '\u0622', '\u0623', '\u0625', '\u0671' -> out.append('\u0627');
+                case '\u0624' -> out.append('\u0648');
+                case '\u0629' -> out.append('\u0647');
+                case '\u0640', '\u200C', '\u200D', '\u200E', '\u200F' -> {
+                    // tatweel و نیم فاصله حذف می شوند
+                }
+                default -> {
+                    if (c >= '\u064B' && c <= '\u065F' || c == '\u0670') {
+                        continue; // اعراب
+                    }
+                    if (c >= '\u06F0' && c <= '\u06F9') {
+                        out.append((char) ('0' + (c - '\u06F0')));
+                    } else if (c >= '\u0660' && c <= '\u0669') {
+                        out.append((char) ('0' + (c - '\u0660')));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.toString().toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
+import com.example.bookmarket.entity.RevokedTokenEntity;
+import com.example.bookmarket.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Revoked tokens, stored in {@code revoked_token} and fronted by a {@link CountingBloomFilter} of their keys.
+ * <p>
+ * A token is looked up under two keys: its jti and {@code sub:<username>}. When the filter has neither key the
+ * token is definitely not revoked and no query runs, which is the case for nearly every request. Only a probable
+ * hit reads the row. Rows are deleted once every token they could match has expired: at the token's exp for a
+ * single revocation, and one maximum token lifetime after a revoke-all.
+ * <p>
+ * Every node keeps its own filter. {@link #sync} adds the keys other nodes revoked since the last sync, so a
+ * revocation reaches every node within {@code security.revocation.sync-interval}. Keys are never removed from a
+ * filter, since a node cannot tell which of its keys another node purged; {@link #recover} instead swaps in a
+ * fresh filter of the live keys every {@code security.revocation.rebuild-interval}.
+ * <p>
+ * iat has whole-second precision, so a revoke-all also rejects tokens issued within the same second.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JwtUtil jwtUtil;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    private final Duration syncOverlap;
+    private volatile CountingBloomFilter filter;
+    private final AtomicInteger entries = new AtomicInteger();
+    // کلیدهایی که در بازه هم پوشانی sync دوباره برمی گردند با revokedAt شان، تا دو بار شمرده نشوند
+    private final Map<String, Instant> recent = new HashMap<>();
+    private Instant syncedUntil;
+    private final Counter lookups;
+    private final Counter falsePositives;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, JwtUtil jwtUtil,
+                                  @Value("${security.revocation.expected-entries:100000}") int expectedEntries,
+                                  @Value("${security.revocation.false-positive-rate:0.01}") double falsePositiveRate,
+                                  @Value("${security.revocation.sync-overlap:30s}") Duration syncOverlap,
+                                  MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.jwtUtil = jwtUtil;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.syncOverlap = syncOverlap;
+        this.filter = new CountingBloomFilter(expectedEntries, falsePositiveRate);
+        Gauge.builder("security.revocation.entries", entries, AtomicInteger::get).register(meterRegistry);
+        this.lookups = Counter.builder("security.revocation.lookups")
+                .description("Revocation checks the Bloom filter could not answer alone")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("security.revocation.false.positives")
+                .description("Lookups that found no matching revocation")
+                .register(meterRegistry);
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        return (token.tokenId() != null && isRevoked(tokenKey(token.tokenId()), token))
+                || isRevoked(subjectKey(token.username()), token);
+    }
+
+    /**
+     * Revokes a single token until its own expiry.
+     */
+    public void revoke(VerifiedToken token) {
+        if (token.tokenId() == null) {
+            throw new IllegalArgumentException("Token has no jti and can only be revoked with revokeAll");
+        }
+        store(tokenKey(token.tokenId()), Instant.now(), token.expiresAt());
+    }
+
+    /**
+     * Revokes every token issued to the username up to now, access and refresh alike.
+     */
+    public void revokeAll(String username) {
+        Instant now = Instant.now();
+        store(subjectKey(username), now, now.plus(jwtUtil.maxTokenValidity()));
+        log.info("Revoked all tokens of {}", username);
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval:1m}")
+    public void purge() {
+        List<String> expired = revokedTokenRepository.findExpiredKeys(Instant.now());
+        for (int from = 0; from < expired.size(); from += BATCH_SIZE) {
+            revokedTokenRepository.deleteByKeys(expired.subList(from, Math.min(from + BATCH_SIZE, expired.size())));
+        }
+    }
+
+    /**
+     * Adds the keys revoked on other nodes since the previous sync. The window reaches back
+     * {@code security.revocation.sync-overlap} further, to catch rows whose transaction committed after a later
+     * one was already seen and to absorb clock skew between nodes.
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.sync-interval:5s}")
+    public synchronized void sync() {
+        if (syncedUntil == null) {
+            return;
+        }
+        Instant now = Instant.now();
+        Instant since = syncedUntil.minus(syncOverlap);
+        for (RevokedTokenEntity revocation : revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(since, now)) {
+            count(revocation.getTokenKey(), revocation.getRevokedAt());
+        }
+        // ردیف هایی که revokedAt شان قبل از ابتدای بازه بعدی است دیگر برنمی گردند
+        Instant nextSince = now.minus(syncOverlap);
+        recent.values().removeIf(revokedAt -> !revokedAt.isAfter(nextSince));
+        syncedUntil = now;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${security.revocation.rebuild-interval:15m}",
+            fixedDelayString = "${security.revocation.rebuild-interval:15m}")
+    public synchronized void recover() {
+        Instant now = Instant.now();
+        List<String> live = revokedTokenRepository.findLiveKeys(now);
+        CountingBloomFilter rebuilt = new CountingBloomFilter(expectedEntries, falsePositiveRate);
+        live.forEach(rebuilt::add);
+        // فیلتر تازه یک جا جایگزین می شود تا هیچ بررسی ای فیلتر نیمه پر را نبیند
+        filter = rebuilt;
+        entries.set(live.size());
+        if (syncedUntil == null) {
+            syncedUntil = now;
+        }
+        log.info("Loaded {} token revocations", live.size());
+    }
+
+    private boolean isRevoked(String key, VerifiedToken token) {
+        if (!filter.mightContain(key)) {
+            return false;
+        }
+        lookups.increment();
+        Optional<RevokedTokenEntity> revocation = revokedTokenRepository.findById(key);
+        boolean revoked = revocation.isPresent()
+                && revocation.get().getExpiresAt().isAfter(Instant.now())
+                && (token.issuedAt() == null || !token.issuedAt().isAfter(revocation.get().getRevokedAt()));
+        if (!revoked) {
+            falsePositives.increment();
+        }
+        return revoked;
+    }
+
+    // نوشتن ها با sync و recover هم زمان نمی شوند، پس کلید تازه پیش از جایگزینی فیلتر در آن هست
+    private synchronized void store(String key, Instant revokedAt, Instant expiresAt) {
+        Optional<RevokedTokenEntity> existing = revokedTokenRepository.findById(key);
+        if (existing.isPresent()) {
+            RevokedTokenEntity revocation = existing.get();
+            revocation.setRevokedAt(revokedAt);
+            if (expiresAt.isAfter(revocation.getExpiresAt())) {
+                revocation.setExpiresAt(expiresAt);
+            }
+            revokedTokenRepository.save(revocation);
+        } else {
+            revokedTokenRepository.save(new RevokedTokenEntity(key, revokedAt, expiresAt));
+        }
+        // ردیف موجود ممکن است گره دیگری نوشته باشد که sync هنوز آن را نیاورده است
+        count(key, revokedAt);
+    }
+
+    private void count(String key, Instant revokedAt) {
+        Instant previous = recent.put(key, revokedAt);
+        if (previous == null) {
+            filter.add(key);
+            entries.incrementAndGet();
+        }
+    }
+
+    private static String tokenKey(String tokenId) {
+        return "jti:" + tokenId;
+    }
+
+    private static String subjectKey(String username) {
+        return "sub:" + username;
+    }
+}
@@ -1,20 +1,26 @@
 package com.example.bookmarket.service;
 
 import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
 import com.example.bookmarket.dto.AddUserDto;
 import com.example.bookmarket.dto.TokenDto;
 import com.example.bookmarket.dto.UpdateUserDto;
 import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
 import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.event.PrincipalChangedEvent;
+import com.example.bookmarket.event.StatisticsChangedEvent;
 import com.example.bookmarket.exception.*;
 import com.example.bookmarket.repository.UserRepository;
 import io.jsonwebtoken.ExpiredJwtException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
@@ -25,47 +31,66 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SessionRegistry sessionRegistry;
+    private final TokenRevocationService tokenRevocationService;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public UserService(UserRepository userRepository, JwtUtil jwtUtil, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, JwtUtil jwtUtil, PasswordHasher passwordHasher,
+                       ApplicationEventPublisher eventPublisher, SessionRegistry sessionRegistry,
+                       TokenRevocationService tokenRevocationService, TransactionTemplate transactionTemplate) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.eventPublisher = eventPublisher;
+        this.sessionRegistry = sessionRegistry;
+        this.tokenRevocationService = tokenRevocationService;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    @Transactional
+    // هش کردن بیرون از تراکنش انجام می شود تا اتصال پایگاه داده در صف هش کردن منتظر نماند
     public AddUserDto add(AddUserDto addUserDto) {
         if (userRepository.existsByUsername(addUserDto.username())) {
             throw new UsernameAlreadyExistsException(addUserDto.username());
         }
+        String passwordHash = passwordHasher.encode(addUserDto.password());
+
+        return transactionTemplate.execute(status -> {
+            if (userRepository.existsByUsername(addUserDto.username())) {
+                throw new UsernameAlreadyExistsException(addUserDto.username());
+            }
 
-        var userEntity = new UserEntity();
-        userEntity.setUsername(addUserDto.username());
-        userEntity.setPassword(passwordEncoder.encode(addUserDto.password()));
-        userEntity.setNickname(addUserDto.nickname());
-        userEntity.setStatus(UserStatus.INACTIVE);
+            var userEntity = new UserEntity();
+            userEntity.setUsername(addUserDto.username());
+            userEntity.setPassword(passwordHash);
+            userEntity.setNickname(addUserDto.nickname());
+            userEntity.setStatus(UserStatus.INACTIVE);
 
-        userEntity.getRoles().add("USER");
+            userEntity.getRoles().add("USER");
 
-        UserEntity savedUser = userRepository.save(userEntity);
-        return convertToAddUserDto(savedUser);
+            UserEntity savedUser = userRepository.save(userEntity);
+            eventPublisher.publishEvent(StatisticsChangedEvent.userAdded());
+            return convertToAddUserDto(savedUser);
+        });
     }
 
     public TokenDto login(String username, String password) {
         UserEntity userEntity = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
 
-        if (!passwordEncoder.matches(password, userEntity.getPassword())) {
+        if (!passwordHasher.matches(password, userEntity.getPassword())) {
             throw new IllegalArgumentException("رمزعبور اشتباه است");
         }
 
-        if (userEntity.getStatus() == UserStatus.ACTIVE) {
+        if (sessionRegistry.isActive(AccountType.USER, userEntity.getId())) {
             throw new UserAlreadyLoggedInException(username);
         }
 
-        if (userEntity.getStatus() == UserStatus.INACTIVE) {
-            userEntity.setStatus(UserStatus.ACTIVE);
+        String rehashed = passwordHasher.rehashIfNeeded(password, userEntity.getPassword());
+        if (rehashed != null) {
+            userEntity.setPassword(rehashed);
             userRepository.save(userEntity);
         }
 
@@ -74,49 +99,82 @@ public class UserService {
         String accessToken = jwtUtil.generateToken(username, roles);
         String refreshToken = jwtUtil.generateRefreshToken(username);
 
+        // وضعیت ACTIVE با تاخیر و دسته ای در پایگاه داده نوشته می شود
+        Instant sessionExpiresAt = jwtUtil.verify(refreshToken).expiresAt();
+        if (!sessionRegistry.open(AccountType.USER, userEntity.getId(), username, sessionExpiresAt)) {
+            throw new UserAlreadyLoggedInException(username);
+        }
+
         return new TokenDto(accessToken, refreshToken, "Login successful");
     }
 
-    @Transactional
     public UpdateUserDto update(UpdateUserDto updateUserDto) {
         Long userId = updateUserDto.userId();
-        UserEntity userEntity = userRepository.findById(userId)
-                .orElseThrow(() -> new UserNotFoundException(userId));
+        String passwordHash = updateUserDto.password() == null ? null : passwordHasher.encode(updateUserDto.password());
 
-        if (updateUserDto.username() != null) {
-            userEntity.setUsername(updateUserDto.username());
-        }
-        if (updateUserDto.password() != null) {
-            userEntity.setPassword(passwordEncoder.encode(updateUserDto.password()));
-        }
-        if (updateUserDto.nickname() != null) {
-            userEntity.setNickname(updateUserDto.nickname());
-        }
+        return transactionTemplate.execute(status -> {
+            UserEntity userEntity = userRepository.findById(userId)
+                    .orElseThrow(() -> new UserNotFoundException(userId));
+            eventPublisher.publishEvent(new PrincipalChangedEvent(userEntity.getUsername()));
 
-        userEntity.setStatus(UserStatus.ACTIVE);
-        UserEntity updatedUser = userRepository.save(userEntity);
-        return convertToUpdateUserDto(updatedUser);
+            if (updateUserDto.username() != null && !updateUserDto.username().equals(userEntity.getUsername())) {
+                userEntity.setUsername(updateUserDto.username());
+                // هر چیزی که زیر نام جدید کش شده هم باید کنار برود
+                eventPublisher.publishEvent(new PrincipalChangedEvent(updateUserDto.username()));
+            }
+            if (passwordHash != null) {
+                userEntity.setPassword(passwordHash);
+            }
+            if (updateUserDto.nickname() != null) {
+                userEntity.setNickname(updateUserDto.nickname());
+            }
+
+            UserEntity updatedUser = userRepository.save(userEntity);
+            return convertToUpdateUserDto(updatedUser);
+        });
     }
 
     @Transactional
     public void delete(Long userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new UserNotFoundException(userId);
-        }
-        userRepository.deleteById(userId);
+        UserEntity userEntity = userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException(userId));
+        userRepository.delete(userEntity);
+        sessionRegistry.close(AccountType.USER, userId);
+        eventPublisher.publishEvent(new PrincipalChangedEvent(userEntity.getUsername()));
+        eventPublisher.publishEvent(StatisticsChangedEvent.userDeleted());
     }
 
+    /**
+     * @param accessToken the caller's token; it must belong to {@code userId}
+     */
     @Transactional
-    public void logout(Long userId) {
+    public void logout(Long userId, VerifiedToken accessToken) {
         UserEntity userEntity = userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException(userId));
+        if (accessToken == null || !userEntity.getUsername().equals(accessToken.username())) {
+            throw new AccountAccessDeniedException(userId);
+        }
 
-        if (userEntity.getStatus() == UserStatus.INACTIVE) {
+        if (!sessionRegistry.close(AccountType.USER, userId)) {
             throw new UserAlreadyLoggedOutException(userEntity.getUsername());
         }
+        // بدون ابطال، access token تا پایان اعتبارش قابل استفاده می ماند
+        tokenRevocationService.revoke(accessToken);
+        eventPublisher.publishEvent(new PrincipalChangedEvent(userEntity.getUsername()));
+    }
+
+    /**
+     * @param caller the caller's token; it must belong to {@code userId} or to an admin
+     */
+    public void revokeAllTokens(Long userId, VerifiedToken caller) {
+        UserEntity userEntity = userRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException(userId));
+        if (caller == null || !(userEntity.getUsername().equals(caller.username()) || caller.roles().contains("ADMIN"))) {
+            throw new AccountAccessDeniedException(userId);
+        }
 
-        userEntity.setStatus(UserStatus.INACTIVE);
-        userRepository.save(userEntity);
+        tokenRevocationService.revokeAll(userEntity.getUsername());
+        sessionRegistry.close(AccountType.USER, userId);
     }
 
     @Transactional
@@ -124,22 +182,22 @@ public class UserService {
         log.info("Attempting to refresh token");
 
         try {
-            String username = jwtUtil.extractUsername(refreshToken);
+            VerifiedToken token = jwtUtil.verify(refreshToken);
+            String username = token.username();
 
-            if (!jwtUtil.isRefreshToken(refreshToken)) {
+            if (!token.isRefreshToken()) {
                 log.warn("Invalid token type used for refresh: {}", refreshToken);
                 throw new InvalidTokenException("Invalid token type. Refresh token required.");
             }
 
-            if (!jwtUtil.validateToken(refreshToken, username)) {
-                log.warn("Refresh token validation failed for user: {}", username);
-                throw new InvalidTokenException("Refresh token is invalid or expired");
+            if (tokenRevocationService.isRevoked(token)) {
+                throw new InvalidTokenException("Refresh token has been revoked");
             }
 
             UserEntity user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new UserNotFoundException(username));
 
-            if (user.getStatus() != UserStatus.ACTIVE) { // تغییر به UserStatus
+            if (!sessionRegistry.isActive(AccountType.USER, user.getId())) {
                 throw new UserInactiveException("User account is not active");
             }
 
@@ -0,0 +1,290 @@
+package com.example.bookmarket;
+
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.dto.AddBookDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.CommentEntity;
+import com.example.bookmarket.entity.LibrarianEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.CommentRepository;
+import com.example.bookmarket.repository.LibrarianRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import com.example.bookmarket.service.BookService;
+import com.example.bookmarket.service.SessionRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the hot endpoints against a seeded in-memory database and compares the SQL statements and bytes allocated
+ * per request with the budgets in {@code endpoint-budgets.properties}. Both are measured after warm-up, so caches
+ * are in their steady state.
+ * <p>
+ * Statement counts must not exceed the recorded ones. Allocation varies with the JVM, GC and JIT, so it only
+ * fails at {@value #BYTES_TOLERANCE} times the recorded mean, which catches an endpoint that starts loading
+ * far more than it used to; the allocation check is skipped on JVMs without
+ * {@link com.sun.management.ThreadMXBean}.
+ * <p>
+ * Run with {@code -Dbudgets.record=true} to write the measured values to {@code target/endpoint-budgets.properties}
+ * instead of asserting, and copy the lines that changed on purpose.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:budgets;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.bookmarket.StatementCounter",
+        "logging.level.com.example.bookmarket=INFO",
+        "jwt.keys.in-memory=true"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class EndpointBudgetTests {
+
+    private static final int WARMUP = 50;
+    private static final int MEASURED = 20;
+    private static final int ITERATIONS = WARMUP + MEASURED;
+    private static final boolean RECORD = Boolean.getBoolean("budgets.record");
+    private static final int BYTES_TOLERANCE = 3;
+
+    private record Endpoint(String name, IntFunction<MockHttpServletRequestBuilder> request) {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LibrarianRepository librarianRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Properties budgets = new Properties();
+    private final TreeMap<String, Long> measured = new TreeMap<>();
+
+    private String readerToken;
+    private String adminToken;
+    private Long readerId;
+    private Long bookId;
+    private Long loanId;
+    private final List<Long> borrowerIds = new ArrayList<>();
+    private final List<Long> loansToReturn = new ArrayList<>();
+
+    @BeforeAll
+    void seed() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/endpoint-budgets.properties")) {
+            if (in != null) {
+                budgets.load(in);
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            bookService.add(new AddBookDto("Book " + i, "Author " + (i % 7), BigDecimal.valueOf(10 + i), 1_000,
+                    LocalDate.of(2000 + i % 20, 1, 1), "Genre " + (i % 5), 1, 10));
+        }
+        List<BookEntity> books = bookRepository.findAll();
+        bookId = books.get(0).getId();
+
+        readerId = saveUser("reader");
+        for (int i = 0; i < ITERATIONS; i++) {
+            borrowerIds.add(saveUser("borrower" + i));
+        }
+        LibrarianEntity admin = new LibrarianEntity();
+        admin.setUsername("admin");
+        admin.setPassword("unused");
+        librarianRepository.save(admin);
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            UserEntity reader = userRepository.getReferenceById(readerId);
+            for (int i = 0; i < 200; i++) {
+                saveLoan(reader, books.get(i % books.size()));
+            }
+            for (int i = 0; i < ITERATIONS; i++) {
+                loansToReturn.add(saveLoan(reader, books.get(i % books.size())));
+            }
+            for (int i = 0; i < 100; i++) {
+                CommentEntity comment = new CommentEntity();
+                comment.setUser(userRepository.getReferenceById(borrowerIds.get(i % borrowerIds.size())));
+                comment.setBook(bookRepository.getReferenceById(bookId));
+                comment.setContent("comment " + i);
+                comment.setRating(1 + i % 5);
+                commentRepository.save(comment);
+            }
+        });
+        loanId = loansToReturn.get(0) - 1;
+
+        readerToken = "Bearer " + jwtUtil.generateToken("reader", Set.of("USER"));
+        adminToken = "Bearer " + jwtUtil.generateToken("admin", Set.of("ADMIN"));
+    }
+
+    Stream<Endpoint> endpoints() {
+        return Stream.of(
+                new Endpoint("books.get", i -> get("/api/v1/books/{id}", bookId).header("Authorization", readerToken)),
+                new Endpoint("books.all", i -> get("/api/v1/books/all").header("Authorization", readerToken)),
+                new Endpoint("books.search", i -> get("/api/v1/books/search").param("author", "author 3")
+                        .header("Authorization", readerToken)),
+                new Endpoint("books.search.ranked", i -> get("/api/v1/books/search/ranked").param("q", "book 1")
+                        .header("Authorization", readerToken)),
+                new Endpoint("books.autocomplete", i -> get("/api/v1/books/autocomplete").param("prefix", "boo")
+                        .header("Authorization", readerToken)),
+                new Endpoint("comments.by-book", i -> get("/api/v1/comments/book/{id}", bookId)
+                        .header("Authorization", readerToken)),
+                new Endpoint("loans.get", i -> get("/api/v1/loans/{id}", loanId).header("Authorization", readerToken)),
+                new Endpoint("loans.search", i -> get("/api/v1/loans/search").param("userId", readerId.toString())
+                        .param("status", "ACTIVE").header("Authorization", readerToken)),
+                new Endpoint("loans.all", i -> get("/api/v1/loans/all").header("Authorization", readerToken)),
+                new Endpoint("loans.stats", i -> get("/api/v1/loans/stats").header("Authorization", adminToken)),
+                new Endpoint("statistics", i -> get("/api/v1/statistics").header("Authorization", adminToken)),
+                new Endpoint("loans.add", i -> post("/api/v1/loans/add")
+                        .header("Authorization", readerToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":" + borrowerIds.get(i) + ",\"bookId\":" + bookId
+                                + ",\"dueDate\":\"" + LocalDate.now().plusDays(14) + "\"}")),
+                new Endpoint("loans.return", i -> delete("/api/v1/loans/return/{id}", loansToReturn.get(i))
+                        .header("Authorization", readerToken))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("endpoints")
+    void staysWithinBudget(Endpoint endpoint) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                        && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+        long maxStatements = 0;
+        long totalBytes = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            MockHttpServletRequestBuilder request = endpoint.request().apply(i);
+            StatementCounter.reset();
+            long allocatedBefore = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+
+            mockMvc.perform(request).andExpect(status().is2xxSuccessful());
+
+            long allocated = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            if (i >= WARMUP) {
+                maxStatements = Math.max(maxStatements, StatementCounter.count());
+                totalBytes += allocated;
+            }
+        }
+        long bytesPerRequest = totalBytes / MEASURED;
+
+        measured.put(endpoint.name() + ".statements", maxStatements);
+        if (threads != null) {
+            measured.put(endpoint.name() + ".bytes", bytesPerRequest);
+        }
+        if (RECORD) {
+            return;
+        }
+
+        assertThat(budgets.getProperty(endpoint.name() + ".statements"))
+                .as("no budget recorded for %s; run with -Dbudgets.record=true", endpoint.name())
+                .isNotNull();
+        assertThat(maxStatements)
+                .as("SQL statements per %s request", endpoint.name())
+                .isLessThanOrEqualTo(Long.parseLong(budgets.getProperty(endpoint.name() + ".statements")));
+
+        assumeTrue(threads != null, "per-thread allocation is not measurable on this JVM");
+        assertThat(bytesPerRequest)
+                .as("bytes allocated per %s request", endpoint.name())
+                .isLessThanOrEqualTo(BYTES_TOLERANCE * Long.parseLong(budgets.getProperty(endpoint.name() + ".bytes")));
+    }
+
+    @AfterAll
+    void writeRecording() throws IOException {
+        if (!RECORD) {
+            return;
+        }
+        Path target = Path.of("target", "endpoint-budgets.properties");
+        Files.createDirectories(target.getParent());
+        StringBuilder lines = new StringBuilder();
+        measured.forEach((key, value) -> lines.append(key).append('=').append(value).append('\n'));
+        try (OutputStream out = Files.newOutputStream(target)) {
+            out.write(lines.toString().getBytes());
+        }
+    }
+
+    private Long saveUser(String username) {
+        UserEntity user = new UserEntity();
+        user.setUsername(username);
+        user.setPassword("unused");
+        user.setStatus(UserStatus.ACTIVE);
+        Long id = userRepository.save(user).getId();
+        sessionRegistry.open(AccountType.USER, id, username, Instant.now().plusSeconds(3600));
+        return id;
+    }
+
+    private Long saveLoan(UserEntity user, BookEntity book) {
+        LoanEntity loan = new LoanEntity();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setPrice(book.getPrice());
+        loan.setFinalPrice(book.getFinalPrice());
+        loan.setDueDate(LocalDate.now().plusDays(14));
+        return loanRepository.save(loan).getId();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bookmarket.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CalibratedPasswordEncoderTests {
+
+    @Test
+    void calibrationStaysWithinBounds() {
+        CalibratedPasswordEncoder encoder = CalibratedPasswordEncoder.calibrate(Duration.ofMillis(5), 4, 8, 1);
+
+        assertThat(encoder.getCost()).isBetween(4, 8);
+        assertThat(encoder.getVerifyMillis()).isPositive();
+    }
+
+    @Test
+    void fixedCostIsUsedAsConfigured() {
+        CalibratedPasswordEncoder encoder = CalibratedPasswordEncoder.withCost(6, 1);
+
+        assertThat(encoder.getCost()).isEqualTo(6);
+        assertThat(encoder.encode("secret")).startsWith("{bcrypt}$2a$06$");
+    }
+
+    @Test
+    void hashesRecordAlgorithmAndCost() {
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(5, 1, 0);
+
+        String hash = encoder.encode("secret");
+
+        assertThat(hash).startsWith("{bcrypt}$2a$05$");
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void legacyAndOutOfBandHashesVerifyButNeedUpgrade() {
+        CalibratedPasswordEncoder encoder = new CalibratedPasswordEncoder(6, 1, 0);
+
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+        assertThat(encoder.matches("secret", legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+
+        assertThat(encoder.upgradeEncoding(new CalibratedPasswordEncoder(5, 1, 0).encode("secret"))).isFalse();
+        assertThat(encoder.upgradeEncoding(new CalibratedPasswordEncoder(4, 1, 0).encode("secret"))).isTrue();
+        assertThat(encoder.upgradeEncoding(new CalibratedPasswordEncoder(8, 1, 0).encode("secret"))).isTrue();
+    }
+
+    @Test
+    void readsCostFromBcryptHash() {
+        assertThat(CalibratedPasswordEncoder.costOf("$2a$12$abcdefghijklmnopqrstuv")).isEqualTo(12);
+        assertThat(CalibratedPasswordEncoder.costOf("plain")).isEqualTo(-1);
+    }
+}
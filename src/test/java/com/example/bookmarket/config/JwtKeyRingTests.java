@@ -0,0 +1,124 @@
+package com.example.bookmarket.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtKeyRingTests {
+
+    private HttpServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void rotatedKeyKeepsVerifyingUntilTheOverlapEnds() {
+        JwtKeyRing ring = new JwtKeyRing("", "", Duration.ZERO, Duration.ofHours(1), Duration.ofSeconds(30), true);
+        JwtUtil jwtUtil = new JwtUtil(ring, "", 100);
+        String kid = ring.signingKey().kid();
+        String before = jwtUtil.generateToken("ali", Set.of("USER"));
+
+        ring.refresh();
+
+        assertThat(ring.signingKey().kid()).isNotEqualTo(kid);
+        assertThat(ring.jwks().get("keys")).asList().hasSize(2);
+        assertThat(new JwtUtil(ring, "", 100).verify(before).username()).isEqualTo("ali");
+    }
+
+    @Test
+    void retiredKeysAreDroppedFromTheRing() {
+        JwtKeyRing ring = new JwtKeyRing("", "", Duration.ZERO, Duration.ZERO, Duration.ofSeconds(30), true);
+        String kid = ring.signingKey().kid();
+
+        ring.refresh();
+
+        assertThat(ring.publicKey(kid)).isNull();
+        assertThat(ring.jwks().get("keys")).asList().hasSize(1);
+    }
+
+    @Test
+    void keysInTheDirectorySurviveARestart(@TempDir Path directory) {
+        JwtKeyRing first = new JwtKeyRing(directory.toString(), "", Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, false);
+        String token = new JwtUtil(first, "", 100).generateToken("ali", Set.of("USER"));
+
+        JwtKeyRing restarted = new JwtKeyRing(directory.toString(), "", Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, false);
+
+        assertThat(restarted.signingKey().kid()).isEqualTo(first.signingKey().kid());
+        assertThat(new JwtUtil(restarted, "", 100).verify(token).username()).isEqualTo("ali");
+    }
+
+    @Test
+    void startupFailsWithoutAKeySource() {
+        assertThatThrownBy(() -> new JwtKeyRing("", "", Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("jwt.keys.directory");
+    }
+
+    @Test
+    void keyRotatedByAnotherIssuerIsReadOnFirstUse(@TempDir Path directory) {
+        JwtKeyRing rotating = new JwtKeyRing(directory.toString(), "", Duration.ZERO, Duration.ofHours(1), Duration.ZERO, false);
+        JwtKeyRing other = new JwtKeyRing(directory.toString(), "", Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, false);
+
+        rotating.refresh();
+        String token = new JwtUtil(rotating, "", 100).generateToken("ali", Set.of("USER"));
+
+        assertThat(new JwtUtil(other, "", 100).verify(token).username()).isEqualTo("ali");
+    }
+
+    @Test
+    void replicaVerifiesFromJwksWithoutThePrivateKey() throws Exception {
+        JwtKeyRing issuer = new JwtKeyRing("", "", Duration.ZERO, Duration.ofHours(1), Duration.ofSeconds(30), true);
+        JwtUtil issuing = new JwtUtil(issuer, "", 100);
+        AtomicInteger fetches = new AtomicInteger();
+        String jwksUri = serveJwks(issuer, fetches);
+
+        JwtKeyRing replicaRing = new JwtKeyRing("", jwksUri, Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, false);
+        JwtUtil replica = new JwtUtil(replicaRing, "", 100);
+
+        assertThat(replica.verify(issuing.generateToken("ali", Set.of("USER"))).username()).isEqualTo("ali");
+        assertThatThrownBy(() -> replica.generateToken("ali", Set.of("USER"))).isInstanceOf(IllegalStateException.class);
+
+        // کلید جدید صادرکننده با اولین توکنی که آن را نام می برد خوانده می شود
+        issuer.refresh();
+        String rotated = issuing.generateToken("reza", Set.of("USER"));
+        assertThat(replica.verify(rotated).username()).isEqualTo("reza");
+        assertThat(fetches.get()).isEqualTo(2);
+
+        String foreign = new JwtUtil(new JwtKeyRing("", "", Duration.ofDays(7), Duration.ofHours(1), Duration.ZERO, true), "", 10)
+                .generateToken("ali", Set.of("ADMIN"));
+        assertThatThrownBy(() -> replica.verify(foreign)).isInstanceOf(JwtException.class);
+    }
+
+    private String serveJwks(JwtKeyRing issuer, AtomicInteger fetches) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/.well-known/jwks.json", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = mapper.writeValueAsBytes(issuer.jwks());
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/.well-known/jwks.json";
+    }
+}
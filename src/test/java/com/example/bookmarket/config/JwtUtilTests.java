@@ -0,0 +1,151 @@
+package com.example.bookmarket.config;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTests {
+
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs256";
+
+    private final JwtKeyRing keyRing = inMemoryRing();
+    private final JwtUtil jwtUtil = new JwtUtil(keyRing, SECRET, 1000);
+
+    @Test
+    void verifiesAccessTokenOnceAndServesRepeatsFromCache() {
+        String token = jwtUtil.generateToken("ali", Set.of("USER"));
+
+        VerifiedToken first = jwtUtil.verify(token);
+        assertThat(first.username()).isEqualTo("ali");
+        assertThat(first.isAccessToken()).isTrue();
+        assertThat(first.roles()).containsExactly("USER");
+        assertThat(first.authorities()).extracting("authority").containsExactly("ROLE_USER");
+
+        assertThat(jwtUtil.verify(token)).isSameAs(first);
+        assertThat(jwtUtil.validateToken(token, "ali")).isTrue();
+        assertThat(jwtUtil.validateToken(token, "reza")).isFalse();
+    }
+
+    @Test
+    void refreshTokenHasNoRoles() {
+        VerifiedToken token = jwtUtil.verify(jwtUtil.generateRefreshToken("ali"));
+
+        assertThat(token.isRefreshToken()).isTrue();
+        assertThat(token.roles()).isEmpty();
+        assertThat(token.authorities()).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedAndForeignTokens() {
+        String token = jwtUtil.generateToken("ali", Set.of("USER"));
+        jwtUtil.verify(token);
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertThatThrownBy(() -> jwtUtil.verify(tampered)).isInstanceOf(JwtException.class);
+
+        String foreign = new JwtUtil(inMemoryRing(), SECRET, 10).generateToken("ali", Set.of("ADMIN"));
+        assertThatThrownBy(() -> jwtUtil.verify(foreign)).isInstanceOf(JwtException.class);
+
+        String forgedLegacy = Jwts.builder()
+                .setSubject("ali")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor("another-secret-that-is-long-enough-too".getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+        assertThatThrownBy(() -> jwtUtil.verify(forgedLegacy)).isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void tokensCarryTheSigningKeyIdAndAJti() {
+        String jwt = jwtUtil.generateToken("ali", Set.of("USER"));
+        VerifiedToken token = jwtUtil.verify(jwt);
+        String header = new String(Base64.getUrlDecoder().decode(jwt.split("\\.")[0]));
+
+        assertThat(token.tokenId()).isNotBlank();
+        assertThat(header).contains("\"alg\":\"ES256\"").contains("\"kid\"");
+    }
+
+    @Test
+    void withoutTheLegacySecretOnlyKeyRingTokensAreAccepted() {
+        JwtKeyRing ring = inMemoryRing();
+        JwtUtil strict = new JwtUtil(ring, "", 10);
+        String legacy = Jwts.builder()
+                .setSubject("ali")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThat(jwtUtil.verify(legacy).username()).isEqualTo("ali");
+        assertThatThrownBy(() -> strict.verify(legacy)).isInstanceOf(JwtException.class);
+        assertThat(strict.verify(strict.generateRefreshToken("ali")).isRefreshToken()).isTrue();
+    }
+
+    @Test
+    void expiredTokenIsRejectedEvenAfterItWasCached() {
+        MutableClock clock = new MutableClock(Instant.now());
+        JwtUtil timed = new JwtUtil(keyRing, SECRET, 1000, clock);
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        String expired = Jwts.builder()
+                .setSubject("ali")
+                .setExpiration(Date.from(clock.instant().minusSeconds(1)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+        assertThatThrownBy(() -> timed.verify(expired)).isInstanceOf(ExpiredJwtException.class);
+
+        String shortLived = Jwts.builder()
+                .setSubject("ali")
+                .setExpiration(Date.from(clock.instant().plusSeconds(2)))
+                .signWith(key, SignatureAlgorithm.HS256)
+                .compact();
+        assertThat(timed.verify(shortLived).username()).isEqualTo("ali");
+
+        clock.advance(Duration.ofSeconds(3));
+        assertThatThrownBy(() -> timed.verify(shortLived)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    private static JwtKeyRing inMemoryRing() {
+        return new JwtKeyRing("", "", Duration.ofDays(7), Duration.ofHours(1), Duration.ofSeconds(30), true);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bookmarket.config;
+
+import com.example.bookmarket.enums.RouteAccess;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RouteTableTests {
+
+    private final RouteTable routes = SecurityConfig.routeTable();
+
+    @Test
+    void literalSegmentsWinOverVariablesAndWildcards() {
+        assertThat(routes.lookup("/api/v1/books/42")).isEqualTo(RouteAccess.USER_OR_ADMIN);
+        assertThat(routes.lookup("/api/v1/books/add")).isEqualTo(RouteAccess.ADMIN);
+        assertThat(routes.lookup("/api/v1/loans/stats")).isEqualTo(RouteAccess.ADMIN);
+        assertThat(routes.lookup("/api/v1/comments/add")).isEqualTo(RouteAccess.USER);
+        assertThat(routes.lookup("/api/v1/books/search/ranked")).isEqualTo(RouteAccess.USER_OR_ADMIN);
+        assertThat(routes.lookup("/api/v1/books/42/extra")).isNull();
+    }
+
+    @Test
+    void wildcardMatchesZeroOrMoreSegments() {
+        assertThat(routes.lookup("/swagger-ui")).isEqualTo(RouteAccess.PUBLIC);
+        assertThat(routes.lookup("/swagger-ui/")).isEqualTo(RouteAccess.PUBLIC);
+        assertThat(routes.lookup("/swagger-ui/index.html")).isEqualTo(RouteAccess.PUBLIC);
+        assertThat(routes.lookup("/api/v1/comments/book/7/page/2")).isEqualTo(RouteAccess.USER_OR_ADMIN);
+        assertThat(routes.lookup("/actuator/metrics/cache.gets")).isEqualTo(RouteAccess.ADMIN);
+        assertThat(routes.lookup("/")).isNull();
+        assertThat(routes.lookup("/api")).isNull();
+    }
+
+    @Test
+    void checksRolesOfTheAuthentication() {
+        var user = new UsernamePasswordAuthenticationToken("u", null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+        var admin = new UsernamePasswordAuthenticationToken("a", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"));
+        var anonymous = new AnonymousAuthenticationToken("key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+
+        assertThat(routes.isAllowed(request("/api/v1/books/add"), user)).isFalse();
+        assertThat(routes.isAllowed(request("/api/v1/books/add"), admin)).isTrue();
+        assertThat(routes.isAllowed(request("/api/v1/loans/add"), admin)).isFalse();
+        assertThat(routes.isAllowed(request("/api/v1/books/1"), anonymous)).isFalse();
+        assertThat(routes.isAllowed(request("/api/v1/user/login"), anonymous)).isTrue();
+        assertThat(routes.isAllowed(request("/unknown"), admin)).isFalse();
+    }
+
+    @Test
+    void rejectsConflictingDeclarations() {
+        assertThatThrownBy(() -> RouteTable.builder()
+                .route(RouteAccess.USER, "/a/{id}")
+                .route(RouteAccess.ADMIN, "/a/{other}")
+                .build()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> RouteTable.builder().route(RouteAccess.USER, "/a/**/b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void publicRoutesAreTheOnesTheFilterSkipped() {
+        for (String path : List.of("/api/v1/user/login", "/api/v1/user/register", "/api/v1/librarians/login",
+                "/api/v1/librarians/register", "/swagger-ui.html", "/v3/api-docs/swagger-config",
+                "/api-docs", "/webjars/swagger-ui/index.css", "/swagger-resources/configuration/ui",
+                "/favicon.ico")) {
+            assertThat(routes.lookup(path)).as(path).isEqualTo(RouteAccess.PUBLIC);
+        }
+        for (String path : List.of("/api/v1/books/42", "/api/v1/books/search", "/api/v1/loans/add",
+                "/api/v1/comments/book/9", "/api/v1/statistics", "/api/v1/loans/return/3")) {
+            assertThat(routes.lookup(path)).as(path).isNotNull().isNotEqualTo(RouteAccess.PUBLIC);
+        }
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        return new MockHttpServletRequest("GET", path);
+    }
+}
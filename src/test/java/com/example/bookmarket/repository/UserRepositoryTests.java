@@ -0,0 +1,64 @@
+package com.example.bookmarket.repository;
+
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.UserStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserRepositoryTests {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        userRepository.deleteAll();
+        UserEntity user = new UserEntity();
+        user.setUsername("cached-user");
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        userRepository.save(user);
+    }
+
+    @Test
+    void findByUsernameIsServedFromQueryAndSecondLevelCache() {
+        userRepository.findByUsername("cached-user").orElseThrow();
+        statistics.clear();
+
+        UserEntity user = userRepository.findByUsername("cached-user").orElseThrow();
+
+        assertThat(user.getRoles()).containsExactly("USER");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics("user-roles").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void updatesInvalidateTheQueryCache() {
+        userRepository.findByUsername("cached-user").orElseThrow();
+
+        UserEntity user = userRepository.findByUsername("cached-user").orElseThrow();
+        user.setUsername("renamed-user");
+        userRepository.save(user);
+
+        assertThat(userRepository.findByUsername("cached-user")).isEmpty();
+        assertThat(userRepository.findByUsername("renamed-user")).isPresent();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({BookService.class, BookSearchIndex.class, BookAutocomplete.class, BookCache.class,
+        InventoryService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookCacheTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAll();
+        BookEntity book = new BookEntity();
+        book.setTitle("Cached");
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.TEN);
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(5);
+        bookId = bookRepository.save(book).getId();
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        double missesBefore = counter("miss");
+
+        bookService.findById(bookId);
+        bookService.findById(bookId);
+        bookService.findById(bookId);
+
+        assertThat(counter("miss") - missesBefore).isEqualTo(1);
+        assertThat(counter("hit")).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void stockChangesAreVisibleOnTheNextRead() {
+        assertThat(bookService.findById(bookId).orElseThrow().numberOfBooks()).isEqualTo(5);
+
+        inventoryService.reserve(bookId);
+        assertThat(bookService.findById(bookId).orElseThrow().numberOfBooks()).isEqualTo(4);
+
+        inventoryService.release(bookId);
+        assertThat(bookService.findById(bookId).orElseThrow().numberOfBooks()).isEqualTo(5);
+    }
+
+    @Test
+    void updatesAndDeletesInvalidate() {
+        UpdateBookDto cached = bookService.findById(bookId).orElseThrow();
+
+        bookService.update(new UpdateBookDto(bookId, "Renamed", cached.author(), cached.price(),
+                cached.numberOfBooks(), cached.publishedDate(), cached.genre(), cached.volume(), 0));
+        assertThat(bookService.findById(bookId).orElseThrow().title()).isEqualTo("Renamed");
+
+        bookService.delete(bookId);
+        assertThat(bookService.findById(bookId)).isEmpty();
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", BookCache.NAME).tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.BookSearchHitDto;
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.event.BookChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class BookSearchIndexTests {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex(mock(BookRepository.class));
+    }
+
+    @Test
+    void normalizesArabicVariantsToPersian() {
+        save(1L, "کلیدر", "محمود دولت‌آبادی", "رمان");
+
+        // ي و ك عربی، آ بدون کلاه و بدون نیم فاصله
+        assertThat(index.search("كليدر", 10)).extracting(BookSearchHitDto::id).containsExactly(1L);
+        assertThat(index.search("دولتابادی", 10)).extracting(BookSearchHitDto::id).containsExactly(1L);
+    }
+
+    @Test
+    void ranksTitleMatchesAboveGenreMatches() {
+        save(1L, "History of Iran", "Author", "Novel");
+        save(2L, "Cooking", "Author", "History");
+        save(3L, "Gardening", "Author", "Science");
+
+        List<BookSearchHitDto> hits = index.search("history", 10);
+
+        assertThat(hits).extracting(BookSearchHitDto::id).containsExactly(1L, 2L);
+        assertThat(hits.get(0).score()).isGreaterThan(hits.get(1).score());
+    }
+
+    @Test
+    void keepsUpWithUpdatesAndDeletes() {
+        save(1L, "Old Title", "Author", "Novel");
+        save(1L, "New Title", "Author", "Novel");
+
+        assertThat(index.search("old", 10)).isEmpty();
+        assertThat(index.search("new", 10)).extracting(BookSearchHitDto::id).containsExactly(1L);
+
+        index.onBookChanged(BookChangedEvent.deleted(1L));
+
+        assertThat(index.search("new", 10)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void fuzzySearchToleratesTyposAndPrefersExactMatches() {
+        save(1L, "The Blind Owl", "Sadegh Hedayat", "Novel");
+        save(2L, "The Blind Assassin", "Margaret Atwood", "Novel");
+
+        assertThat(index.search("blnd owel", 10)).isEmpty();
+        assertThat(index.search("blnd owel", 10, true)).extracting(BookSearchHitDto::id).first().isEqualTo(1L);
+        assertThat(index.search("hedayt", 10, true)).extracting(BookSearchHitDto::id).containsExactly(1L);
+
+        List<BookSearchHitDto> exactFirst = index.search("blind owl", 10, true);
+        assertThat(exactFirst).extracting(BookSearchHitDto::id).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void searchStaysCorrectOverLargeCatalog() {
+        Random random = new Random(42);
+        String[] words = new String[5000];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + Integer.toString(i, 36);
+        }
+        int books = 100_000;
+        for (long id = 1; id <= books; id++) {
+            save(id, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)], "genre" + random.nextInt(20));
+        }
+        save(books + 1L, "Unique Needle", "Author", "Novel");
+
+        assertThat(index.size()).isEqualTo(books + 1);
+        assertThat(index.search("unique needle", 20)).extracting(BookSearchHitDto::id).first().isEqualTo(books + 1L);
+        assertThat(index.search(words[0] + " " + words[1], 20)).hasSizeLessThanOrEqualTo(20);
+    }
+
+    private void save(Long id, String title, String author, String genre) {
+        index.onBookChanged(BookChangedEvent.saved(
+                new UpdateBookDto(id, title, author, BigDecimal.TEN, 1, null, genre, 1, 0)));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.CursorPageDto;
+import com.example.bookmarket.dto.PageDto;
+import com.example.bookmarket.dto.UpdateBookDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.enums.BookSortField;
+import com.example.bookmarket.exception.InvalidCursorException;
+import com.example.bookmarket.exception.InvalidSortException;
+import com.example.bookmarket.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({BookService.class, BookSearchIndex.class, BookAutocomplete.class, BookCache.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "books.page.max-size=4")
+class BookServiceTests {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @BeforeEach
+    void setUp() {
+        for (String title : List.of("Delta", "Alpha", "Charlie", "Bravo", "Alpha", "Echo", "Foxtrot", "Golf", "Hotel", "India")) {
+            bookRepository.save(book(title));
+        }
+    }
+
+    @Test
+    void findPageWalksTheWholeCatalogById() {
+        List<UpdateBookDto> seen = readAll(BookSortField.ID, 3);
+
+        assertThat(seen).hasSize(10);
+        assertThat(seen).extracting(UpdateBookDto::id).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void findPageWalksTheWholeCatalogByTitleWithDuplicates() {
+        List<UpdateBookDto> seen = readAll(BookSortField.TITLE, 2);
+
+        assertThat(seen).hasSize(10);
+        assertThat(seen).extracting(UpdateBookDto::title).isSorted();
+        assertThat(seen).extracting(UpdateBookDto::id).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void findPageCapsPageSize() {
+        CursorPageDto<UpdateBookDto> page = bookService.findPage(null, 1000, BookSortField.ID);
+
+        assertThat(page.items()).hasSize(4);
+        assertThat(page.hasNext()).isTrue();
+    }
+
+    @Test
+    void findPageRejectsForeignCursor() {
+        String idCursor = bookService.findPage(null, 2, BookSortField.ID).nextCursor();
+
+        assertThatThrownBy(() -> bookService.findPage(idCursor, 2, BookSortField.TITLE))
+                .isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> bookService.findPage("not a cursor", 2, BookSortField.ID))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void searchBooksCombinesEveryFilter() {
+        BookEntity cheapNovel = book("Persian Tales");
+        cheapNovel.setAuthor("Hedayat");
+        cheapNovel.setGenre("Novel");
+        cheapNovel.setFinalPrice(BigDecimal.valueOf(5));
+        bookRepository.save(cheapNovel);
+        BookEntity pricyNovel = book("Persian Nights");
+        pricyNovel.setAuthor("Hedayat");
+        pricyNovel.setGenre("Novel");
+        pricyNovel.setFinalPrice(BigDecimal.valueOf(50));
+        bookRepository.save(pricyNovel);
+        BookEntity poetry = book("Persian Poems");
+        poetry.setAuthor("Hafez");
+        poetry.setGenre("Poetry");
+        poetry.setFinalPrice(BigDecimal.valueOf(5));
+        bookRepository.save(poetry);
+
+        PageDto<UpdateBookDto> result = bookService.searchBooks("persian", "hedayat", "Novel",
+                BigDecimal.ONE, BigDecimal.TEN, PageRequest.of(0, 10, Sort.by("title")));
+
+        assertThat(result.items()).extracting(UpdateBookDto::title).containsExactly("Persian Tales");
+        assertThat(result.totalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void searchBooksPagesAndSortsWithoutFilters() {
+        PageDto<UpdateBookDto> first = bookService.searchBooks(null, null, null, null, null,
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "title")));
+
+        assertThat(first.items()).extracting(UpdateBookDto::title).containsExactly("India", "Hotel", "Golf");
+        assertThat(first.totalElements()).isEqualTo(10);
+        assertThat(first.totalPages()).isEqualTo(4);
+    }
+
+    @Test
+    void searchBooksMatchesWildcardCharactersLiterally() {
+        bookRepository.save(book("100% Pure"));
+        bookRepository.save(book("A_B"));
+
+        assertThat(bookService.searchBooks("%", null, null, null, null, PageRequest.of(0, 10)).items())
+                .extracting(UpdateBookDto::title).containsExactly("100% Pure");
+        assertThat(bookService.searchBooks("_", null, null, null, null, PageRequest.of(0, 10)).items())
+                .extracting(UpdateBookDto::title).containsExactly("A_B");
+    }
+
+    @Test
+    void searchBooksRejectsUnknownSortProperties() {
+        assertThatThrownBy(() -> bookService.searchBooks(null, null, null, null, null,
+                PageRequest.of(0, 3, Sort.by("password"))))
+                .isInstanceOf(InvalidSortException.class);
+    }
+
+    private List<UpdateBookDto> readAll(BookSortField sort, int size) {
+        List<UpdateBookDto> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<UpdateBookDto> page = bookService.findPage(cursor, size, sort);
+            assertThat(page.items()).hasSizeLessThanOrEqualTo(size);
+            seen.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+
+    private static BookEntity book(String title) {
+        BookEntity book = new BookEntity();
+        book.setTitle(title);
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.TEN);
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(1);
+        return book;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.CommentDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(CommentService.class)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CommentServiceTests {
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        bookId = saveBook();
+    }
+
+    @Test
+    void commentsOfABookAreReadWithOneStatementRegardlessOfCount() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long[] statements = new long[2];
+        int[] counts = {1, 30};
+
+        for (int round = 0; round < counts.length; round++) {
+            for (int i = round == 0 ? 0 : counts[0]; i < counts[round]; i++) {
+                // هر نظر از کاربر جداگانه تا در روش قبلی هر ردیف کاربر خودش را بارگذاری کند
+                commentService.addComment(new CommentDto(saveUser(), bookId, "comment " + i, 4));
+            }
+            entityManager.flush();
+            entityManager.clear();
+            entityManagerFactory.getCache().evictAll();
+            statistics.clear();
+
+            List<CommentDto> comments = commentService.getCommentsByBookId(bookId);
+
+            assertThat(comments).hasSize(counts[round]).allSatisfy(c -> assertThat(c.bookId()).isEqualTo(bookId));
+            statements[round] = statistics.getPrepareStatementCount();
+        }
+
+        assertThat(statements).containsExactly(1, 1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private Long saveUser() {
+        UserEntity user = new UserEntity();
+        user.setUsername("user-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(UserStatus.INACTIVE);
+        return userRepository.save(user).getId();
+    }
+
+    private Long saveBook() {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(1);
+        return bookRepository.save(book).getId();
+    }
+}
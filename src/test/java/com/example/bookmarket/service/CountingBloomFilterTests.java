@@ -0,0 +1,71 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountingBloomFilterTests {
+
+    @Test
+    void neverForgetsAddedKeys() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("jti:" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("jti:" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("jti:" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other:" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.hashes()).isEqualTo(7);
+    }
+
+    @Test
+    void removeUndoesAddWithoutTouchingOtherKeys() {
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("sub:user" + i);
+        }
+        for (int i = 0; i < 500; i++) {
+            filter.remove("sub:user" + i);
+        }
+
+        for (int i = 500; i < 1_000; i++) {
+            assertThat(filter.mightContain("sub:user" + i)).isTrue();
+        }
+        long stillPresent = IntStream.range(0, 500)
+                .filter(i -> filter.mightContain("sub:user" + i))
+                .count();
+        assertThat(stillPresent).isLessThan(25);
+    }
+
+    @Test
+    void saturatedCountersNeverDropToZero() {
+        CountingBloomFilter filter = new CountingBloomFilter(10, 0.01);
+        for (int i = 0; i < 20; i++) {
+            filter.add("hot");
+        }
+        for (int i = 0; i < 20; i++) {
+            filter.remove("hot");
+        }
+
+        assertThat(filter.mightContain("hot")).isTrue();
+    }
+}
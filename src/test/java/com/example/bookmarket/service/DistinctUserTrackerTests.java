@@ -0,0 +1,91 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.CommentAddedEvent;
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.repository.SketchSnapshotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DistinctUserTrackerTests {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private SketchSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private DistinctUserTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        snapshotRepository.deleteAll();
+        tracker = newTracker();
+        tracker.recover();
+    }
+
+    @Test
+    void rangesCountEachUserOnce() {
+        for (long user = 1; user <= 40; user++) {
+            borrow(tracker, user, TODAY);
+            borrow(tracker, user + 20, TODAY.minusDays(1));
+            borrow(tracker, user + 1_000, TODAY.minusDays(10));
+        }
+        for (long user = 1; user <= 5; user++) {
+            tracker.onCommentAdded(new CommentAddedEvent(1L, user, TODAY.atTime(12, 0)));
+            tracker.onCommentAdded(new CommentAddedEvent(2L, user, TODAY.atTime(13, 0)));
+        }
+
+        assertThat(borrowers(tracker, TODAY, TODAY)).isEqualTo(40);
+        assertThat(borrowers(tracker, TODAY.minusDays(6), TODAY)).isEqualTo(60);
+        assertThat(borrowers(tracker, TODAY.minusDays(29), TODAY)).isEqualTo(100);
+        assertThat(tracker.union(DistinctUserTracker.Activity.COMMENT, TODAY.minusDays(6), TODAY).estimate())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void nodesConvergeOnTheUnionOfTheirUsers() {
+        DistinctUserTracker other = newTracker();
+        other.recover();
+        for (long user = 1; user <= 30; user++) {
+            borrow(tracker, user, TODAY);
+            borrow(other, user + 10, TODAY);
+        }
+
+        tracker.snapshot();
+        other.snapshot();
+        tracker.snapshot();
+
+        assertThat(snapshotRepository.count()).isEqualTo(1);
+        assertThat(borrowers(other, TODAY, TODAY)).isEqualTo(40);
+        DistinctUserTracker restarted = newTracker();
+        restarted.recover();
+        assertThat(borrowers(restarted, TODAY, TODAY)).isEqualTo(40);
+    }
+
+    private DistinctUserTracker newTracker() {
+        return new DistinctUserTracker(snapshotRepository, transactionTemplate, HyperLogLog.DEFAULT_PRECISION, 400,
+                new SimpleMeterRegistry());
+    }
+
+    private static void borrow(DistinctUserTracker target, Long userId, LocalDate day) {
+        target.onLoanActivity(LoanActivityEvent.checkout(1L, userId, "Test", day.atTime(10, 0)));
+    }
+
+    private static long borrowers(DistinctUserTracker target, LocalDate from, LocalDate to) {
+        return target.union(DistinctUserTracker.Activity.BORROW, from, to).estimate();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTests {
+
+    @Test
+    void estimatesLargeCardinalitiesWithinTheStandardError() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long user = 1; user <= 100_000; user++) {
+            sketch.offer(user);
+            sketch.offer(user);
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(100_000, within(100_000 * 3 * sketch.standardError()));
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long user = 1; user <= 50; user++) {
+            sketch.offer(user);
+        }
+
+        assertThat(new HyperLogLog().estimate()).isZero();
+        assertThat(sketch.estimate()).isBetween(49L, 51L);
+    }
+
+    @Test
+    void mergeCountsOverlappingUsersOnce() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (long user = 0; user < 30_000; user++) {
+            monday.offer(user);
+            tuesday.offer(user + 10_000);
+        }
+
+        HyperLogLog week = HyperLogLog.union(HyperLogLog.DEFAULT_PRECISION, List.of(monday, tuesday, monday));
+
+        assertThat((double) week.estimate()).isCloseTo(40_000, within(40_000 * 3 * week.standardError()));
+        tuesday.merge(monday);
+        assertThat(tuesday.estimate()).isEqualTo(week.estimate());
+    }
+
+    @Test
+    void survivesSerializationInAFewKilobytes() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long user = 0; user < 1_000; user++) {
+            sketch.offer(user);
+        }
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertThat(bytes).hasSize(4_097);
+        assertThat(restored.estimate()).isEqualTo(sketch.estimate());
+        assertThat(restored.precision()).isEqualTo(HyperLogLog.DEFAULT_PRECISION);
+    }
+}
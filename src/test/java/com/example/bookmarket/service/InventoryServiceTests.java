@@ -0,0 +1,236 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.exception.BookAlreadyReturnedException;
+import com.example.bookmarket.exception.LoanNotFoundException;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({InventoryService.class, LoanService.class, SessionRegistry.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryServiceTests {
+
+    private static final int THREADS = 64;
+    private static final int ATTEMPTS_PER_THREAD = 20;
+    private static final int STOCK = 500;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+        BookEntity book = new BookEntity();
+        book.setTitle("Concurrent");
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.TEN);
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(STOCK);
+        bookId = bookRepository.save(book).getId();
+    }
+
+    @Test
+    void reserveNeverOversellsUnderContention() throws Exception {
+        AtomicInteger reserved = new AtomicInteger();
+
+        runConcurrently(() -> {
+            if (inventoryService.reserve(bookId)) {
+                reserved.incrementAndGet();
+            }
+        });
+
+        assertThat(reserved.get()).isEqualTo(STOCK);
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isZero();
+    }
+
+    @Test
+    void releaseCountsEveryReturn() throws Exception {
+        runConcurrently(() -> inventoryService.release(bookId));
+
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks())
+                .isEqualTo(STOCK + THREADS * ATTEMPTS_PER_THREAD);
+    }
+
+    @Test
+    void reserveFailsForMissingBook() {
+        assertThat(inventoryService.reserve(-1L)).isFalse();
+        assertThat(inventoryService.release(-1L)).isFalse();
+    }
+
+    @Test
+    void readModifyWriteLosesAnUpdateThatTheConditionalUpdateKeeps() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CyclicBarrier bothRead = new CyclicBarrier(2);
+        AtomicInteger legacyReserved = new AtomicInteger();
+
+        // مسیر قبلی: هر دو تراکنش موجودی را می خوانند و بعد هر دو همان مقدار منهای یک را می نویسند
+        runTwice(() -> tx.executeWithoutResult(status -> {
+            BookEntity book = bookRepository.findById(bookId).orElseThrow();
+            Integer stock = book.getNumberOfBooks();
+            await(bothRead);
+            book.setNumberOfBooks(stock - 1);
+            bookRepository.save(book);
+            legacyReserved.incrementAndGet();
+        }));
+
+        assertThat(legacyReserved.get()).isEqualTo(2);
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isEqualTo(STOCK - 1);
+
+        setUp();
+        runTwice(() -> tx.executeWithoutResult(status -> {
+            bookRepository.findById(bookId).orElseThrow();
+            await(bothRead);
+            assertThat(inventoryService.reserve(bookId)).isTrue();
+        }));
+
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isEqualTo(STOCK - 2);
+    }
+
+    @Test
+    void concurrentReturnsReleaseTheCopyOnce() throws Exception {
+        Long loanId = saveLoan();
+        AtomicInteger returned = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                loanService.returnLoan(loanId);
+                returned.incrementAndGet();
+            } catch (BookAlreadyReturnedException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertThat(returned.get()).isEqualTo(1);
+        assertThat(rejected.get()).isEqualTo(THREADS * ATTEMPTS_PER_THREAD - 1);
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isEqualTo(STOCK + 1);
+        assertThat(loanRepository.findById(loanId).orElseThrow().getStatus()).isEqualTo(LoanStatus.RETURNED);
+    }
+
+    @Test
+    void returnRacingDeleteReleasesTheCopyOnce() throws Exception {
+        Long loanId = saveLoan();
+        AtomicInteger turn = new AtomicInteger();
+
+        runConcurrently(() -> {
+            try {
+                if (turn.getAndIncrement() % 2 == 0) {
+                    loanService.returnLoan(loanId);
+                } else {
+                    loanService.deleteLoan(loanId);
+                }
+            } catch (BookAlreadyReturnedException | LoanNotFoundException e) {
+                // فقط یکی از برگشت ها و یکی از حذف ها موفق می شود
+            }
+        });
+
+        assertThat(loanRepository.existsById(loanId)).isFalse();
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isEqualTo(STOCK + 1);
+    }
+
+    private Long saveLoan() {
+        UserEntity user = new UserEntity();
+        user.setUsername("borrower-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        LoanEntity loan = new LoanEntity();
+        loan.setUser(userRepository.save(user));
+        loan.setBook(bookRepository.getReferenceById(bookId));
+        loan.setPrice(BigDecimal.TEN);
+        loan.setFinalPrice(BigDecimal.TEN);
+        loan.setDueDate(LocalDate.now().plusDays(14));
+        return loanRepository.save(loan).getId();
+    }
+
+    private static void runTwice(Runnable attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(attempt);
+            Future<?> second = executor.submit(attempt);
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void runConcurrently(Runnable attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+                    attempt.run();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+        // خطای هر کارگر اینجا دوباره پرتاب می شود
+        for (Future<Void> worker : workers) {
+            worker.get();
+        }
+    }
+}
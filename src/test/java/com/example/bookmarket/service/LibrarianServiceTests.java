@@ -0,0 +1,102 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.config.CalibratedPasswordEncoder;
+import com.example.bookmarket.config.JwtKeyRing;
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
+import com.example.bookmarket.dto.TokenDto;
+import com.example.bookmarket.entity.LibrarianEntity;
+import com.example.bookmarket.exception.AccountAccessDeniedException;
+import com.example.bookmarket.exception.InvalidTokenException;
+import com.example.bookmarket.repository.LibrarianRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({LibrarianService.class, SessionRegistry.class, TokenRevocationService.class, JwtUtil.class, JwtKeyRing.class,
+        PasswordHasher.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"jwt.secret=test-secret-that-is-long-enough-for-hs256", "jwt.keys.in-memory=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LibrarianServiceTests {
+
+    @TestConfiguration
+    static class Encoder {
+        @Bean
+        CalibratedPasswordEncoder passwordEncoder() {
+            return new CalibratedPasswordEncoder(5, 0, 0);
+        }
+    }
+
+    @Autowired
+    private LibrarianService librarianService;
+
+    @Autowired
+    private LibrarianRepository librarianRepository;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        librarianRepository.deleteAll();
+    }
+
+    @Test
+    void loggingOutAnotherLibrarianRevokesTheirTokensNotTheCallers() {
+        Long targetId = saveLibrarian("target");
+        saveLibrarian("admin");
+        TokenDto target = librarianService.login("target", "secret");
+        VerifiedToken admin = jwtUtil.verify(librarianService.login("admin", "secret").accessToken());
+
+        librarianService.logout(targetId, admin);
+
+        assertThat(tokenRevocationService.isRevoked(admin)).isFalse();
+        assertThat(tokenRevocationService.isRevoked(jwtUtil.verify(target.accessToken()))).isTrue();
+        assertThatThrownBy(() -> librarianService.refreshToken(target.refreshToken()))
+                .isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void loggingOutOneselfRevokesOnlyThatToken() {
+        Long id = saveLibrarian("self");
+        VerifiedToken accessToken = jwtUtil.verify(librarianService.login("self", "secret").accessToken());
+
+        librarianService.logout(id, accessToken);
+
+        assertThat(tokenRevocationService.isRevoked(accessToken)).isTrue();
+    }
+
+    @Test
+    void onlyTheOwnerOrAnAdminMayLogOut() {
+        Long id = saveLibrarian("librarian");
+        librarianService.login("librarian", "secret");
+        VerifiedToken user = jwtUtil.verify(jwtUtil.generateToken("someone", Set.of("USER")));
+
+        assertThatThrownBy(() -> librarianService.logout(id, user)).isInstanceOf(AccountAccessDeniedException.class);
+        assertThatThrownBy(() -> librarianService.logout(id, null)).isInstanceOf(AccountAccessDeniedException.class);
+    }
+
+    private Long saveLibrarian(String username) {
+        LibrarianEntity librarian = new LibrarianEntity();
+        librarian.setUsername(username);
+        librarian.setPassword(new CalibratedPasswordEncoder(5, 0, 0).encode("secret"));
+        return librarianRepository.save(librarian).getId();
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.LoanActivityDto;
+import com.example.bookmarket.dto.LoanDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.RevenuePeriod;
+import com.example.bookmarket.enums.RollupGranularity;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.exception.InvalidDateRangeException;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.LoanActivityRollupRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({LoanActivityRollup.class, StatisticsService.class, StatisticsRegistry.class, MostBorrowedTracker.class,
+        DistinctUserTracker.class, RevenueAnalytics.class, LoanService.class, InventoryService.class,
+        SessionRegistry.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanActivityRollupTests {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @Autowired
+    private LoanActivityRollup rollup;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanActivityRollupRepository rollupRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+    private Long fantasyId;
+    private Long historyId;
+
+    @BeforeEach
+    void setUp() {
+        // رویدادهای تست های دیگر همین context هنوز در حافظه اند
+        rollup.flush();
+        loanRepository.deleteAll();
+        rollupRepository.deleteAll();
+        userId = saveUser();
+        fantasyId = saveBook("Fantasy");
+        historyId = saveBook("History");
+    }
+
+    @Test
+    void backfillBuildsHourlyAndDailyBucketsFromHistory() {
+        saveLoan(fantasyId, DAY.atTime(10, 15), DAY.plusDays(14), null);
+        saveLoan(fantasyId, DAY.atTime(10, 40), DAY.plusDays(14), DAY.plusDays(2).atTime(9, 0));
+        saveLoan(fantasyId, DAY.atTime(14, 5), DAY.plusDays(14), DAY.plusDays(2).atTime(9, 30));
+        // سررسید 3 مارس، برگشت 5 مارس: دیرکرد در 4 مارس
+        saveLoan(historyId, DAY.plusDays(1).atTime(9, 0), DAY.plusDays(2), DAY.plusDays(4).atTime(11, 0));
+
+        rollup.backfill();
+
+        List<LoanActivityDto> hours = statisticsService.getLoanActivity(RollupGranularity.HOUR, DAY, DAY, "Fantasy");
+        assertThat(hours).containsExactly(
+                new LoanActivityDto(DAY.atTime(10, 0), "Fantasy", 2, 0, 0),
+                new LoanActivityDto(DAY.atTime(14, 0), "Fantasy", 1, 0, 0));
+
+        List<LoanActivityDto> days = statisticsService.getLoanActivity(RollupGranularity.DAY, DAY, DAY.plusDays(4), null);
+        assertThat(days).containsExactly(
+                new LoanActivityDto(DAY.atStartOfDay(), "Fantasy", 3, 0, 0),
+                new LoanActivityDto(DAY.plusDays(1).atStartOfDay(), "History", 1, 0, 0),
+                new LoanActivityDto(DAY.plusDays(2).atStartOfDay(), "Fantasy", 0, 2, 0),
+                new LoanActivityDto(DAY.plusDays(3).atStartOfDay(), "History", 0, 0, 1),
+                new LoanActivityDto(DAY.plusDays(4).atStartOfDay(), "History", 0, 1, 0));
+
+        // امانت فعال با سررسید 15 مارس از 16 مارس دیرکرد دارد
+        assertThat(statisticsService.getLoanActivity(RollupGranularity.DAY, DAY.plusDays(15), DAY.plusDays(15), null))
+                .containsExactly(new LoanActivityDto(DAY.plusDays(15).atStartOfDay(), "Fantasy", 0, 0, 1));
+    }
+
+    @Test
+    void liveActivityIsReadFromTheRollupsOnly() {
+        LocalDate today = LocalDate.now();
+        loanService.createLoan(new LoanDto(userId, fantasyId, today.plusDays(7)));
+        loanService.createLoan(new LoanDto(userId, historyId, today.plusDays(7)));
+        loanService.returnLoan(loanRepository.findAll().get(0).getId());
+        sessionRegistry.flush();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<LoanActivityDto> beforeFlush = statisticsService.getLoanActivity(RollupGranularity.DAY, today, today, null);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        rollup.flush();
+        List<LoanActivityDto> afterFlush = statisticsService.getLoanActivity(RollupGranularity.DAY, today, today, null);
+
+        assertThat(beforeFlush).containsExactly(
+                new LoanActivityDto(today.atStartOfDay(), "Fantasy", 1, 1, 0),
+                new LoanActivityDto(today.atStartOfDay(), "History", 1, 0, 0));
+        assertThat(afterFlush).isEqualTo(beforeFlush);
+        assertThat(rollupRepository.count()).isEqualTo(4);
+    }
+
+    @Test
+    void overdueRecomputationIsIdempotent() {
+        LocalDate today = LocalDate.now();
+        saveLoan(fantasyId, today.minusDays(10).atTime(12, 0), today.minusDays(3), null);
+        saveLoan(fantasyId, today.minusDays(10).atTime(12, 0), today.minusDays(3), today.minusDays(1).atTime(8, 0));
+        saveLoan(historyId, today.minusDays(10).atTime(12, 0), today.minusDays(3), today.minusDays(3).atTime(8, 0));
+
+        rollup.recomputeOverdues();
+        rollup.recomputeOverdues();
+
+        assertThat(statisticsService.getLoanActivity(RollupGranularity.DAY, today.minusDays(2), today.minusDays(2), null))
+                .containsExactly(new LoanActivityDto(today.minusDays(2).atStartOfDay(), "Fantasy", 0, 0, 2));
+        assertThat(statisticsService.getLoanActivity(RollupGranularity.HOUR, today.minusDays(2), today.minusDays(2), null))
+                .extracting(LoanActivityDto::overdues).containsExactly(2L);
+    }
+
+    @Test
+    void hourlyRangeIsCapped() {
+        assertThatThrownBy(() -> statisticsService.getLoanActivity(RollupGranularity.HOUR, DAY, DAY.plusDays(31), null))
+                .isInstanceOf(InvalidDateRangeException.class);
+        assertThat(statisticsService.getLoanActivity(RollupGranularity.DAY, DAY, DAY.plusDays(31), null)).isEmpty();
+    }
+
+    @Test
+    void dailyRevenueRangeIsCapped() {
+        assertThatThrownBy(() -> statisticsService.getRevenue(RevenuePeriod.DAY, DAY, DAY.plusDays(366), null))
+                .isInstanceOf(InvalidDateRangeException.class);
+        assertThat(statisticsService.getRevenue(RevenuePeriod.WEEK, DAY, DAY.plusDays(366), null)).isEmpty();
+    }
+
+    private Long saveUser() {
+        UserEntity user = new UserEntity();
+        user.setUsername("user-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        Long id = userRepository.save(user).getId();
+        sessionRegistry.open(AccountType.USER, id, user.getUsername(), Instant.now().plusSeconds(600));
+        return id;
+    }
+
+    private Long saveBook(String genre) {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre(genre);
+        book.setVolume(1);
+        book.setNumberOfBooks(10);
+        return bookRepository.save(book).getId();
+    }
+
+    // loan_date در PrePersist مقدار می گیرد، پس تاریخچه بعد از ذخیره نوشته می شود
+    private void saveLoan(Long bookId, LocalDateTime loanDate, LocalDate dueDate, LocalDateTime returnedAt) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LoanEntity loan = new LoanEntity();
+            loan.setUser(userRepository.getReferenceById(userId));
+            loan.setBook(bookRepository.getReferenceById(bookId));
+            loan.setPrice(BigDecimal.TEN);
+            loan.setFinalPrice(BigDecimal.TEN);
+            loan.setDueDate(dueDate);
+            loan.setStatus(returnedAt == null ? LoanStatus.ACTIVE : LoanStatus.RETURNED);
+            entityManager.persist(loan);
+            entityManager.flush();
+            entityManager.createQuery("UPDATE LoanEntity l SET l.loanDate = :loanDate, l.returnedAt = :returnedAt " +
+                            "WHERE l.id = :id")
+                    .setParameter("loanDate", loanDate)
+                    .setParameter("returnedAt", returnedAt)
+                    .setParameter("id", loan.getId())
+                    .executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.CursorPageDto;
+import com.example.bookmarket.dto.LoanDto;
+import com.example.bookmarket.dto.LoanSearchCriteria;
+import com.example.bookmarket.dto.UpdateLoanDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.exception.BookNotFoundException;
+import com.example.bookmarket.exception.BookOutOfStockException;
+import com.example.bookmarket.exception.InvalidCursorException;
+import com.example.bookmarket.exception.LimitExceededException;
+import com.example.bookmarket.exception.UserInactiveException;
+import com.example.bookmarket.exception.UserNotFoundException;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({LoanService.class, InventoryService.class, SessionRegistry.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class LoanServiceTests {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long userId;
+    private Long bookId;
+
+    @BeforeEach
+    void setUp() {
+        userId = saveUser(UserStatus.ACTIVE);
+        bookId = saveBook(3);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void createLoanUsesOneQueryOneUpdateAndOneInsert() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        LoanDto loan = loanService.createLoan(new LoanDto(userId, bookId, LocalDate.now().plusDays(7)));
+        entityManager.flush();
+
+        assertThat(loan.userId()).isEqualTo(userId);
+        assertThat(loan.bookId()).isEqualTo(bookId);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        entityManager.clear();
+        assertThat(bookRepository.findById(bookId).orElseThrow().getNumberOfBooks()).isEqualTo(2);
+    }
+
+    @Test
+    void createLoanRejectsInvalidRequests() {
+        LocalDate dueDate = LocalDate.now().plusDays(7);
+        Long inactiveUserId = saveUser(UserStatus.INACTIVE);
+        Long emptyBookId = saveBook(0);
+
+        assertThatThrownBy(() -> loanService.createLoan(new LoanDto(-1L, bookId, dueDate)))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> loanService.createLoan(new LoanDto(userId, -1L, dueDate)))
+                .isInstanceOf(BookNotFoundException.class);
+        assertThatThrownBy(() -> loanService.createLoan(new LoanDto(inactiveUserId, bookId, dueDate)))
+                .isInstanceOf(UserInactiveException.class);
+        assertThatThrownBy(() -> loanService.createLoan(new LoanDto(userId, emptyBookId, dueDate)))
+                .isInstanceOf(BookOutOfStockException.class);
+    }
+
+    @Test
+    void createLoanEnforcesActiveLoanLimit() {
+        LocalDate dueDate = LocalDate.now().plusDays(7);
+        Long bigStockBookId = saveBook(10);
+        for (int i = 0; i < 5; i++) {
+            loanService.createLoan(new LoanDto(userId, bigStockBookId, dueDate));
+        }
+
+        assertThatThrownBy(() -> loanService.createLoan(new LoanDto(userId, bigStockBookId, dueDate)))
+                .isInstanceOf(LimitExceededException.class);
+    }
+
+    @Test
+    void searchCombinesFiltersAndPagesNewestFirst() {
+        Long otherUserId = saveUser(UserStatus.ACTIVE);
+        Long otherBookId = saveBook(3);
+        LocalDate today = LocalDate.now();
+        Long[] matching = new Long[5];
+        for (int i = 0; i < 5; i++) {
+            matching[i] = saveLoan(userId, bookId, LoanStatus.ACTIVE, today.plusDays(i));
+        }
+        saveLoan(userId, bookId, LoanStatus.RETURNED, today);
+        saveLoan(userId, otherBookId, LoanStatus.ACTIVE, today);
+        saveLoan(otherUserId, bookId, LoanStatus.ACTIVE, today);
+        saveLoan(userId, bookId, LoanStatus.ACTIVE, today.plusDays(30));
+        entityManager.flush();
+        entityManager.clear();
+
+        LoanSearchCriteria criteria = new LoanSearchCriteria(userId, bookId, LoanStatus.ACTIVE,
+                today.minusDays(1), today, today, today.plusDays(10));
+        CursorPageDto<UpdateLoanDto> first = loanService.searchLoans(criteria, null, 3);
+        CursorPageDto<UpdateLoanDto> second = loanService.searchLoans(criteria, first.nextCursor(), 3);
+
+        assertThat(first.items()).extracting(UpdateLoanDto::id).containsExactly(matching[4], matching[3], matching[2]);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.items()).extracting(UpdateLoanDto::id).containsExactly(matching[1], matching[0]);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void searchReportsUnknownUserOrBookOnlyWhenNothingMatches() {
+        LoanSearchCriteria unknownUser = new LoanSearchCriteria(-1L, null, null, null, null, null, null);
+        LoanSearchCriteria noLoansYet = new LoanSearchCriteria(userId, bookId, null, null, null, null, null);
+
+        assertThatThrownBy(() -> loanService.searchLoans(unknownUser, null, null))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThat(loanService.searchLoans(noLoansYet, null, null).items()).isEmpty();
+        assertThatThrownBy(() -> loanService.searchLoans(noLoansYet, "not-a-cursor", null))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void loanListingsIssueOneStatementRegardlessOfRowCount() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        LoanSearchCriteria byUser = new LoanSearchCriteria(userId, null, LoanStatus.ACTIVE, null, null, null, null);
+        long[] statements = new long[2];
+        int[] rows = {1, 25};
+
+        for (int round = 0; round < rows.length; round++) {
+            while (loanRepository.count() < rows[round]) {
+                saveLoan(saveUser(UserStatus.INACTIVE), saveBook(1), LoanStatus.ACTIVE, LocalDate.now());
+                saveLoan(userId, saveBook(1), LoanStatus.ACTIVE, LocalDate.now());
+            }
+            // وضعیت نشست ها با تاخیر نوشته می شود؛ پیش از شمارش خالی می شود تا در آن حساب نشود
+            sessionRegistry.flush();
+            entityManager.flush();
+            entityManager.clear();
+            entityManagerFactory.getCache().evictAll();
+            statistics.clear();
+
+            assertThat(loanService.getAllLoans()).hasSizeGreaterThanOrEqualTo(rows[round]);
+            assertThat(loanService.searchLoans(byUser, null, 100).items()).isNotEmpty();
+            statements[round] = statistics.getPrepareStatementCount();
+        }
+
+        assertThat(statements[0]).isEqualTo(2);
+        assertThat(statements[1]).isEqualTo(statements[0]);
+    }
+
+    private Long saveLoan(Long loanUserId, Long loanBookId, LoanStatus status, LocalDate dueDate) {
+        LoanEntity loan = new LoanEntity();
+        loan.setUser(userRepository.getReferenceById(loanUserId));
+        loan.setBook(bookRepository.getReferenceById(loanBookId));
+        loan.setPrice(BigDecimal.TEN);
+        loan.setFinalPrice(BigDecimal.TEN);
+        loan.setDueDate(dueDate);
+        loan.setStatus(status);
+        return loanRepository.save(loan).getId();
+    }
+
+    private Long saveUser(UserStatus status) {
+        UserEntity user = new UserEntity();
+        user.setUsername("user-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(status);
+        Long id = userRepository.save(user).getId();
+        if (status == UserStatus.ACTIVE) {
+            sessionRegistry.open(AccountType.USER, id, user.getUsername(), Instant.now().plusSeconds(600));
+        }
+        return id;
+    }
+
+    private Long saveBook(int stock) {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(stock);
+        return bookRepository.save(book).getId();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleTests {
+
+    @Test
+    void limitsAttemptsPerUsernameFromOneAddress() {
+        LoginThrottle throttle = new LoginThrottle(3, Duration.ofSeconds(10), 100, Duration.ofSeconds(1), 100, Duration.ofSeconds(1));
+
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("ali", "10.0.0.1");
+        }
+
+        assertThatThrownBy(() -> throttle.acquire("ali", "10.0.0.1"))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(e -> assertThat(((TooManyRequestsException) e).getRetryAfterSeconds()).isBetween(1L, 10L));
+        assertThatCode(() -> throttle.acquire("reza", "10.0.0.1")).doesNotThrowAnyException();
+        // حمله از یک آدرس حساب را برای بقیه قفل نمی کند
+        assertThatCode(() -> throttle.acquire("ali", "10.0.0.2")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectedAttemptsSpendNoTokens() {
+        LoginThrottle throttle = new LoginThrottle(1, Duration.ofSeconds(10), 100, Duration.ofSeconds(1), 3, Duration.ofSeconds(10));
+
+        throttle.acquire("ali", "10.0.0.1");
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> throttle.acquire("ali", "10.0.0.1")).isInstanceOf(TooManyRequestsException.class);
+        }
+
+        assertThatCode(() -> throttle.acquire("reza", "10.0.0.1")).doesNotThrowAnyException();
+        assertThatCode(() -> throttle.acquire("sara", "10.0.0.1")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void limitsAttemptsPerUsernameAcrossAddresses() {
+        LoginThrottle throttle = new LoginThrottle(2, Duration.ofSeconds(10), 5, Duration.ofMinutes(1), 100,
+                Duration.ofSeconds(1));
+
+        for (int address = 1; address <= 5; address++) {
+            throttle.acquire("ali", "10.0.0." + address);
+        }
+
+        assertThatThrownBy(() -> throttle.acquire("ali", "10.0.0.6"))
+                .isInstanceOf(TooManyRequestsException.class)
+                .satisfies(e -> assertThat(((TooManyRequestsException) e).getRetryAfterSeconds()).isBetween(1L, 60L));
+        assertThatCode(() -> throttle.acquire("reza", "10.0.0.6")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void limitsAttemptsPerClientIp() {
+        LoginThrottle throttle = new LoginThrottle(100, Duration.ofSeconds(1), 100, Duration.ofSeconds(1), 2, Duration.ofSeconds(10));
+
+        throttle.acquire("a", "10.0.0.1");
+        throttle.acquire("b", "10.0.0.1");
+
+        assertThatThrownBy(() -> throttle.acquire("c", "10.0.0.1")).isInstanceOf(TooManyRequestsException.class);
+        assertThatCode(() -> throttle.acquire("c", "10.0.0.2")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        LoginThrottle throttle = new LoginThrottle(1, Duration.ofMillis(50), 100, Duration.ofMillis(1), 100, Duration.ofMillis(1));
+
+        throttle.acquire("ali", "10.0.0.1");
+        assertThatThrownBy(() -> throttle.acquire("ali", "10.0.0.1")).isInstanceOf(TooManyRequestsException.class);
+
+        Thread.sleep(80);
+        assertThatCode(() -> throttle.acquire("ali", "10.0.0.1")).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.event.LoanActivityEvent;
+import com.example.bookmarket.repository.SketchSnapshotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MostBorrowedTrackerTests {
+
+    @Autowired
+    private SketchSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private MostBorrowedTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        snapshotRepository.deleteAll();
+        tracker = newTracker();
+        tracker.recover();
+    }
+
+    @Test
+    void windowOnlyCountsItsOwnDays() {
+        LocalDateTime now = LocalDateTime.now();
+        borrow(1L, 5, now);
+        borrow(2L, 3, now.minusDays(2));
+        borrow(3L, 20, now.minusDays(10));
+
+        MostBorrowedTracker.Ranking week = tracker.top(7, 2);
+        MostBorrowedTracker.Ranking month = tracker.top(30, 2);
+
+        assertThat(week.top()).extracting(SpaceSaving.Estimate::item).containsExactly(1L, 2L);
+        assertThat(week.top()).extracting(SpaceSaving.Estimate::count).containsExactly(5L, 3L);
+        assertThat(week.top()).allMatch(estimate -> estimate.lowerBound() >= week.threshold());
+        assertThat(month.top()).extracting(SpaceSaving.Estimate::item).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void snapshotsSurviveARestart() {
+        LocalDateTime now = LocalDateTime.now();
+        borrow(7L, 4, now);
+        borrow(8L, 2, now.minusDays(1));
+        tracker.snapshot();
+
+        MostBorrowedTracker restarted = newTracker();
+        borrowed(restarted, 8L, now);
+        restarted.recover();
+
+        assertThat(restarted.top(7, 5).top()).extracting(SpaceSaving.Estimate::item).containsExactly(7L, 8L);
+        assertThat(restarted.top(7, 5).top()).extracting(SpaceSaving.Estimate::count).containsExactly(4L, 3L);
+        assertThat(snapshotRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void snapshotsOfTwoNodesAddUp() {
+        LocalDateTime now = LocalDateTime.now();
+        MostBorrowedTracker other = newTracker();
+        other.recover();
+        borrow(7L, 3, now);
+        borrowed(other, 7L, now);
+        borrowed(other, 7L, now);
+
+        tracker.snapshot();
+        other.snapshot();
+        tracker.snapshot();
+        borrowed(other, 7L, now);
+        other.snapshot();
+
+        assertThat(snapshotRepository.count()).isEqualTo(1);
+        assertThat(other.top(1, 1).top()).extracting(SpaceSaving.Estimate::count).containsExactly(6L);
+        MostBorrowedTracker restarted = newTracker();
+        restarted.recover();
+        assertThat(restarted.top(1, 1).top()).extracting(SpaceSaving.Estimate::count).containsExactly(6L);
+    }
+
+    private MostBorrowedTracker newTracker() {
+        return new MostBorrowedTracker(snapshotRepository, transactionTemplate, 1000, 31, new SimpleMeterRegistry());
+    }
+
+    private void borrow(Long bookId, int times, LocalDateTime at) {
+        for (int i = 0; i < times; i++) {
+            borrowed(tracker, bookId, at);
+        }
+    }
+
+    private static void borrowed(MostBorrowedTracker target, Long bookId, LocalDateTime at) {
+        target.onLoanActivity(LoanActivityEvent.checkout(bookId, 1L, "Test", at));
+    }
+}
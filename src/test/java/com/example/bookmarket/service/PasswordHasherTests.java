@@ -0,0 +1,93 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (hasher != null) {
+            hasher.shutdown();
+        }
+    }
+
+    @Test
+    void encodesAndMatchesOnThePool() {
+        hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5), Duration.ofSeconds(2),
+                new SimpleMeterRegistry());
+
+        String hash = hasher.encode("secret");
+
+        assertThat(hasher.matches("secret", hash)).isTrue();
+        assertThat(hasher.matches("wrong", hash)).isFalse();
+    }
+
+    @Test
+    void rejectsImmediatelyWhenPoolAndQueueAreFull() throws InterruptedException {
+        hasher = new PasswordHasher(blockingEncoder(), 1, 1, Duration.ofSeconds(30), Duration.ofSeconds(3),
+                new SimpleMeterRegistry());
+
+        // یک کار در حال اجرا و یک کار در صف
+        callers.submit(() -> hasher.encode("a"));
+        callers.submit(() -> hasher.encode("b"));
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> hasher.encode("c"))
+                .isInstanceOf(ServiceBusyException.class)
+                .satisfies(e -> assertThat(((ServiceBusyException) e).getRetryAfterSeconds()).isEqualTo(3));
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(100));
+    }
+
+    @Test
+    void givesUpAfterTimeout() {
+        hasher = new PasswordHasher(blockingEncoder(), 1, 1, Duration.ofMillis(100), Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> hasher.matches("a", "b")).isInstanceOf(ServiceBusyException.class);
+    }
+
+    private PasswordEncoder blockingEncoder() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                await();
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                await();
+                return rawPassword.toString().equals(encodedPassword);
+            }
+
+            private void await() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrefixCompleterTests {
+
+    @Test
+    void ranksByWeightThenAlphabetically() {
+        PrefixCompleter completer = new PrefixCompleter();
+        completer.rebuild(List.of("Sadegh Hedayat", "Sadegh Chubak", "Sadegh Hedayat", "Saadi", "Hafez"));
+
+        assertThat(completer.complete("sa", 10)).containsExactly("Sadegh Hedayat", "Saadi", "Sadegh Chubak");
+        assertThat(completer.complete("sadegh c", 10)).containsExactly("Sadegh Chubak");
+        assertThat(completer.complete("sa", 1)).containsExactly("Sadegh Hedayat");
+        assertThat(completer.complete("x", 10)).isEmpty();
+    }
+
+    @Test
+    void normalizesPersianVariants() {
+        PrefixCompleter completer = new PrefixCompleter();
+        completer.rebuild(List.of("کلیدر"));
+
+        assertThat(completer.complete("كلي", 10)).containsExactly("کلیدر");
+    }
+
+    @Test
+    void deltaChangesAreVisibleBeforeAndAfterCompaction() {
+        PrefixCompleter completer = new PrefixCompleter();
+        completer.rebuild(List.of("Alpha", "Alphabet"));
+
+        completer.remove("Alpha");
+        completer.add("Alpine");
+        completer.add("Alphabet");
+        assertThat(completer.complete("al", 10)).containsExactly("Alphabet", "Alpine");
+
+        for (int i = 0; i < PrefixCompleter.COMPACTION_THRESHOLD + 10; i++) {
+            completer.add("Book " + i);
+        }
+        assertThat(completer.complete("al", 10)).containsExactly("Alphabet", "Alpine");
+        assertThat(completer.complete("book 100", 20)).hasSize(11);
+    }
+
+    @Test
+    void completesOver100kTitles() {
+        Random random = new Random(7);
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            titles.add(randomWord(random) + " " + randomWord(random) + " " + randomWord(random));
+        }
+        PrefixCompleter completer = new PrefixCompleter();
+
+        completer.rebuild(titles);
+
+        assertThat(completer.complete("a", 10)).hasSize(10).allMatch(title -> title.startsWith("a"));
+        assertThat(completer.complete(titles.get(0), 10)).contains(titles.get(0));
+        assertThat(completer.memoryBytes()).isPositive();
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.config.JwtKeyRing;
+import com.example.bookmarket.config.JwtRequestFilter;
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.RouteTable;
+import com.example.bookmarket.config.SecurityConfig;
+import com.example.bookmarket.dto.UpdateUserDto;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({PrincipalCache.class, CustomUserDetailsService.class, UserService.class, SessionRegistry.class,
+        TokenRevocationService.class, JwtUtil.class, JwtKeyRing.class, JwtRequestFilter.class, PasswordHasher.class,
+        BCryptPasswordEncoder.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"jwt.secret=test-secret-that-is-long-enough-for-hs256", "jwt.keys.in-memory=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PrincipalCacheTests {
+
+    @TestConfiguration
+    static class Routes {
+        @Bean
+        RouteTable routeTable() {
+            return SecurityConfig.routeTable();
+        }
+    }
+
+    @Autowired
+    private JwtRequestFilter jwtRequestFilter;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long userId;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // ناحیه های کش سطح دوم بین context های تست مشترک اند ولی هر context پایگاه داده خودش را دارد
+        entityManagerFactory.getCache().evictAll();
+        userRepository.deleteAll();
+        principalCache.invalidate("reader");
+
+        UserEntity user = new UserEntity();
+        user.setUsername("reader");
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        userId = userRepository.save(user).getId();
+        token = jwtUtil.generateToken("reader", Set.of("USER"));
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatedRequestsAfterTheFirstRunNoQueries() throws Exception {
+        filter(token);
+        SecurityContextHolder.clearContext();
+        statistics.clear();
+
+        MockHttpServletResponse response = filter(token);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(authentication.getName()).isEqualTo("reader");
+        assertThat(authentication.getAuthorities()).extracting("authority").containsExactly("ROLE_USER");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void cachedPrincipalsCarryNoPassword() {
+        assertThat(principalCache.get("reader", userDetailsService::loadUserByUsername).getPassword()).isEmpty();
+    }
+
+    @Test
+    void updateAndLogoutInvalidateAfterCommit() {
+        AtomicInteger loads = new AtomicInteger();
+        principalCache.get("reader", countingLoader(loads));
+        principalCache.get("reader", countingLoader(loads));
+        assertThat(loads).hasValue(1);
+
+        userService.update(new UpdateUserDto(userId, null, null, "new nickname"));
+        principalCache.get("reader", countingLoader(loads));
+        assertThat(loads).hasValue(2);
+
+        sessionRegistry.open(AccountType.USER, userId, "reader", Instant.now().plusSeconds(600));
+        userService.logout(userId, jwtUtil.verify(token));
+        principalCache.get("reader", countingLoader(loads));
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void deletedUserIsRejectedOnTheNextRequest() throws Exception {
+        filter(token);
+        SecurityContextHolder.clearContext();
+
+        userService.delete(userId);
+
+        assertThat(filter(token).getStatus()).isEqualTo(401);
+    }
+
+    private Function<String, UserDetails> countingLoader(AtomicInteger loads) {
+        return username -> {
+            loads.incrementAndGet();
+            return userDetailsService.loadUserByUsername(username);
+        };
+    }
+
+    private MockHttpServletResponse filter(String jwt) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books/1");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwtRequestFilter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.RevenueDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.RevenuePeriod;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({RevenueAnalytics.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RevenueAnalyticsTests {
+
+    private static final LocalDate JANUARY = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private RevenueAnalytics revenueAnalytics;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+    private Long fantasyId;
+    private Long historyId;
+
+    @BeforeEach
+    void setUp() {
+        loanRepository.deleteAll();
+        userId = saveUser();
+        fantasyId = saveBook("Fantasy");
+        historyId = saveBook("History");
+    }
+
+    @Test
+    void aggregatesRevenueAndDiscountByGenreAndMonth() {
+        saveLoan(fantasyId, JANUARY.plusDays(3), "10.00", "8.50");
+        saveLoan(fantasyId, JANUARY.plusDays(20), "12.00", "12.00");
+        saveLoan(historyId, JANUARY.plusDays(5), "7.25", "7.00");
+        saveLoan(fantasyId, JANUARY.plusMonths(1), "20.00", "15.00");
+        saveLoan(fantasyId, JANUARY.plusMonths(3), "99.00", "99.00");
+
+        revenueAnalytics.rebuild();
+
+        assertThat(revenueAnalytics.revenue(RevenuePeriod.MONTH, JANUARY, JANUARY.plusMonths(2).minusDays(1), null))
+                .containsExactly(
+                        new RevenueDto(JANUARY, "Fantasy", 2, new BigDecimal("20.50"), new BigDecimal("1.50"),
+                                new BigDecimal("10.25")),
+                        new RevenueDto(JANUARY, "History", 1, new BigDecimal("7.00"), new BigDecimal("0.25"),
+                                new BigDecimal("7.00")),
+                        new RevenueDto(JANUARY.plusMonths(1), "Fantasy", 1, new BigDecimal("15.00"),
+                                new BigDecimal("5.00"), new BigDecimal("15.00")));
+        assertThat(revenueAnalytics.revenue(RevenuePeriod.YEAR, JANUARY, JANUARY.plusDays(364), "History"))
+                .extracting(RevenueDto::revenue).containsExactly(new BigDecimal("7.00"));
+    }
+
+    @Test
+    void refreshAppendsOnlyNewLoans() {
+        saveLoan(historyId, JANUARY, "10.00", "9.00");
+        revenueAnalytics.rebuild();
+
+        saveLoan(historyId, JANUARY.plusDays(1), "10.00", "9.00");
+        assertThat(revenueAnalytics.revenue(RevenuePeriod.WEEK, JANUARY, JANUARY.plusDays(6), null))
+                .extracting(RevenueDto::loans).containsExactly(1L);
+
+        revenueAnalytics.refresh();
+        revenueAnalytics.refresh();
+
+        assertThat(revenueAnalytics.revenue(RevenuePeriod.WEEK, JANUARY, JANUARY.plusDays(6), null))
+                .containsExactly(new RevenueDto(JANUARY, "History", 2, new BigDecimal("18.00"),
+                        new BigDecimal("2.00"), new BigDecimal("9.00")));
+    }
+
+    @Test
+    void refreshPicksUpLoansCommittedOutOfIdOrder() throws Exception {
+        saveLoan(historyId, JANUARY, "10.00", "9.00");
+        revenueAnalytics.rebuild();
+
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slow = executor.submit(() -> saveLoan(historyId, JANUARY.plusDays(1), "10.00", "9.00", () -> {
+                inserted.countDown();
+                await(commit);
+            }));
+            await(inserted);
+            saveLoan(historyId, JANUARY.plusDays(2), "10.00", "9.00");
+            revenueAnalytics.refresh();
+            commit.countDown();
+            slow.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        revenueAnalytics.refresh();
+
+        assertThat(revenueAnalytics.revenue(RevenuePeriod.WEEK, JANUARY, JANUARY.plusDays(6), null))
+                .extracting(RevenueDto::loans).containsExactly(3L);
+    }
+
+    private Long saveUser() {
+        UserEntity user = new UserEntity();
+        user.setUsername("user-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        return userRepository.save(user).getId();
+    }
+
+    private Long saveBook(String genre) {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre(genre);
+        book.setVolume(1);
+        book.setNumberOfBooks(10);
+        return bookRepository.save(book).getId();
+    }
+
+    // loan_date در PrePersist مقدار می گیرد، پس تاریخ بعد از ذخیره نوشته می شود
+    private void saveLoan(Long bookId, LocalDate day, String price, String finalPrice) {
+        saveLoan(bookId, day, price, finalPrice, () -> {
+        });
+    }
+
+    private void saveLoan(Long bookId, LocalDate day, String price, String finalPrice, Runnable beforeCommit) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LoanEntity loan = new LoanEntity();
+            loan.setUser(userRepository.getReferenceById(userId));
+            loan.setBook(bookRepository.getReferenceById(bookId));
+            loan.setPrice(new BigDecimal(price));
+            loan.setFinalPrice(new BigDecimal(finalPrice));
+            loan.setDueDate(day.plusDays(14));
+            loan.setStatus(LoanStatus.ACTIVE);
+            entityManager.persist(loan);
+            entityManager.flush();
+            entityManager.createQuery("UPDATE LoanEntity l SET l.loanDate = :loanDate WHERE l.id = :id")
+                    .setParameter("loanDate", day.atTime(12, 0))
+                    .setParameter("id", loan.getId())
+                    .executeUpdate();
+            beforeCommit.run();
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevenueColumnsTests {
+
+    private static final String[] GENRES = {"Fantasy", "History", "Science", "Poetry", "Drama"};
+    private static final int FIRST_DAY = 19_000;
+
+    @Test
+    void parallelScanMatchesASequentialSum() {
+        int rows = 300_000;
+        RevenueColumns columns = new RevenueColumns(0, new ForkJoinPool(4));
+        long[][] expected = new long[GENRES.length * 2][3];
+        Random random = new Random(3);
+        for (int i = 0; i < rows; i++) {
+            int genre = random.nextInt(GENRES.length);
+            int day = FIRST_DAY + random.nextInt(120);
+            long price = 500 + random.nextInt(5_000);
+            long finalPrice = price - random.nextInt(500);
+            columns.append(GENRES[genre], day, price, finalPrice);
+            // دو سطل 30 روزه از روز 10 تا 69؛ بقیه بیرون بازه اند
+            int offset = day - FIRST_DAY - 10;
+            if (offset >= 0 && offset < 60) {
+                long[] sum = expected[genre * 2 + offset / 30];
+                sum[0]++;
+                sum[1] += finalPrice;
+                sum[2] += price - finalPrice;
+            }
+        }
+
+        RevenueColumns.Totals totals = columns.aggregate(FIRST_DAY + 10, buckets(60, 30), 2, null);
+
+        assertThat(columns.size()).isEqualTo(rows);
+        for (int genre = 0; genre < GENRES.length; genre++) {
+            int code = totals.genres().indexOf(GENRES[genre]);
+            for (int bucket = 0; bucket < 2; bucket++) {
+                long[] sum = expected[genre * 2 + bucket];
+                assertThat(totals.get(code, bucket, RevenueColumns.Totals.LOANS)).isEqualTo(sum[0]);
+                assertThat(totals.get(code, bucket, RevenueColumns.Totals.REVENUE)).isEqualTo(sum[1]);
+                assertThat(totals.get(code, bucket, RevenueColumns.Totals.DISCOUNT)).isEqualTo(sum[2]);
+            }
+        }
+
+        RevenueColumns.Totals history = columns.aggregate(FIRST_DAY + 10, buckets(60, 30), 2, "History");
+        int historyCode = history.genres().indexOf("History");
+        int fantasyCode = history.genres().indexOf("Fantasy");
+        assertThat(history.get(historyCode, 0, RevenueColumns.Totals.REVENUE)).isEqualTo(expected[2][1]);
+        assertThat(history.get(fantasyCode, 0, RevenueColumns.Totals.LOANS)).isZero();
+        assertThat(columns.aggregate(FIRST_DAY, buckets(60, 30), 2, "Unknown").values()).containsOnly(0L);
+    }
+
+    @Test
+    void manyGenresAndDailyBucketsStillAddUpWithFewerLeaves() {
+        int rows = 200_000;
+        int days = 366;
+        RevenueColumns columns = new RevenueColumns(0, new ForkJoinPool(64));
+        long[] expected = new long[days];
+        Random random = new Random(5);
+        for (int i = 0; i < rows; i++) {
+            int day = random.nextInt(days);
+            columns.append("Genre " + random.nextInt(2_000), FIRST_DAY + day, 1_000, 900);
+            expected[day]++;
+        }
+
+        // 2000 ژانر در 366 روز: آرایه جزئی هر برگ از سقف همه برگ ها بزرگ تر است، پس فقط یک برگ می ماند
+        RevenueColumns.Totals totals = columns.aggregate(FIRST_DAY, buckets(days, 1), days, null);
+
+        for (int day = 0; day < days; day++) {
+            long loans = 0;
+            for (int code = 0; code < totals.genres().size(); code++) {
+                loans += totals.get(code, day, RevenueColumns.Totals.LOANS);
+            }
+            assertThat(loans).isEqualTo(expected[day]);
+        }
+    }
+
+    private static int[] buckets(int days, int daysPerBucket) {
+        int[] bucketOfDay = new int[days];
+        for (int i = 0; i < days; i++) {
+            bucketOfDay[i] = Math.min(i / daysPerBucket, (days - 1) / daysPerBucket);
+        }
+        return bucketOfDay;
+    }
+}
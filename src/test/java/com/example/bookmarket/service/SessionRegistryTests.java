@@ -0,0 +1,137 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.repository.LibrarianRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({SessionRegistry.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SessionRegistryTests {
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LibrarianRepository librarianRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+        userRepository.deleteAll();
+        sessionRegistry.flush();
+    }
+
+    @Test
+    void loginsAndLogoutsAreNotWrittenUntilFlushAndThenInTwoStatements() {
+        Instant expiresAt = Instant.now().plus(15, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        List<Long> ids = saveUsers(50, UserStatus.INACTIVE, null);
+
+        statistics.clear();
+        ids.forEach(id -> sessionRegistry.open(AccountType.USER, id, "u" + id, expiresAt));
+        ids.subList(0, 10).forEach(id -> sessionRegistry.close(AccountType.USER, id));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(sessionRegistry.isActive(AccountType.USER, ids.get(0))).isFalse();
+        assertThat(sessionRegistry.isActive(AccountType.USER, ids.get(49))).isTrue();
+
+        sessionRegistry.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(userRepository.findById(ids.get(0)).orElseThrow().getStatus()).isEqualTo(UserStatus.INACTIVE);
+        UserEntity loggedIn = userRepository.findById(ids.get(49)).orElseThrow();
+        assertThat(loggedIn.getStatus()).isEqualTo(UserStatus.ACTIVE);
+        assertThat(loggedIn.getSessionExpiresAt()).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void sweepEndsLapsedSessionsWithOneUpdatePerTable() throws InterruptedException {
+        Instant soon = Instant.now().plusMillis(300);
+        List<Long> lapsing = saveUsers(20, UserStatus.ACTIVE, soon);
+        List<Long> live = saveUsers(5, UserStatus.ACTIVE, Instant.now().plus(1, ChronoUnit.HOURS));
+        lapsing.forEach(id -> sessionRegistry.open(AccountType.USER, id, "u" + id, soon));
+        sessionRegistry.flush();
+
+        Thread.sleep(400);
+        statistics.clear();
+        sessionRegistry.sweep();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(sessionRegistry.isActive(AccountType.USER, lapsing.get(0))).isFalse();
+        assertThat(userRepository.findById(lapsing.get(0)).orElseThrow().getStatus()).isEqualTo(UserStatus.INACTIVE);
+        assertThat(userRepository.findById(live.get(0)).orElseThrow().getStatus()).isEqualTo(UserStatus.ACTIVE);
+    }
+
+    @Test
+    void recoverRebuildsLiveSessionsAfterRestart() {
+        List<Long> live = saveUsers(3, UserStatus.ACTIVE, Instant.now().plus(1, ChronoUnit.HOURS));
+        List<Long> lapsed = saveUsers(2, UserStatus.ACTIVE, Instant.now().minus(1, ChronoUnit.MINUTES));
+
+        SessionRegistry restarted = new SessionRegistry(userRepository, librarianRepository, Duration.ofSeconds(30),
+                new SimpleMeterRegistry());
+        restarted.recover();
+
+        assertThat(live).allMatch(id -> restarted.isActive(AccountType.USER, id));
+        assertThat(lapsed).noneMatch(id -> restarted.isActive(AccountType.USER, id));
+    }
+
+    @Test
+    void sessionsFlushedByAnotherNodeAreSeenOnAMiss() {
+        Instant expiresAt = Instant.now().plus(15, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        Long userId = saveUsers(1, UserStatus.INACTIVE, null).get(0);
+        SessionRegistry nodeA = new SessionRegistry(userRepository, librarianRepository, Duration.ZERO, new SimpleMeterRegistry());
+        SessionRegistry nodeB = new SessionRegistry(userRepository, librarianRepository, Duration.ZERO, new SimpleMeterRegistry());
+
+        nodeA.open(AccountType.USER, userId, "u" + userId, expiresAt);
+        assertThat(nodeB.isActive(AccountType.USER, userId)).isFalse();
+        nodeA.flush();
+        assertThat(nodeB.isActive(AccountType.USER, userId)).isTrue();
+
+        assertThat(nodeB.close(AccountType.USER, userId)).isTrue();
+        nodeB.flush();
+        assertThat(nodeA.isActive(AccountType.USER, userId)).isFalse();
+        assertThat(nodeA.close(AccountType.USER, userId)).isFalse();
+    }
+
+    private List<Long> saveUsers(int count, UserStatus status, Instant sessionExpiresAt) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserEntity user = new UserEntity();
+            user.setUsername("session-" + System.nanoTime());
+            user.setPassword("secret");
+            user.setStatus(status);
+            user.setSessionExpiresAt(sessionExpiresAt);
+            ids.add(userRepository.save(user).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTests {
+
+    @Test
+    void heavyHittersOfASkewedStreamAreKeptWithinTheirBounds() {
+        long[] stream = zipfStream(100_000, 10_000, new Random(42));
+        SpaceSaving summary = new SpaceSaving(200);
+        for (long item : stream) {
+            summary.offer(item);
+        }
+
+        assertBoundsHold(summary, exactCounts(stream), 20);
+        assertThat(summary.total()).isEqualTo(100_000);
+    }
+
+    @Test
+    void mergedSummariesBoundTheCombinedStream() {
+        long[] stream = zipfStream(90_000, 10_000, new Random(7));
+        List<SpaceSaving> days = List.of(new SpaceSaving(200), new SpaceSaving(200), new SpaceSaving(200));
+        for (int i = 0; i < stream.length; i++) {
+            days.get(i * 3 / stream.length).offer(stream[i]);
+        }
+
+        SpaceSaving merged = SpaceSaving.merge(200, days);
+
+        assertBoundsHold(merged, exactCounts(stream), 10);
+        assertThat(merged.total()).isEqualTo(90_000);
+    }
+
+    @Test
+    void survivesSerialization() {
+        SpaceSaving summary = new SpaceSaving(3);
+        for (long item : new long[]{1, 1, 2, 3, 4, 4, 4}) {
+            summary.offer(item);
+        }
+
+        SpaceSaving restored = SpaceSaving.fromBytes(summary.toBytes());
+
+        assertThat(restored.top(3)).isEqualTo(summary.top(3));
+        assertThat(restored.minCount()).isEqualTo(summary.minCount());
+        assertThat(restored.capacity()).isEqualTo(3);
+        assertThat(summary.toBytes().length).isEqualTo(4 + 16 + 3 * 24);
+    }
+
+    private static void assertBoundsHold(SpaceSaving summary, Map<Long, Long> exact, int n) {
+        List<Long> trueTop = exact.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(n)
+                .map(Map.Entry::getKey)
+                .toList();
+        Map<Long, SpaceSaving.Estimate> estimates = summary.top(summary.capacity()).stream()
+                .collect(Collectors.toMap(SpaceSaving.Estimate::item, estimate -> estimate));
+
+        for (long item : trueTop) {
+            SpaceSaving.Estimate estimate = estimates.get(item);
+            assertThat(estimate).as("item %d", item).isNotNull();
+            assertThat(estimate.lowerBound()).isLessThanOrEqualTo(exact.get(item));
+            assertThat(estimate.count()).isGreaterThanOrEqualTo(exact.get(item));
+        }
+        assertThat(summary.top(n)).extracting(SpaceSaving.Estimate::item)
+                .containsAll(trueTop.subList(0, n / 2));
+    }
+
+    private static Map<Long, Long> exactCounts(long[] stream) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (long item : stream) {
+            counts.merge(item, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static long[] zipfStream(int length, int items, Random random) {
+        double[] cumulative = new double[items];
+        double sum = 0;
+        for (int i = 0; i < items; i++) {
+            sum += 1 / Math.pow(i + 1, 1.1);
+            cumulative[i] = sum;
+        }
+        long[] stream = new long[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            stream[i] = index >= 0 ? index : -index - 1;
+        }
+        return stream;
+    }
+}
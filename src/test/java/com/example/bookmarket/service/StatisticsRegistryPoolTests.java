@@ -0,0 +1,95 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.event.StatisticsChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reconciliation against a pool of one connection, which a committing transaction holds while it waits at the
+ * commit barrier.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({StatisticsRegistry.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statistics-pool;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=2000"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatisticsRegistryPoolTests {
+
+    @Autowired
+    private StatisticsRegistry statisticsRegistry;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void reconcileWaitsForTheConnectionOfACommittingTransaction() {
+        statisticsRegistry.reconcile();
+        long before = statisticsRegistry.snapshot().totalBooks();
+        CompletableFuture<Void>[] reconcile = new CompletableFuture[1];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // تنها اتصال دست این تراکنش است و هنوز به سد کامیت نرسیده
+                    reconcile[0] = CompletableFuture.runAsync(statisticsRegistry::reconcile);
+                    try {
+                        reconcile[0].get(300, TimeUnit.MILLISECONDS);
+                    } catch (Exception ignored) {
+                        // reconcile منتظر اتصال می ماند
+                    }
+                }
+            });
+            saveBook();
+            eventPublisher.publishEvent(StatisticsChangedEvent.bookAdded());
+        });
+        reconcile[0].join();
+
+        assertThat(statisticsRegistry.snapshot().totalBooks()).isEqualTo(before + 1);
+        assertThat(statisticsRegistry.snapshot().totalBooks()).isEqualTo(bookRepository.count());
+    }
+
+    private void saveBook() {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(1);
+        bookRepository.save(book);
+    }
+}
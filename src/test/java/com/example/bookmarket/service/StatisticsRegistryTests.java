@@ -0,0 +1,209 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.dto.LoanDto;
+import com.example.bookmarket.dto.StatisticsDto;
+import com.example.bookmarket.entity.BookEntity;
+import com.example.bookmarket.entity.LoanEntity;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.AccountType;
+import com.example.bookmarket.enums.LoanStatus;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.event.StatisticsChangedEvent;
+import com.example.bookmarket.repository.BookRepository;
+import com.example.bookmarket.repository.LoanRepository;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({StatisticsRegistry.class, StatisticsService.class, LoanActivityRollup.class, MostBorrowedTracker.class,
+        DistinctUserTracker.class, RevenueAnalytics.class, LoanService.class, InventoryService.class,
+        SessionRegistry.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatisticsRegistryTests {
+
+    @Autowired
+    private StatisticsRegistry statisticsRegistry;
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        loanRepository.deleteAll();
+        statisticsRegistry.reconcile();
+    }
+
+    @Test
+    void reconcileCountsEverythingWithOneQuery() {
+        Long userId = saveUser();
+        Long bookId = saveBook(10);
+        saveLoan(userId, bookId, LoanStatus.ACTIVE);
+        saveLoan(userId, bookId, LoanStatus.ACTIVE);
+        saveLoan(userId, bookId, LoanStatus.RETURNED);
+        sessionRegistry.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        statisticsRegistry.reconcile();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statisticsService.getStatistics()).isEqualTo(new StatisticsDto(bookRepository.count(),
+                userRepository.count(), 3L, 2L, 1L));
+    }
+
+    @Test
+    void committedWritesUpdateTheCountersWithoutQueries() {
+        Long userId = saveUser();
+        Long bookId = saveBook(10);
+        statisticsRegistry.reconcile();
+        StatisticsDto before = statisticsService.getStatistics();
+
+        loanService.createLoan(new LoanDto(userId, bookId, LocalDate.now().plusDays(7)));
+        loanService.createLoan(new LoanDto(userId, bookId, LocalDate.now().plusDays(7)));
+        Long returned = loanRepository.findAll().get(0).getId();
+        loanService.returnLoan(returned);
+        sessionRegistry.flush();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        StatisticsDto after = statisticsService.getStatistics();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(after.totalLoans() - before.totalLoans()).isEqualTo(2);
+        assertThat(after.activeLoans() - before.activeLoans()).isEqualTo(1);
+        assertThat(after.returnedLoans() - before.returnedLoans()).isEqualTo(1);
+
+        loanService.deleteLoan(returned);
+        assertThat(statisticsService.getStatistics().returnedLoans()).isEqualTo(before.returnedLoans());
+    }
+
+    @Test
+    void reconcileCorrectsWritesThatBypassedTheServices() {
+        Long userId = saveUser();
+        Long bookId = saveBook(10);
+        statisticsRegistry.reconcile();
+        StatisticsDto before = statisticsService.getStatistics();
+
+        saveLoan(userId, bookId, LoanStatus.ACTIVE);
+        saveBook(1);
+        assertThat(statisticsService.getStatistics()).isEqualTo(before);
+
+        statisticsRegistry.reconcile();
+
+        StatisticsDto after = statisticsService.getStatistics();
+        assertThat(after.activeLoans()).isEqualTo(before.activeLoans() + 1);
+        assertThat(after.totalBooks()).isEqualTo(before.totalBooks() + 1);
+    }
+
+    @Test
+    void reconcileBetweenCommitAndListenerDoesNotCountTwice() {
+        Long userId = saveUser();
+        Long bookId = saveBook(10);
+        statisticsRegistry.reconcile();
+        long before = statisticsService.getStatistics().activeLoans();
+        CompletableFuture<Void>[] reconcile = new CompletableFuture[1];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            saveLoan(userId, bookId, LoanStatus.ACTIVE);
+            eventPublisher.publishEvent(StatisticsChangedEvent.loanCreated());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // ردیف کامیت شده ولی دلتای آن هنوز اضافه نشده است
+                    reconcile[0] = CompletableFuture.runAsync(statisticsRegistry::reconcile);
+                    try {
+                        reconcile[0].get(300, TimeUnit.MILLISECONDS);
+                    } catch (Exception ignored) {
+                        // تا پایان این تراکنش پشت سد می ماند
+                    }
+                }
+            });
+        });
+        reconcile[0].join();
+
+        assertThat(statisticsService.getStatistics().activeLoans()).isEqualTo(before + 1);
+    }
+
+    private Long saveUser() {
+        UserEntity user = new UserEntity();
+        user.setUsername("user-" + System.nanoTime());
+        user.setPassword("secret");
+        user.setStatus(UserStatus.ACTIVE);
+        Long id = userRepository.save(user).getId();
+        sessionRegistry.open(AccountType.USER, id, user.getUsername(), Instant.now().plusSeconds(600));
+        return id;
+    }
+
+    private Long saveBook(int stock) {
+        BookEntity book = new BookEntity();
+        book.setTitle("Book " + System.nanoTime());
+        book.setAuthor("Author");
+        book.setPrice(BigDecimal.TEN);
+        book.setFinalPrice(BigDecimal.valueOf(9));
+        book.setGenre("Test");
+        book.setVolume(1);
+        book.setNumberOfBooks(stock);
+        return bookRepository.save(book).getId();
+    }
+
+    private void saveLoan(Long userId, Long bookId, LoanStatus status) {
+        LoanEntity loan = new LoanEntity();
+        loan.setUser(userRepository.getReferenceById(userId));
+        loan.setBook(bookRepository.getReferenceById(bookId));
+        loan.setPrice(BigDecimal.TEN);
+        loan.setFinalPrice(BigDecimal.TEN);
+        loan.setLoanDate(LocalDateTime.now());
+        loan.setDueDate(LocalDate.now().plusDays(7));
+        loan.setStatus(status);
+        loanRepository.save(loan);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bookmarket.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymmetricDeleteDictionaryTests {
+
+    @Test
+    void findsTermsWithinEditDistance() {
+        SymmetricDeleteDictionary dictionary = new SymmetricDeleteDictionary(2, 7);
+        dictionary.add("hedayat");
+        dictionary.add("hafez");
+        dictionary.add("ferdowsi");
+
+        assertThat(dictionary.lookup("hedayt", 2)).containsEntry("hedayat", 1).doesNotContainKey("hafez");
+        assertThat(dictionary.lookup("hafze", 1)).containsEntry("hafez", 1);
+        assertThat(dictionary.lookup("ferdosy", 2)).containsEntry("ferdowsi", 2);
+        assertThat(dictionary.lookup("ferdosy", 1)).isEmpty();
+    }
+
+    @Test
+    void removedTermsAreNoLongerSuggested() {
+        SymmetricDeleteDictionary dictionary = new SymmetricDeleteDictionary(2, 7);
+        dictionary.add("shahnameh");
+        dictionary.remove("shahnameh");
+
+        assertThat(dictionary.lookup("shahname", 2)).isEmpty();
+        assertThat(dictionary.contains("shahnameh")).isFalse();
+    }
+
+    @Test
+    void editDistanceCountsTranspositionsAsOneEdit() {
+        assertThat(SymmetricDeleteDictionary.editDistance("kitten", "sitting", 5)).isEqualTo(3);
+        assertThat(SymmetricDeleteDictionary.editDistance("abcd", "abdc", 5)).isEqualTo(1);
+        assertThat(SymmetricDeleteDictionary.editDistance("abcdef", "zzzzzz", 2)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.config.JwtKeyRing;
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
+import com.example.bookmarket.entity.RevokedTokenEntity;
+import com.example.bookmarket.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({TokenRevocationService.class, JwtUtil.class, JwtKeyRing.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"jwt.secret=test-secret-that-is-long-enough-for-hs256", "jwt.keys.in-memory=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenRevocationServiceTests {
+
+    @Autowired
+    private TokenRevocationService revocations;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        revokedTokenRepository.deleteAll();
+        revocations.recover();
+    }
+
+    @Test
+    void unrevokedTokensAreAnsweredWithoutALookup() {
+        double before = lookups();
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(revocations.isRevoked(token("reader" + i, Instant.now()))).isFalse();
+        }
+
+        // با نرخ مثبت کاذب یک درصد و جدول خالی هیچ کلیدی در فیلتر نیست
+        assertThat(lookups() - before).isZero();
+    }
+
+    @Test
+    void revokedTokenIsRejectedAndOthersAreNot() {
+        VerifiedToken stolen = token("reader", Instant.now());
+        VerifiedToken current = token("reader", Instant.now());
+
+        revocations.revoke(stolen);
+
+        assertThat(revocations.isRevoked(stolen)).isTrue();
+        assertThat(revocations.isRevoked(current)).isFalse();
+    }
+
+    @Test
+    void revokeAllRejectsOnlyTokensIssuedBeforeIt() {
+        VerifiedToken access = token("reader", Instant.now().minusSeconds(30));
+        VerifiedToken refresh = token("reader", Instant.now().minusSeconds(60));
+        VerifiedToken other = token("writer", Instant.now().minusSeconds(30));
+
+        revocations.revokeAll("reader");
+
+        assertThat(revocations.isRevoked(access)).isTrue();
+        assertThat(revocations.isRevoked(refresh)).isTrue();
+        assertThat(revocations.isRevoked(other)).isFalse();
+        assertThat(revocations.isRevoked(token("reader", Instant.now().plusSeconds(2)))).isFalse();
+    }
+
+    @Test
+    void purgeDropsRevocationsOfExpiredTokens() {
+        VerifiedToken expired = token("reader", Instant.now().minusSeconds(120), Instant.now().minusSeconds(1));
+        VerifiedToken live = token("reader", Instant.now());
+        revocations.revoke(expired);
+        revocations.revoke(live);
+
+        revocations.purge();
+
+        assertThat(revokedTokenRepository.findAll()).hasSize(1);
+        double before = lookups();
+        assertThat(revocations.isRevoked(expired)).isFalse();
+        assertThat(lookups() - before).isLessThanOrEqualTo(1);
+        assertThat(revocations.isRevoked(live)).isTrue();
+    }
+
+    @Test
+    void recoverReloadsLiveRevocationsFromTheTable() {
+        VerifiedToken stolen = token("reader", Instant.now());
+        revocations.revoke(stolen);
+
+        revocations.recover();
+
+        assertThat(revocations.isRevoked(stolen)).isTrue();
+        assertThat(meterRegistry.get("security.revocation.entries").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void revocationsOfAnotherNodeAreSeenAfterASync() {
+        TokenRevocationService nodeA = node(new SimpleMeterRegistry());
+        TokenRevocationService nodeB = node(new SimpleMeterRegistry());
+        VerifiedToken stolen = token("reader", Instant.now());
+
+        nodeA.revoke(stolen);
+        assertThat(nodeB.isRevoked(stolen)).isFalse();
+        nodeB.sync();
+        assertThat(nodeB.isRevoked(stolen)).isTrue();
+
+        nodeB.revokeAll("writer");
+        nodeA.sync();
+        assertThat(nodeA.isRevoked(token("writer", Instant.now().minusSeconds(30)))).isTrue();
+    }
+
+    @Test
+    void keysSeenByOverlappingSyncsAreCountedOnce() {
+        SimpleMeterRegistry registryB = new SimpleMeterRegistry();
+        TokenRevocationService nodeA = node(new SimpleMeterRegistry());
+        TokenRevocationService nodeB = node(registryB);
+        VerifiedToken stolen = token("reader", Instant.now());
+
+        nodeA.revoke(stolen);
+        nodeB.sync();
+        nodeB.sync();
+        nodeB.revoke(stolen);
+
+        assertThat(registryB.get("security.revocation.entries").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void rebuildDropsKeysPurgedByAnotherNode() {
+        SimpleMeterRegistry registryB = new SimpleMeterRegistry();
+        TokenRevocationService nodeA = node(new SimpleMeterRegistry());
+        TokenRevocationService nodeB = node(registryB);
+        VerifiedToken stolen = token("reader", Instant.now());
+        nodeA.revoke(stolen);
+        nodeB.sync();
+
+        RevokedTokenEntity revocation = revokedTokenRepository.findAll().get(0);
+        revocation.setExpiresAt(Instant.now().minusSeconds(1));
+        revokedTokenRepository.save(revocation);
+        nodeA.purge();
+        nodeB.recover();
+
+        double before = registryB.counter("security.revocation.lookups").count();
+        assertThat(nodeB.isRevoked(stolen)).isFalse();
+        assertThat(registryB.counter("security.revocation.lookups").count() - before).isZero();
+    }
+
+    private TokenRevocationService node(MeterRegistry registry) {
+        TokenRevocationService node = new TokenRevocationService(revokedTokenRepository, jwtUtil, 100_000, 0.01,
+                Duration.ofSeconds(30), registry);
+        node.recover();
+        return node;
+    }
+
+    private double lookups() {
+        return meterRegistry.counter("security.revocation.lookups").count();
+    }
+
+    private static VerifiedToken token(String username, Instant issuedAt) {
+        return token(username, issuedAt, issuedAt.plusSeconds(900));
+    }
+
+    private static VerifiedToken token(String username, Instant issuedAt, Instant expiresAt) {
+        return new VerifiedToken(UUID.randomUUID().toString(), username, "access", Set.of("USER"), List.of(),
+                issuedAt, expiresAt);
+    }
+}
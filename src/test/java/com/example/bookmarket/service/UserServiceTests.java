@@ -0,0 +1,137 @@
+package com.example.bookmarket.service;
+
+import com.example.bookmarket.config.CalibratedPasswordEncoder;
+import com.example.bookmarket.config.JwtKeyRing;
+import com.example.bookmarket.config.JwtUtil;
+import com.example.bookmarket.config.VerifiedToken;
+import com.example.bookmarket.dto.UpdateUserDto;
+import com.example.bookmarket.entity.UserEntity;
+import com.example.bookmarket.enums.UserStatus;
+import com.example.bookmarket.event.PrincipalChangedEvent;
+import com.example.bookmarket.exception.AccountAccessDeniedException;
+import com.example.bookmarket.exception.InvalidTokenException;
+import com.example.bookmarket.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({UserService.class, SessionRegistry.class, TokenRevocationService.class, JwtUtil.class, JwtKeyRing.class,
+        PasswordHasher.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"jwt.secret=test-secret-that-is-long-enough-for-hs256", "jwt.keys.in-memory=true"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RecordApplicationEvents
+class UserServiceTests {
+
+    @TestConfiguration
+    static class Encoder {
+        @Bean
+        CalibratedPasswordEncoder passwordEncoder() {
+            return new CalibratedPasswordEncoder(5, 0, 0);
+        }
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void loginRehashesPasswordsOutsideTheCalibratedBand() {
+        saveUser("legacy", new BCryptPasswordEncoder(4).encode("secret"));
+
+        userService.login("legacy", "secret");
+
+        String stored = userRepository.findByUsername("legacy").orElseThrow().getPassword();
+        assertThat(stored).startsWith("{bcrypt}$2a$05$");
+        assertThat(meterRegistry.counter("security.password.rehashes").count()).isEqualTo(1);
+    }
+
+    @Test
+    void loginKeepsHashesInsideTheBand() {
+        String hash = new CalibratedPasswordEncoder(5, 0, 0).encode("secret");
+        saveUser("current", hash);
+
+        String accessToken = userService.login("current", "secret").accessToken();
+
+        assertThat(jwtUtil.verify(accessToken).username()).isEqualTo("current");
+        assertThat(userRepository.findByUsername("current").orElseThrow().getPassword()).isEqualTo(hash);
+    }
+
+    @Test
+    void revokeAllRejectsRefreshTokensIssuedBeforeIt() {
+        saveUser("revoked", new CalibratedPasswordEncoder(5, 0, 0).encode("secret"));
+        String refreshToken = userService.login("revoked", "secret").refreshToken();
+        Long userId = userRepository.findByUsername("revoked").orElseThrow().getId();
+
+        userService.revokeAllTokens(userId, jwtUtil.verify(refreshToken));
+
+        assertThatThrownBy(() -> userService.refreshToken(refreshToken)).isInstanceOf(InvalidTokenException.class);
+    }
+
+    @Test
+    void revokeAllAndLogoutAreOnlyForTheOwner() {
+        saveUser("victim", new CalibratedPasswordEncoder(5, 0, 0).encode("secret"));
+        Long victimId = userRepository.findByUsername("victim").orElseThrow().getId();
+        VerifiedToken attacker = jwtUtil.verify(jwtUtil.generateToken("attacker", Set.of("USER")));
+        VerifiedToken admin = jwtUtil.verify(jwtUtil.generateToken("admin", Set.of("ADMIN")));
+
+        assertThatThrownBy(() -> userService.revokeAllTokens(victimId, attacker))
+                .isInstanceOf(AccountAccessDeniedException.class);
+        assertThatThrownBy(() -> userService.logout(victimId, attacker))
+                .isInstanceOf(AccountAccessDeniedException.class);
+        assertThatCode(() -> userService.revokeAllTokens(victimId, admin)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void renameInvalidatesTheOldAndTheNewUsername() {
+        saveUser("before", new CalibratedPasswordEncoder(5, 0, 0).encode("secret"));
+        Long userId = userRepository.findByUsername("before").orElseThrow().getId();
+
+        userService.update(new UpdateUserDto(userId, "after", null, null));
+
+        assertThat(events.stream(PrincipalChangedEvent.class)).extracting(PrincipalChangedEvent::username)
+                .containsExactly("before", "after");
+    }
+
+    private void saveUser(String username, String passwordHash) {
+        UserEntity user = new UserEntity();
+        user.setUsername(username);
+        user.setPassword(passwordHash);
+        user.setStatus(UserStatus.INACTIVE);
+        userRepository.save(user);
+    }
+}